@@ -0,0 +1,174 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.PoDefinition;
+import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.jdbc.JdbcWizard;
+
+import java.beans.PropertyDescriptor;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.h2.tools.SimpleResultSet;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * 基准测试使用的PO对象、结果集及嵌入式数据库
+ *
+ * @author Gavin
+ *
+ */
+public final class Fixtures {
+
+    //固定的时间，保证每次运行的数据相同
+    private static final long BASE_TIME = 1500000000000L;
+
+    private Fixtures() {
+    }
+
+    public static WidePo wide(int i) {
+        WidePo po = new WidePo();
+        po.setId("W" + i);
+        po.setCode("CODE-" + i);
+        po.setName("name " + i);
+        po.setTitle("title " + i);
+        po.setCategory("category " + (i % 10));
+        po.setOwner("owner " + (i % 100));
+        po.setEmail("user" + i + "@example.com");
+        po.setPhone("1380000" + i);
+        po.setAddress("address line " + i);
+        po.setCity("city " + (i % 50));
+        po.setRemark("remark " + i);
+        po.setStatus(i % 3);
+        po.setType(i % 5);
+        po.setPriority(i % 7);
+        po.setScore(i % 100);
+        po.setQuantity(i);
+        po.setVersion(1);
+        po.setParentId((long) (i / 10));
+        po.setPrice(i * 1.5);
+        po.setAmount(i * 2.5);
+        po.setDiscount(0.9);
+        po.setWeight(i * 0.1f);
+        po.setRatio(0.5f);
+        po.setCreatedAt(new Date(BASE_TIME + i));
+        po.setUpdatedAt(new Date(BASE_TIME + i));
+        po.setExpireAt(new Date(BASE_TIME + i + 86400000L));
+        return po;
+    }
+
+    /**
+     * 与“select * from PO”的结果结构相同的内存结果集（列名为PO属性对应的别名），可以反复遍历
+     */
+    public static SimpleResultSet resultSet(Class<?> poClass, int rows) {
+        PoDefinition poDef = PoDefinition.instance(poClass);
+        String[] fields = poDef.getFields();
+        Class<?>[] types = new Class<?>[fields.length];
+
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        for (int i = 0; i < fields.length; i++) {
+            types[i] = propertyType(poClass, fields[i]);
+            rs.addColumn(PoUtils.fieldName2ColumnName(fields[i]), sqlTypeOf(types[i]), 255, 0);
+        }
+        for (int r = 0; r < rows; r++) {
+            Object[] row = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                row[i] = valueOf(types[i], r);
+            }
+            rs.addRow(row);
+        }
+        return rs;
+    }
+
+    /**
+     * 嵌入式H2数据库（每个name一个内存数据库），建表并写入rows条WidePo及OrderPo记录
+     */
+    public static JdbcWizard h2(String name, int rows) {
+        SingleConnectionDataSource ds = new SingleConnectionDataSource(
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcWizard db = new JdbcWizard(ds, H2Dialect.INSTANCE);
+
+        db.execute("drop table if exists BM_WIDE");
+        db.execute("drop table if exists BM_ORDER");
+        db.execute("drop table if exists BM_CUSTOMER");
+        db.execute("create table BM_WIDE (ID varchar(32) primary key, CODE varchar(64), NAME varchar(255),"
+                + " TITLE varchar(255), CATEGORY varchar(64), OWNER varchar(64), EMAIL varchar(255),"
+                + " PHONE varchar(32), ADDRESS varchar(255), CITY varchar(64), REMARK varchar(255), STATUS int,"
+                + " TYPE int, PRIORITY int, SCORE int, QUANTITY bigint, VERSION bigint, PARENT_ID bigint,"
+                + " PRICE double, AMOUNT double, DISCOUNT double, WEIGHT real, RATIO real, CREATED_AT timestamp,"
+                + " UPDATED_AT timestamp, EXPIRE_AT timestamp)");
+        db.execute("create index BM_WIDE_STATUS on BM_WIDE (STATUS, CREATED_AT)");
+        db.execute("create table BM_CUSTOMER (ID varchar(32) primary key, NAME varchar(255), CITY varchar(64),"
+                + " LEVEL int)");
+        db.execute("create table BM_ORDER (ID varchar(32) primary key, CUSTOMER_ID varchar(32), STATUS int,"
+                + " AMOUNT double, QUANTITY bigint, CREATED_AT timestamp)");
+        db.execute("create index BM_ORDER_CUSTOMER on BM_ORDER (CUSTOMER_ID)");
+
+        List<Object[]> customers = new ArrayList<Object[]>();
+        for (int i = 0; i < Math.max(1, rows / 10); i++) {
+            customers.add(new Object[] { "C" + i, "customer " + i, "city " + (i % 50), i % 5 });
+        }
+        db.batchUpdate("insert into BM_CUSTOMER (ID, NAME, CITY, LEVEL) values (?,?,?,?)", customers);
+
+        List<Object[]> orders = new ArrayList<Object[]>();
+        for (int i = 0; i < rows; i++) {
+            orders.add(new Object[] { "O" + i, "C" + (i % customers.size()), i % 3, i * 2.5, (long) i,
+                    new Timestamp(BASE_TIME + i) });
+        }
+        db.batchUpdate("insert into BM_ORDER (ID, CUSTOMER_ID, STATUS, AMOUNT, QUANTITY, CREATED_AT)"
+                + " values (?,?,?,?,?,?)", orders);
+
+        List<WidePo> wides = new ArrayList<WidePo>();
+        for (int i = 0; i < rows; i++) {
+            wides.add(wide(i));
+        }
+        new WideDao(db).createAll(wides);
+        return db;
+    }
+
+    //属性的类型，嵌套对象的属性（如customer$name）取嵌套对象中对应属性的类型
+    private static Class<?> propertyType(Class<?> poClass, String field) {
+        int pos = field.indexOf('$');
+        if (pos >= 0) {
+            Class<?> nested = BeanUtils.getPropertyDescriptor(poClass, field.substring(0, pos)).getPropertyType();
+            return propertyType(nested, field.substring(pos + 1));
+        }
+        PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(poClass, field);
+        return pd.getPropertyType();
+    }
+
+    private static int sqlTypeOf(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return Types.INTEGER;
+        } else if (type == long.class || type == Long.class) {
+            return Types.BIGINT;
+        } else if (type == double.class || type == Double.class) {
+            return Types.DOUBLE;
+        } else if (type == float.class || type == Float.class) {
+            return Types.REAL;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return Types.TIMESTAMP;
+        }
+        return Types.VARCHAR;
+    }
+
+    private static Object valueOf(Class<?> type, int row) {
+        if (type == int.class || type == Integer.class) {
+            return row;
+        } else if (type == long.class || type == Long.class) {
+            return (long) row;
+        } else if (type == double.class || type == Double.class) {
+            return row * 1.5;
+        } else if (type == float.class || type == Float.class) {
+            return row * 0.5f;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return new Timestamp(BASE_TIME + row);
+        }
+        return "value " + row;
+    }
+}
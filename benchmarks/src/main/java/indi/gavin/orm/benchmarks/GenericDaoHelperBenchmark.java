@@ -0,0 +1,94 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.GenericDaoHelperFactory;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.helper.GenericDaoHelper;
+import indi.gavin.orm.jdbc.JdbcWizard;
+import indi.gavin.orm.metrics.SqlLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * GenericDaoHelper的create/update：读取PO属性、生成SQL语句及参数，不执行SQL（JdbcTemplate.update直接返回）
+ *
+ * @author Gavin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GenericDaoHelperBenchmark {
+
+    private GenericDaoHelper helper;
+    private WidePo po;
+    private List<WidePo> batch;
+
+    @Setup
+    public void setUp() {
+        SqlLogger.setMode(SqlLogger.Mode.OFF);
+        helper = GenericDaoHelperFactory.getHelper(new NoopJdbcTemplate(), WidePo.class);
+        po = Fixtures.wide(1);
+        batch = new ArrayList<WidePo>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(Fixtures.wide(i));
+        }
+    }
+
+    @Benchmark
+    public int create() {
+        return helper.create(po);
+    }
+
+    @Benchmark
+    public int update() {
+        return helper.update(po, null, null, "{#id}=?", po.getId());
+    }
+
+    @Benchmark
+    public int updateInclude() {
+        return helper.update(po, "name,status,updatedAt", null, "{#id}=?", po.getId());
+    }
+
+    @Benchmark
+    public int[] createAllMultiRow() {
+        return helper.createAllMultiRow(batch, 100);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 不执行SQL的JdbcTemplate
+     */
+    static final class NoopJdbcTemplate extends JdbcWizard {
+
+        NoopJdbcTemplate() {
+            super(new SingleConnectionDataSource(), H2Dialect.INSTANCE);
+        }
+
+        @Override
+        public int update(String sql, Object[] args, int[] argTypes) {
+            return 1;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            return 1;
+        }
+    }
+}
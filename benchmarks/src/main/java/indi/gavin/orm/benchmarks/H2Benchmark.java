@@ -0,0 +1,99 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.PoDefinition;
+import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.jdbc.JdbcWizard;
+import indi.gavin.orm.metrics.SqlLogger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 通过DAO访问嵌入式H2数据库（内存数据库，单个连接），测量包括JDBC在内的完整开销。
+ *
+ * jdbcGetById使用与getById相同的SQL语句，直接通过JdbcTemplate查询（结果为Map），作为对照。
+ *
+ * @author Gavin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class H2Benchmark {
+
+    private static final int ROWS = 10000;
+
+    private JdbcWizard db;
+    private WideDao wideDao;
+    private OrderDao orderDao;
+    private String getByIdSQL;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int next() {
+            next = (next + 7919) % ROWS;
+            return next;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        SqlLogger.setMode(SqlLogger.Mode.OFF);
+        db = Fixtures.h2("bench", ROWS);
+        wideDao = new WideDao(db);
+        orderDao = new OrderDao(db);
+        getByIdSQL = PoUtils.getQuerySQL(H2Dialect.INSTANCE, PoDefinition.instance(WidePo.class), null, null, 0, 0,
+                null, null, "{#id}=?", null);
+    }
+
+    @Benchmark
+    public WidePo getById(Cursor cursor) {
+        return wideDao.get("W" + cursor.next());
+    }
+
+    @Benchmark
+    public Map<String, Object> jdbcGetById(Cursor cursor) {
+        return db.queryForMap(getByIdSQL, "W" + cursor.next());
+    }
+
+    @Benchmark
+    public List<WidePo> queryPage(Cursor cursor) {
+        return wideDao.queryForList(null, null, cursor.next() % 100, 20, "{#createdAt} desc", null, "{#status}=?",
+                1);
+    }
+
+    @Benchmark
+    public List<OrderPo> queryJoin(Cursor cursor) {
+        return orderDao.queryForList(null, null, 0, 20, null, null, "{#customerId}=?",
+                "C" + cursor.next() % (ROWS / 10));
+    }
+
+    @Benchmark
+    public long queryForCount() {
+        return wideDao.queryForCount("{#status}=?", 1);
+    }
+
+    @Benchmark
+    public int updateById(Cursor cursor) {
+        WidePo po = Fixtures.wide(cursor.next());
+        return wideDao.update(po, "name,status,updatedAt", null, "{#id}=?", po.getId());
+    }
+}
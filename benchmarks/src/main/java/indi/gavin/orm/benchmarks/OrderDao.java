@@ -0,0 +1,24 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.ObjectWithIdDao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * OrderPo的DAO
+ *
+ * @author Gavin
+ *
+ */
+public class OrderDao implements ObjectWithIdDao<OrderPo> {
+    private final JdbcTemplate db;
+
+    public OrderDao(JdbcTemplate db) {
+        this.db = db;
+    }
+
+    @Override
+    public JdbcTemplate getJdbcTemplate() {
+        return db;
+    }
+}
@@ -0,0 +1,126 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.annotations.PoColumn;
+import indi.gavin.orm.annotations.PoTable;
+
+import java.util.Date;
+
+/**
+ * 两表联合的PO：订单及其客户，客户信息通过嵌套对象（customer$name等）映射
+ *
+ * @author Gavin
+ *
+ */
+@PoTable(value = "O=BM_ORDER,customer=BM_CUSTOMER", join = "O.CUSTOMER_ID=customer.ID")
+public class OrderPo {
+
+    @PoColumn("O.ID")
+    private String id;
+
+    @PoColumn("O.CUSTOMER_ID")
+    private String customerId;
+
+    @PoColumn("O.STATUS")
+    private int status;
+
+    @PoColumn("O.AMOUNT")
+    private double amount;
+
+    @PoColumn("O.QUANTITY")
+    private long quantity;
+
+    @PoColumn("O.CREATED_AT")
+    private Date createdAt;
+
+    private Customer customer = new Customer();
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 客户信息，字段来自BM_CUSTOMER（表别名customer）
+     */
+    public static class Customer {
+        private String name;
+        private String city;
+        private int level;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.FilterTemplate;
+import indi.gavin.orm.PoDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 多线程同时取得PO定义（PoDefinition.instance）及已编译的查询条件模板，检查缓存在竞争下的伸缩性。
+ *
+ * 线程数通过JMH的-t参数指定，参见README中按1~64个线程依次运行的方法。
+ *
+ * @author Gavin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PoDefinitionBenchmark {
+
+    private static final Class<?>[] PO_CLASSES = { WidePo.class, OrderPo.class, OrderPo.Customer.class };
+
+    private static final String FILTER = "{#status}=? and {#category}=?";
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public PoDefinition instance() {
+        return PoDefinition.instance(WidePo.class);
+    }
+
+    @Benchmark
+    public PoDefinition instanceOfSeveralClasses(Cursor cursor) {
+        return PoDefinition.instance(PO_CLASSES[cursor.next++ % PO_CLASSES.length]);
+    }
+
+    @Benchmark
+    public FilterTemplate filterTemplate() {
+        return PoDefinition.instance(WidePo.class).getFilterTemplate(FILTER);
+    }
+}
@@ -0,0 +1,75 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.PoRowMapper;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * 将结果集映射为PO（PoRowMapper.mapRow），结果集是H2的内存结果集（SimpleResultSet），不访问数据库
+ *
+ * mapRows：反复遍历同一个结果集，测量每行的映射开销；
+ * mapFirstRow：每次使用另一个结果集的第一行，包括读取元数据、查找绑定计划的开销（相当于每次查询只返回一行）。
+ *
+ * @author Gavin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PoRowMapperBenchmark {
+
+    @Param({ "wide", "join" })
+    public String po;
+
+    @Param({ "1", "100" })
+    public int rows;
+
+    private RowMapper<?> mapper;
+    private SimpleResultSet rs;
+    private SimpleResultSet[] singleRows;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Class<?> poClass = "wide".equals(po) ? WidePo.class : OrderPo.class;
+        mapper = PoRowMapper.instance(poClass);
+        rs = Fixtures.resultSet(poClass, rows);
+        singleRows = new SimpleResultSet[] { Fixtures.resultSet(poClass, 1), Fixtures.resultSet(poClass, 1) };
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        int i = 0;
+        while (rs.next()) {
+            bh.consume(mapper.mapRow(rs, i++));
+        }
+    }
+
+    @Benchmark
+    public Object mapFirstRow() throws SQLException {
+        SimpleResultSet single = singleRows[next++ & 1];
+        single.beforeFirst();
+        single.next();
+        return mapper.mapRow(single, 0);
+    }
+}
@@ -0,0 +1,88 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.PoDefinition;
+import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.metrics.SqlLogger;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 生成查询语句（PoUtils.getQuerySQL/getPageSQL）及解析查询条件（PoUtils.parseFilter）
+ *
+ * getQuerySQL的结果按条件缓存在QueryStatementCache中，测量的是缓存命中时的开销；
+ * getPageSQL每次都重新拼接语句，可以看出不使用缓存时生成语句的开销。
+ *
+ * @author Gavin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PoUtilsBenchmark {
+
+    private static final String WIDE_FILTER = "{#status}=? and {#category}=? and {#createdAt}>?";
+    private static final String JOIN_FILTER = "{#status}=? and {#customer$level}>? and {#customer$city}=?";
+
+    private PoDefinition wide;
+    private PoDefinition join;
+
+    @Setup
+    public void setUp() {
+        SqlLogger.setMode(SqlLogger.Mode.OFF);
+        wide = PoDefinition.instance(WidePo.class);
+        join = PoDefinition.instance(OrderPo.class);
+    }
+
+    @Benchmark
+    public String querySqlWide() {
+        return PoUtils.getQuerySQL(H2Dialect.INSTANCE, wide, null, null, 0, 20, "{#createdAt} desc", null,
+                WIDE_FILTER, null);
+    }
+
+    @Benchmark
+    public String querySqlWideInclude() {
+        return PoUtils.getQuerySQL(H2Dialect.INSTANCE, wide, "id,name,status,createdAt", null, 0, 20, null, null,
+                WIDE_FILTER, null);
+    }
+
+    @Benchmark
+    public String querySqlJoin() {
+        return PoUtils.getQuerySQL(H2Dialect.INSTANCE, join, null, null, 0, 20, "{#createdAt} desc", null,
+                JOIN_FILTER, null);
+    }
+
+    @Benchmark
+    public String pageSqlWide() {
+        return PoUtils.getPageSQL(H2Dialect.INSTANCE, wide, null, null, 0, 20, "{#createdAt} desc", WIDE_FILTER);
+    }
+
+    @Benchmark
+    public String pageSqlJoin() {
+        return PoUtils.getPageSQL(H2Dialect.INSTANCE, join, null, null, 0, 20, "{#createdAt} desc", JOIN_FILTER);
+    }
+
+    @Benchmark
+    public String parseFilterWide() {
+        return PoUtils.parseFilter(wide, WIDE_FILTER, null);
+    }
+
+    @Benchmark
+    public String parseFilterJoin() {
+        return PoUtils.parseFilter(join, JOIN_FILTER, null);
+    }
+}
@@ -0,0 +1,24 @@
+package indi.gavin.orm.benchmarks;
+
+import indi.gavin.orm.ObjectWithIdDao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * WidePo的DAO
+ *
+ * @author Gavin
+ *
+ */
+public class WideDao implements ObjectWithIdDao<WidePo> {
+    private final JdbcTemplate db;
+
+    public WideDao(JdbcTemplate db) {
+        this.db = db;
+    }
+
+    @Override
+    public JdbcTemplate getJdbcTemplate() {
+        return db;
+    }
+}
@@ -0,0 +1,39 @@
+package indi.gavin.orm;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GenericDao的异步版本，各方法与GenericDao中的同名方法（去掉Async后缀）相同，
+ * 在getAsyncExecutor()指定的线程池中执行，返回CompletableFuture。
+ *
+ * @author Gavin
+ *
+ */
+public interface AsyncGenericDao<T> extends GenericDao<T>, AsyncSupport {
+
+    default CompletableFuture<Integer> createAsync(T entity) {
+        return async(() -> create(entity));
+    }
+
+    default CompletableFuture<int[]> createAllAsync(Collection<T> entities) {
+        return async(() -> createAll(entities));
+    }
+
+    default CompletableFuture<Integer> upsertAsync(T entity, String updateFields) {
+        return async(() -> upsert(entity, updateFields));
+    }
+
+    default CompletableFuture<int[]> upsertAllAsync(Collection<T> entities) {
+        return async(() -> upsertAll(entities));
+    }
+
+    default CompletableFuture<Integer> updateAsync(T entity, String includeFields, String excludeFields, String filter,
+            Object... filterArgs) {
+        return async(() -> update(entity, includeFields, excludeFields, filter, filterArgs));
+    }
+
+    default CompletableFuture<Integer> deleteAsync(String filter, Object... filterArgs) {
+        return async(() -> delete(filter, filterArgs));
+    }
+}
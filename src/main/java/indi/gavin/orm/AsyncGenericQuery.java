@@ -0,0 +1,51 @@
+package indi.gavin.orm;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GenericQuery的异步版本，各方法与GenericQuery中的同名方法（去掉Async后缀）相同，
+ * 在getAsyncExecutor()指定的线程池中执行，返回CompletableFuture。
+ *
+ * @author Gavin
+ *
+ */
+public interface AsyncGenericQuery<T> extends GenericQuery<T>, AsyncSupport {
+
+    default CompletableFuture<List<T>> queryForListAsync(String includeFields, String excludeFields, int start,
+            int count, String orderByQL, String groupByQL, String filterQL, Object... filterArgs) {
+        return async(() -> queryForList(includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
+                filterArgs));
+    }
+
+    default <R> CompletableFuture<List<R>> queryForListAsAsync(Class<R> clazz, String includeFields,
+            String excludeFields, int start, int count, String orderByQL, String groupByQL, String filterQL,
+            Object... filterArgs) {
+        return async(() -> queryForListAs(clazz, includeFields, excludeFields, start, count, orderByQL, groupByQL,
+                filterQL, filterArgs));
+    }
+
+    default CompletableFuture<T> queryForObjectAsync(String includeFields, String excludeFields, String filterQL,
+            Object... filterArgs) {
+        return async(() -> queryForObject(includeFields, excludeFields, filterQL, filterArgs));
+    }
+
+    default <R> CompletableFuture<R> queryForObjectAsAsync(Class<R> clazz, String includeFields,
+            String excludeFields, String filterQL, Object... filterArgs) {
+        return async(() -> queryForObjectAs(clazz, includeFields, excludeFields, filterQL, filterArgs));
+    }
+
+    default <R> CompletableFuture<R> queryForValueAsync(Class<R> valueClass, String expression, String filterQL,
+            Object... filterArgs) {
+        return async(() -> queryForValue(valueClass, expression, filterQL, filterArgs));
+    }
+
+    default CompletableFuture<Page<T>> queryPageAsync(String includeFields, String excludeFields, int start,
+            int count, String orderByQL, String filterQL, Object... filterArgs) {
+        return async(() -> queryPage(includeFields, excludeFields, start, count, orderByQL, filterQL, filterArgs));
+    }
+
+    default CompletableFuture<Long> queryForCountAsync(String filterQL, Object... filterArgs) {
+        return async(() -> queryForCount(filterQL, filterArgs));
+    }
+}
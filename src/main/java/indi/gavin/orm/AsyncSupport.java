@@ -0,0 +1,30 @@
+package indi.gavin.orm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 异步DAO的公共部分：在getAsyncExecutor()指定的线程池中执行同步的DAO方法，返回CompletableFuture。
+ *
+ * 异步执行的SQL不在调用者的事务中，需要在同一事务中执行的操作请使用同步方法。
+ *
+ * @author Gavin
+ *
+ */
+public interface AsyncSupport {
+
+    /**
+     * 异步执行时使用的线程池，默认为DaoExecutors.getDefault()，DAO可覆盖此方法
+     */
+    default Executor getAsyncExecutor() {
+        return DaoExecutors.getDefault();
+    }
+
+    /**
+     * 异步执行任意DAO操作，比如：dao.async(() -> dao.get(id))
+     */
+    default <R> CompletableFuture<R> async(Supplier<R> action) {
+        return CompletableFuture.supplyAsync(action, getAsyncExecutor());
+    }
+}
@@ -0,0 +1,218 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.dialect.Dialects;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoOperation;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 记录数的统计方式。
+ *
+ * 1. exact：每次执行“select count(*)”，结果精确；
+ * 2. cached：按查询条件（SQL语句及参数）缓存count(*)的结果，在指定时间内或通过本框架修改相关表之前直接返回缓存的结果；
+ * 3. estimated：先通过数据库的执行计划（EXPLAIN）估算记录数，估算值不小于阈值时直接返回估算值，
+ *    否则（或数据库不支持估算时）执行count(*)。适用于大表的分页，记录数很多时总数不必精确。
+ *
+ * 策略对象不可变，可以定义为常量供多个DAO共用。
+ *
+ * @author Gavin
+ *
+ */
+public final class CountStrategy {
+    private static Logger logger = LoggerFactory.getLogger(CountStrategy.class);
+
+    private static final int MAX_CACHED_COUNTS = 1024;
+
+    private static final CountStrategy EXACT = new CountStrategy(Mode.EXACT, 0, 0);
+
+    //count(*)结果缓存：key->SQL语句及参数
+    private static final ConcurrentHashMap<Key, CachedCount> counts = new ConcurrentHashMap<Key, CachedCount>();
+
+    private enum Mode {
+        EXACT, CACHED, ESTIMATED
+    }
+
+    private final Mode mode;
+    private final long ttlNanos;
+    private final long threshold;
+
+    private CountStrategy(Mode mode, long ttlNanos, long threshold) {
+        this.mode = mode;
+        this.ttlNanos = ttlNanos;
+        this.threshold = threshold;
+    }
+
+    /**
+     * 每次执行count(*)
+     */
+    public static CountStrategy exact() {
+        return EXACT;
+    }
+
+    /**
+     * 缓存count(*)的结果
+     *
+     * @param ttlMillis 缓存时间（毫秒）
+     */
+    public static CountStrategy cached(long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, ttlMillis);
+        }
+        return new CountStrategy(Mode.CACHED, TimeUnit.MILLISECONDS.toNanos(ttlMillis), 0);
+    }
+
+    /**
+     * 根据执行计划估算记录数，估算值小于threshold时执行count(*)
+     *
+     * @param threshold 估算值不小于此值时直接返回估算值
+     */
+    public static CountStrategy estimated(long threshold) {
+        if (threshold < 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, threshold);
+        }
+        return new CountStrategy(Mode.ESTIMATED, 0, threshold);
+    }
+
+    /**
+     * 是否每次执行count(*)
+     */
+    public boolean isExact() {
+        return mode == Mode.EXACT;
+    }
+
+    /**
+     * 统计PO表中符合条件的记录数
+     */
+    public long count(JdbcTemplate db, Class<?> poClass, String filterQL, Object... filterArgs) {
+        PoDefinition poDef = PoDefinition.instance(poClass);
+        StringBuilder sbWhere = new StringBuilder();
+        sbWhere.append(" from ").append(PoUtils.getQueryFrom(poDef));
+        PoUtils.appendWhere(sbWhere, poDef, filterQL, null);
+        String where = sbWhere.toString();
+
+        switch (mode) {
+        case CACHED:
+            return countCached(db, poClass, "select count(*)" + where, filterArgs);
+        case ESTIMATED:
+            long estimate = estimate(db, "select 1" + where, filterArgs);
+            if (estimate >= threshold && estimate > 0) {
+                return estimate;
+            }
+            return countExact(db, poClass, "select count(*)" + where, filterArgs);
+        default:
+            return countExact(db, poClass, "select count(*)" + where, filterArgs);
+        }
+    }
+
+    /**
+     * 清空缓存的count(*)结果
+     */
+    public static void clearCache() {
+        counts.clear();
+    }
+
+    private long countExact(JdbcTemplate db, Class<?> poClass, String sql, Object[] args) {
+        long begin = DaoMetrics.begin();
+        Long count = DaoMetrics.execute(poClass, DaoOperation.QUERY_FOR_VALUE, sql, args, begin, null,
+                () -> QueryResultCache.queryForValue(db, poClass, Long.class, sql, args), r -> 1);
+        return count == null ? 0 : count;
+    }
+
+    private long countCached(JdbcTemplate db, Class<?> poClass, String sql, Object[] args) {
+        Key key = new Key(db, sql, args);
+        CachedCount cached = counts.get(key);
+        if (cached != null && System.nanoTime() - cached.loadedAt < ttlNanos
+                && QueryResultCache.isCurrent(poClass, cached.versions)) {
+            return cached.count;
+        }
+
+        long[] versions = QueryResultCache.getTableVersions(poClass);
+        long loadedAt = System.nanoTime();
+        long count = countExact(db, poClass, sql, args);
+        if (counts.size() >= MAX_CACHED_COUNTS) {
+            Iterator<Key> it = counts.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        counts.put(key, new CachedCount(count, versions, loadedAt));
+        return count;
+    }
+
+    private long estimate(JdbcTemplate db, String sql, Object[] args) {
+        try {
+            long estimate = Dialects.of(db).estimateRowCount(db, sql, args);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Estimated {} rows for: {}", estimate, sql);
+            }
+            return estimate;
+        } catch (DataAccessException e) {
+            logger.warn("Can't estimate row count: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+        case CACHED:
+            return "cached(" + TimeUnit.NANOSECONDS.toMillis(ttlNanos) + "ms)";
+        case ESTIMATED:
+            return "estimated(" + threshold + ")";
+        default:
+            return "exact";
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class CachedCount {
+        final long count;
+        //查询前各表的版本号
+        final long[] versions;
+        final long loadedAt;
+
+        CachedCount(long count, long[] versions, long loadedAt) {
+            this.count = count;
+            this.versions = versions;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Key {
+        private final JdbcTemplate db;
+        private final String sql;
+        private final Object[] args;
+        private final int hash;
+
+        Key(JdbcTemplate db, String sql, Object[] args) {
+            this.db = db;
+            this.sql = sql;
+            this.args = QueryResultCache.copyArgs(args);
+            this.hash = 31 * (31 * System.identityHashCode(db) + sql.hashCode()) + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return hash == k.hash && db == k.db && sql.equals(k.sql) && Arrays.deepEquals(args, k.args);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package indi.gavin.orm;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 异步DAO（AsyncGenericQuery、AsyncGenericDao）默认使用的线程池。
+ *
+ * 运行在Java 21及以上版本时使用虚拟线程（每个任务一个虚拟线程），否则使用有界线程池：
+ * 线程数为CPU数的2倍（至少4个），队列满时由调用者线程执行，避免无限制地积压任务。
+ * 也可以通过setDefault指定其它线程池，比如与数据库连接池大小一致的线程池。
+ *
+ * 注意：异步执行的SQL不在调用者的事务中（Spring事务绑定在线程上），每次调用单独获取连接。
+ *
+ * @author Gavin
+ *
+ */
+public final class DaoExecutors {
+    private static Logger logger = LoggerFactory.getLogger(DaoExecutors.class);
+
+    private static final int QUEUE_SIZE = 1024;
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private DaoExecutors() {
+    }
+
+    /**
+     * 取得默认线程池，第一次调用时创建
+     */
+    public static ExecutorService getDefault() {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (DaoExecutors.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = createDefault();
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 指定默认线程池，原来的线程池由调用者负责关闭
+     */
+    public static void setDefault(ExecutorService executor) {
+        if (executor == null) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, "executor");
+        }
+        defaultExecutor = executor;
+    }
+
+    /**
+     * 当前JVM是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    private static ExecutorService createDefault() {
+        Method factory = virtualThreadFactory();
+        if (factory != null) {
+            try {
+                ExecutorService executor = (ExecutorService) factory.invoke(null);
+                logger.info("Async DAO executor: virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.warn("Can't create virtual thread executor: {}", e.toString());
+            }
+        }
+        return newBoundedPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * 创建有界线程池：固定线程数，队列满时由调用者线程执行
+     */
+    public static ExecutorService newBoundedPool(int threads) {
+        if (threads <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, threads);
+        }
+        AtomicInteger seq = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "orm-async-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("Async DAO executor: bounded pool of {} threads", threads);
+        return executor;
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor（Java 21+），不支持时返回null
+    private static Method virtualThreadFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
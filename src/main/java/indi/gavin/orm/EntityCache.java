@@ -0,0 +1,379 @@
+package indi.gavin.orm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * PO实体缓存（按id缓存ObjectWithIdDao.get的结果）。
+ *
+ * 每个PO类一个缓存区，通过@PoTable(cacheSize=...,cacheTtl=...)或EntityCache.enable启用。
+ * 缓存区按id的hash分为若干段，每段是一个按访问顺序淘汰的LRU表，读写只锁定所在的段。
+ * 段锁使用ReentrantLock而不是synchronized，在虚拟线程（Java 21+）中等待锁时不会占住载体线程。
+ *
+ * 一致性：
+ * 1. 通过GenericDaoHelper修改、删除记录时自动淘汰：按id修改/删除时淘汰该id，按其它条件修改/删除时清空整个缓存区；
+ *    在事务中修改时，事务结束后再淘汰一次，避免其它线程在提交前重新加载旧数据。
+ * 2. 加载数据期间所在的段发生过淘汰时，加载结果不放入缓存；在事务中加载的数据也不放入缓存。
+ * 3. 放入及取出时都复制对象（包括嵌套对象），调用者修改返回的对象不影响缓存；
+ *    嵌套对象以外的可变属性（如Date、数组）仍与缓存共享，调用者不应修改。
+ * 不经过本框架直接修改数据库的，只能依赖过期时间（cacheTtl）。
+ *
+ * @author Gavin
+ *
+ */
+public final class EntityCache {
+
+    //缓存区：PO类->缓存（未启用时为null）
+    private static final ClassValue<AtomicReference<EntityCache>> regions =
+            new ClassValue<AtomicReference<EntityCache>>() {
+                @Override
+                protected AtomicReference<EntityCache> computeValue(Class<?> poClass) {
+                    PoDefinition poDef = PoDefinition.instance(poClass);
+                    EntityCache cache = null;
+                    if (poDef.getCacheSize() > 0) {
+                        long ttlMillis = TimeUnit.SECONDS.toMillis(poDef.getCacheTtl());
+                        cache = new EntityCache(poClass, poDef.getCacheSize(), ttlMillis);
+                    }
+                    return new AtomicReference<EntityCache>(cache);
+                }
+            };
+
+    /**
+     * 取得PO类的缓存，未启用时返回null
+     */
+    public static EntityCache of(Class<?> poClass) {
+        return regions.get(poClass).get();
+    }
+
+    /**
+     * 启用（或重新设置）PO类的缓存，优先于@PoTable中的设置
+     *
+     * @param maxSize 最多缓存多少个对象
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期
+     */
+    public static EntityCache enable(Class<?> poClass, int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, maxSize);
+        }
+        EntityCache cache = new EntityCache(poClass, maxSize, ttlMillis);
+        regions.get(poClass).set(cache);
+        return cache;
+    }
+
+    /**
+     * 停用PO类的缓存
+     */
+    public static void disable(Class<?> poClass) {
+        regions.get(poClass).set(null);
+    }
+
+    /**
+     * 淘汰PO类缓存中的指定对象，缓存未启用时什么也不做
+     */
+    public static void evict(Class<?> poClass, Object id) {
+        EntityCache cache = of(poClass);
+        if (cache != null) {
+            cache.evictAfterTransaction(id);
+        }
+    }
+
+    /**
+     * 清空PO类的缓存，缓存未启用时什么也不做
+     */
+    public static void invalidate(Class<?> poClass) {
+        EntityCache cache = of(poClass);
+        if (cache != null) {
+            cache.evictAfterTransaction(null);
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Class<?> poClass;
+    private final Supplier<?> instantiator;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private EntityCache(Class<?> poClass, int maxSize, long ttlMillis) {
+        this.poClass = poClass;
+        this.instantiator = PoAccessors.instantiator(poClass);
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+
+        //每段至少64个对象
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxSize / 64)));
+        this.segments = new Segment[count];
+        int perSegment = (maxSize + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * 取得缓存的对象，缓存中没有（或已过期）时通过loader加载
+     *
+     * @param loader 从数据库加载对象，返回null时不缓存
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object id, Supplier<T> loader) {
+        String key = String.valueOf(id);
+        Segment segment = segmentOf(key);
+
+        Object value = segment.get(key, ttlNanos == 0 ? 0 : System.nanoTime());
+        if (value != null) {
+            hits.increment();
+            return (T) copy(value);
+        }
+
+        misses.increment();
+        long gen = segment.generation;
+        T loaded = loader.get();
+        if (loaded != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            Object copied = copy(loaded);
+            long expireAt = ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos;
+            segment.lock.lock();
+            try {
+                //加载期间发生过淘汰时放弃，避免缓存旧数据
+                if (segment.generation == gen) {
+                    segment.map.put(key, new CacheEntry(copied, expireAt));
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 批量取得缓存的对象，缓存中没有的id一次性通过loader加载
+     *
+     * @param ids 对象id（不重复）
+     * @param loader 加载指定id的对象，返回id->对象，数据库中不存在的id不包括在内
+     * @return id->对象，只包括缓存中或数据库中存在的对象
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getAll(Collection<String> ids, Function<List<String>, Map<String, T>> loader) {
+        Map<String, T> result = new HashMap<String, T>();
+        List<String> missing = new ArrayList<String>();
+        long now = ttlNanos == 0 ? 0 : System.nanoTime();
+        for (String id : ids) {
+            Object value = segmentOf(id).get(id, now);
+            if (value != null) {
+                result.put(id, (T) copy(value));
+            } else {
+                missing.add(id);
+            }
+        }
+        hits.add(result.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.add(missing.size());
+        long[] gens = new long[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            gens[i] = segments[i].generation;
+        }
+        Map<String, T> loaded = loader.apply(missing);
+        boolean cacheable = !TransactionSynchronizationManager.isActualTransactionActive();
+        long expireAt = ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos;
+        for (Map.Entry<String, T> e : loaded.entrySet()) {
+            if (cacheable && e.getValue() != null) {
+                int index = segmentIndex(e.getKey());
+                Segment segment = segments[index];
+                Object copied = copy(e.getValue());
+                segment.lock.lock();
+                try {
+                    if (segment.generation == gens[index]) {
+                        segment.map.put(e.getKey(), new CacheEntry(copied, expireAt));
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 淘汰指定对象
+     */
+    public void evict(Object id) {
+        String key = String.valueOf(id);
+        Segment segment = segmentOf(key);
+        segment.lock.lock();
+        try {
+            segment.generation++;
+            segment.map.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * 清空缓存（统计数据保留）
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.generation++;
+                segment.map.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 立即淘汰，在事务中时事务结束后再淘汰一次
+     *
+     * @param id 为null时清空缓存
+     */
+    private void evictAfterTransaction(Object id) {
+        if (id == null) {
+            clear();
+        } else {
+            evict(id);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (id == null) {
+                        clear();
+                    } else {
+                        evict(id);
+                    }
+                }
+            });
+        }
+    }
+
+    public Class<?> getPoClass() {
+        return poClass;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 因容量或过期而淘汰的对象数（不包括修改数据时的主动淘汰）
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment segmentOf(String key) {
+        return segments[segmentIndex(key)];
+    }
+
+    private int segmentIndex(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (segments.length - 1);
+    }
+
+    private Object copy(Object source) {
+        return PoAccessPlan.copy(source, instantiator.get());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class CacheEntry {
+        final Object value;
+        //过期时间（System.nanoTime），0表示不过期
+        final long expireAt;
+
+        CacheEntry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的LRU表，超过容量时淘汰最久未访问的对象
+     */
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, CacheEntry> map;
+
+        //每次淘汰时递增（持有lock时修改），加载期间发生过淘汰的结果不放入缓存
+        private volatile long generation;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Object get(String key, long now) {
+            lock.lock();
+            try {
+                CacheEntry e = map.get(key);
+                if (e == null) {
+                    return null;
+                }
+                if (e.expireAt != 0 && e.expireAt - now <= 0) {
+                    map.remove(key);
+                    evictions.increment();
+                    return null;
+                }
+                return e.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package indi.gavin.orm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * 预编译的查询条件模板。
+ *
+ * 模板语法与PoUtils.FilterParseContext一致：“{”与“}”之间为表达式，其余为原样输出的SQL片段。
+ * 最常见的“{#field}”形式在编译时直接解析为PO属性对应的字段名，只有其它表达式才交给SpEL处理。
+ * 编译结果不可变，按PoDefinition缓存（参见PoDefinition.getFilterTemplate），可被多个线程共享。
+ *
+ * @author Gavin
+ *
+ */
+public final class FilterTemplate {
+
+    private static final ExpressionParser parser = new SpelExpressionParser();
+
+    private final String template;
+
+    //模板片段：String表示SQL片段或已解析的字段名，Expression表示需要计算的SpEL表达式
+    private final Object[] fragments;
+
+    //SpEL表达式中可引用的变量：key->po_fieldname，value->table_alias.column_name
+    private final Map<String, Object> variables;
+
+    private final String staticValue;
+
+    private FilterTemplate(String template, Object[] fragments, Map<String, Object> variables) {
+        this.template = template;
+        this.fragments = fragments;
+        this.variables = variables;
+
+        if (variables == null) {
+            StringBuilder sb = new StringBuilder(template.length());
+            for (Object f : fragments) {
+                sb.append((String) f);
+            }
+            this.staticValue = sb.toString();
+        } else {
+            this.staticValue = null;
+        }
+    }
+
+    /**
+     * 编译查询条件模板
+     */
+    static FilterTemplate compile(PoDefinition poDef, String template) {
+        List<Object> fragments = new ArrayList<Object>();
+        boolean dynamic = false;
+        int len = template.length();
+        int pos = 0;
+        StringBuilder literal = new StringBuilder();
+
+        while (pos < len) {
+            int prefix = template.indexOf('{', pos);
+            if (prefix < 0) {
+                literal.append(template, pos, len);
+                break;
+            }
+            literal.append(template, pos, prefix);
+
+            int suffix = findSuffix(template, prefix + 1);
+            if (suffix < 0) {
+                //语法错误，交给SpEL处理（并由SpEL报告错误）
+                return compileBySpel(poDef, template);
+            }
+            String expr = template.substring(prefix + 1, suffix).trim();
+            if (expr.isEmpty()) {
+                return compileBySpel(poDef, template);
+            }
+
+            String column = resolveColumn(poDef, expr);
+            if (column != null) {
+                literal.append(column);
+            } else {
+                if (literal.length() > 0) {
+                    fragments.add(literal.toString());
+                    literal.setLength(0);
+                }
+                fragments.add(parser.parseExpression(expr));
+                dynamic = true;
+            }
+            pos = suffix + 1;
+        }
+        if (literal.length() > 0 || fragments.isEmpty()) {
+            fragments.add(literal.toString());
+        }
+
+        return new FilterTemplate(template, fragments.toArray(), dynamic ? getVariables(poDef) : null);
+    }
+
+    private static FilterTemplate compileBySpel(PoDefinition poDef, String template) {
+        Expression expr = parser.parseExpression(template, PoUtils.FilterParseContext.instance());
+        return new FilterTemplate(template, new Object[] { expr }, getVariables(poDef));
+    }
+
+    /**
+     * 表达式为“#field”且field为PO属性时，返回对应的字段名；否则返回null
+     */
+    private static String resolveColumn(PoDefinition poDef, String expr) {
+        if (expr.length() < 2 || expr.charAt(0) != '#') {
+            return null;
+        }
+        for (int i = 1; i < expr.length(); i++) {
+            char c = expr.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$') {
+                return null;
+            }
+        }
+        return poDef.getFieldColumn(expr.substring(1));
+    }
+
+    /**
+     * 查找与前缀对应的“}”，跳过嵌套的括号及字符串常量
+     */
+    private static int findSuffix(String template, int from) {
+        int depth = 0;
+        char quote = 0;
+
+        for (int i = from; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            switch (c) {
+            case '\'':
+            case '"':
+                quote = c;
+                break;
+            case '{':
+            case '(':
+            case '[':
+                depth++;
+                break;
+            case ')':
+            case ']':
+                depth--;
+                break;
+            case '}':
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+                break;
+            default:
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, Object> getVariables(PoDefinition poDef) {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        for (String fieldName : poDef.getFields()) {
+            vars.put(fieldName, poDef.getFieldColumn(fieldName));
+        }
+        return vars;
+    }
+
+    /**
+     * 模板是否只包含SQL片段及字段引用（即计算结果与filterPo无关）
+     */
+    public boolean isStatic() {
+        return variables == null;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 计算模板
+     *
+     * @param filterPo SpEL表达式的根对象，可以为null
+     */
+    public String evaluate(Object filterPo) {
+        if (staticValue != null) {
+            return staticValue;
+        }
+
+        StandardEvaluationContext ctx;
+        if (filterPo == null) {
+            ctx = new StandardEvaluationContext();
+        } else {
+            ctx = new StandardEvaluationContext(filterPo);
+        }
+        ctx.setVariables(variables);
+
+        if (fragments.length == 1) {
+            return ((Expression) fragments[0]).getValue(ctx, String.class);
+        }
+
+        StringBuilder sb = new StringBuilder(template.length());
+        for (Object f : fragments) {
+            if (f instanceof String) {
+                sb.append((String) f);
+            } else {
+                String value = ((Expression) f).getValue(ctx, String.class);
+                if (value != null) {
+                    sb.append(value);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -2,6 +2,10 @@ package indi.gavin.orm;
 
 import indi.gavin.orm.helper.GenericDaoHelper;
 
+import java.util.Collection;
+
+import org.springframework.jdbc.support.KeyHolder;
+
 /**
  * 进行PO增加、修改、删除的通用实现
  */
@@ -18,6 +22,112 @@ public interface GenericDao<T> extends JdbcWired, ParameterizedPoHandler<T> {
         return helper.create(entity);
     }
 
+    /**
+     * 创建一条新记录，并取得数据库自动生成的主键（如自增id）。
+     * 
+     * @param entity 实体对象
+     * @param keyHolder 用于保存生成的主键
+     * @return 受影响的记录行数（正常情况下应该为“1”）
+     */
+    default int create(T entity, KeyHolder keyHolder) {
+        GenericDaoHelper helper = GenericDaoHelperFactory.getHelper(getJdbcTemplate(), getPoClass());
+
+        return helper.create(entity, keyHolder);
+    }
+
+    /**
+     * 批量创建记录，通过JDBC批处理提交，每批最多GenericDaoHelper.DEFAULT_BATCH_SIZE条。
+     * 
+     * @param entities 实体对象
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致
+     */
+    default int[] createAll(Collection<T> entities) {
+        return createAll(entities, GenericDaoHelper.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 批量创建记录。
+     * 
+     * getMultiRowInsert()大于0时使用多行insert语句，否则通过JDBC批处理提交。
+     * 
+     * @param entities 实体对象
+     * @param batchSize 每批最多提交多少条记录（仅对JDBC批处理有效）
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致
+     */
+    default int[] createAll(Collection<T> entities, int batchSize) {
+        GenericDaoHelper helper = GenericDaoHelperFactory.getHelper(getJdbcTemplate(), getPoClass());
+
+        int multiRows = getMultiRowInsert();
+        if (multiRows > 0) {
+            return helper.createAllMultiRow(entities, multiRows);
+        }
+        return helper.createAll(entities, batchSize);
+    }
+
+    /**
+     * 批量创建记录时，每条insert语句最多包含多少行，0表示不使用多行insert。
+     * 
+     * 默认取PO类上@PoTable(multiRowInsert=...)的设置，DAO可覆盖此方法。
+     */
+    default int getMultiRowInsert() {
+        return PoDefinition.instance(getPoClass()).getMultiRowInsert();
+    }
+
+    /**
+     * 插入一条记录，记录（按@PoTable(keys=...)定义的唯一键判断）已存在时更新除唯一键外的所有非空属性。
+     * 
+     * 与先查询再创建或修改相比，只需一次数据库访问，并且在并发时不会因记录已存在而失败。
+     * 
+     * @param entity 实体对象
+     * @return 受影响的记录行数，取决于数据库（如MySQL插入时为1、更新时为2、未变化时为0）
+     */
+    default int upsert(T entity) {
+        return upsert(entity, null);
+    }
+
+    /**
+     * 插入一条记录，记录已存在时更新指定的属性。
+     * 
+     * @param entity 实体对象
+     * @param updateFields 记录已存在时更新哪些属性，多个属性之间用逗号分隔；为空时更新除唯一键外的所有非空属性
+     * @return 受影响的记录行数
+     */
+    default int upsert(T entity, String updateFields) {
+        GenericDaoHelper helper = GenericDaoHelperFactory.getHelper(getJdbcTemplate(), getPoClass());
+
+        return helper.upsert(entity, updateFields);
+    }
+
+    /**
+     * 批量upsert，通过JDBC批处理提交，每批最多GenericDaoHelper.DEFAULT_BATCH_SIZE条。
+     * 
+     * @param entities 实体对象
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致
+     */
+    default int[] upsertAll(Collection<T> entities) {
+        return upsertAll(entities, null, GenericDaoHelper.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 批量upsert。
+     * 
+     * getMultiRowInsert()大于0时使用多行语句，否则通过JDBC批处理提交。
+     * 
+     * @param entities 实体对象
+     * @param updateFields 记录已存在时更新哪些属性，为空时更新除唯一键外的所有非空属性
+     * @param batchSize 每批最多提交多少条记录（仅用于JDBC批处理）
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致；使用多行语句时参见GenericDaoHelper.upsertAllMultiRow
+     */
+    default int[] upsertAll(Collection<T> entities, String updateFields, int batchSize) {
+        GenericDaoHelper helper = GenericDaoHelperFactory.getHelper(getJdbcTemplate(), getPoClass());
+
+        int multiRows = getMultiRowInsert();
+        if (multiRows > 0) {
+            return helper.upsertAllMultiRow(entities, updateFields, multiRows);
+        }
+        return helper.upsertAll(entities, updateFields, batchSize);
+    }
+
     /**
      * 修改PO记录。
      * 
@@ -5,7 +5,11 @@ package indi.gavin.orm;
 
 import indi.gavin.orm.helper.GenericDaoHelper;
 
+import java.util.Map;
+
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
 
 
 /**
@@ -22,7 +26,28 @@ public final class GenericDaoHelperFactory {
         //do nothing
     }
 
+    //helper缓存：PO类->(JdbcTemplate->helper)
+    //JdbcTemplate可能是动态创建的（如每个租户一个），缓存项使用弱引用，不阻止JdbcTemplate及其DataSource被回收；
+    //helper本身引用JdbcTemplate，只弱引用键不起作用，因此整个缓存项（键和helper）都是弱引用，被回收后重新创建。
+    //JdbcTemplate没有重写equals/hashCode，按实例区分
+    private static final ClassValue<Map<JdbcTemplate, GenericDaoHelper>> helpers =
+            new ClassValue<Map<JdbcTemplate, GenericDaoHelper>>() {
+                @Override
+                protected Map<JdbcTemplate, GenericDaoHelper> computeValue(Class<?> poClass) {
+                    return new ConcurrentReferenceHashMap<JdbcTemplate, GenericDaoHelper>(4, ReferenceType.WEAK);
+                }
+            };
+
     public static GenericDaoHelper getHelper(JdbcTemplate db, Class<?> poClass) {
-        return new GenericDaoHelper(db, poClass);
+        Map<JdbcTemplate, GenericDaoHelper> m = helpers.get(poClass);
+        GenericDaoHelper helper = m.get(db);
+        if (helper == null) {
+            helper = new GenericDaoHelper(db, poClass);
+            GenericDaoHelper prev = m.putIfAbsent(db, helper);
+            if (prev != null) {
+                helper = prev;
+            }
+        }
+        return helper;
     }
 }
@@ -1,10 +1,18 @@
 package indi.gavin.orm;
 
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.Dialects;
+import indi.gavin.orm.helper.StreamingQueryHelper;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoOperation;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.util.StringUtils;
 
@@ -15,8 +23,11 @@ import org.springframework.util.StringUtils;
 public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
     static Logger LOG =  LoggerFactory.getLogger(GenericQuery.class);
 
+    /**
+     * 取得一次查询使用的映射器（每次查询调用一次）
+     */
     default <R> RowMapper<R> getRowMapper(Class<R> clazz) {
-        return PoRowMapper.instance(clazz);
+        return PoRowMapper.forQuery(clazz);
     }
 
     /**
@@ -34,28 +45,21 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default List<T> queryForList(String includeFields, String excludeFields, int start, int count, String orderByQL,
             String groupByQL, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        null);
-
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, null);
 
-        RowMapper<T> rowMapper = getRowMapper(getPoClass());
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        List<T> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, filterArgs, begin, rowMapper,
+                () -> QueryResultCache.queryForList(getJdbcTemplate(), getPoClass(), getPoClass(),
+                        sql, rowMapper, filterArgs),
+                DaoMetrics::sizeOf);
     }
 
     /**
@@ -63,28 +67,20 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> List<R> queryForListAs(Class<R> clazz, String includeFields, String excludeFields, int start,
             int count, String orderByQL, String groupByQL, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        null);
-
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, null);
 
-        RowMapper<R> rowMapper = getRowMapper(clazz);
+        RowMapper<R> rowMapper = DaoMetrics.timed(getRowMapper(clazz), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        List<R> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, filterArgs, begin, rowMapper,
+                () -> QueryResultCache.queryForList(getJdbcTemplate(), getPoClass(), clazz, sql, rowMapper, filterArgs),
+                DaoMetrics::sizeOf);
     }
 
     /**
@@ -92,23 +88,15 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> List<R> queryForListWith(RowMapper<R> rowMapper, String includeFields, String excludeFields, int start,
             int count, String orderByQL, String groupByQL, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        null);
-
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
-
-        List<R> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, null);
 
-        return result;
+        RowMapper<R> mapper = DaoMetrics.timed(rowMapper, begin);
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, filterArgs, begin, mapper,
+                () -> getJdbcTemplate().query(sql, mapper, filterArgs), DaoMetrics::sizeOf);
     }
 
     /**
@@ -126,29 +114,22 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default List<T> queryForList(String includeFields, String excludeFields, int start, int count, String orderByQL,
             String groupByQL, String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        filterPo);
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, filterPo);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
-
-        RowMapper<T> rowMapper = getRowMapper(getPoClass());
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        List<T> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, null, begin, rowMapper,
+                () -> QueryResultCache.queryForList(getJdbcTemplate(), getPoClass(), getPoClass(),
+                        sql, rowMapper, null),
+                DaoMetrics::sizeOf);
     }
 
     /**
@@ -156,28 +137,20 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> List<R> queryForListAs(Class<R> clazz, String includeFields, String excludeFields, int start,
             int count, String orderByQL, String groupByQL, String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        filterPo);
-
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, filterPo);
 
-        RowMapper<R> rowMapper = getRowMapper(clazz);
+        RowMapper<R> rowMapper = DaoMetrics.timed(getRowMapper(clazz), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
-        List<R> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, null, begin, rowMapper,
+                () -> QueryResultCache.queryForList(getJdbcTemplate(), getPoClass(), clazz, sql, rowMapper, null),
+                DaoMetrics::sizeOf);
     }
 
     /**
@@ -185,24 +158,16 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> List<R> queryForListWith(RowMapper<R> rowMapper, String includeFields, String excludeFields, int start,
             int count, String orderByQL, String groupByQL, String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql =
-                PoUtils.getQuerySQL(poDef, includeFields, excludeFields, start, count, orderByQL, groupByQL, filterQL,
-                        filterPo);
+                PoUtils.getQuerySQL(Dialects.of(getJdbcTemplate()), poDef, includeFields, excludeFields, start, count,
+                        orderByQL, groupByQL, filterQL, filterPo);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
-
-        List<R> result;
-        try {
-            result = getJdbcTemplate().query(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        RowMapper<R> mapper = DaoMetrics.timed(rowMapper, begin);
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, null, begin, mapper,
+                () -> getJdbcTemplate().query(sql, mapper), DaoMetrics::sizeOf);
     }
 
     /**
@@ -216,25 +181,16 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      * @return PO实例，null表示没有符合条件的记录
      */
     default T queryForObject(String includeFields, String excludeFields, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, null);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
-
-        RowMapper<T> rowMapper = getRowMapper(getPoClass());
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
-        T result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, filterArgs, begin, rowMapper,
+                () -> getJdbcTemplate().queryForObject(sql, rowMapper, filterArgs), r -> 1);
     }
 
     /**
@@ -242,25 +198,17 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> R queryForObjectAs(Class<R> clazz, String includeFields, String excludeFields, String filterQL,
             Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, null);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
-
-        RowMapper<R> rowMapper = getRowMapper(clazz);
+        RowMapper<R> rowMapper = DaoMetrics.timed(getRowMapper(clazz), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        R result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, filterArgs, begin, rowMapper,
+                () -> getJdbcTemplate().queryForObject(sql, rowMapper, filterArgs), r -> 1);
     }
 
     /**
@@ -268,21 +216,13 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> R queryForObjectWith(RowMapper<R> rowMapper, String includeFields, String excludeFields,
             String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, null);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
-
-        R result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper, filterArgs);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        RowMapper<R> mapper = DaoMetrics.timed(rowMapper, begin);
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, filterArgs, begin, mapper,
+                () -> getJdbcTemplate().queryForObject(sql, mapper, filterArgs), r -> 1);
     }
 
     /**
@@ -296,27 +236,18 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      * @return PO实例，null表示没有符合条件的记录
      */
     default T queryForObject(String includeFields, String excludeFields, String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, filterPo);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
-
-        RowMapper<T> rowMapper = getRowMapper(getPoClass());
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        T result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, null, begin, rowMapper,
+                () -> getJdbcTemplate().queryForObject(sql, rowMapper), r -> 1);
     }
 
     /**
@@ -324,27 +255,18 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> R queryForObjectAs(Class<R> clazz, String includeFields, String excludeFields, String filterQL,
             T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, filterPo);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
-
-        RowMapper<R> rowMapper = getRowMapper(clazz);
+        RowMapper<R> rowMapper = DaoMetrics.timed(getRowMapper(clazz), begin);
         if (rowMapper == null) {
             throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
 
-        R result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, null, begin, rowMapper,
+                () -> getJdbcTemplate().queryForObject(sql, rowMapper), r -> 1);
     }
 
     /**
@@ -352,22 +274,14 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      */
     default <R> R queryForObjectWith(RowMapper<R> rowMapper, String includeFields, String excludeFields,
             String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
 
         String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, null, null, filterQL, filterPo);
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} ", sql);
-        }
-
-        R result;
-        try {
-            result = getJdbcTemplate().queryForObject(sql, rowMapper);
-        } catch (EmptyResultDataAccessException e) {
-            result = null;
-        }
-
-        return result;
+        RowMapper<R> mapper = DaoMetrics.timed(rowMapper, begin);
+        return DaoMetrics.query(getPoClass(), DaoOperation.QUERY_FOR_OBJECT, sql, null, begin, mapper,
+                () -> getJdbcTemplate().queryForObject(sql, mapper), r -> 1);
     }
 
     /**
@@ -381,6 +295,7 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      * @return
      */
     default <R> R queryForValue(Class<R> valueClass, String expression, String filterQL, T filterPo) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         StringBuilder sb = new StringBuilder();
 
@@ -392,12 +307,8 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
 
         String sql = sb.toString();
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {}", sql);
-        }
-        R value = getJdbcTemplate().queryForObject(sql, valueClass);
-
-        return value;
+        return DaoMetrics.execute(getPoClass(), DaoOperation.QUERY_FOR_VALUE, sql, null, begin, null,
+                () -> QueryResultCache.queryForValue(getJdbcTemplate(), getPoClass(), valueClass, sql, null), r -> 1);
     }
 
     /**
@@ -411,6 +322,7 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
      * @return
      */
     default <R> R queryForValue(Class<R> valueClass, String expression, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(getPoClass());
         StringBuilder sb = new StringBuilder();
 
@@ -427,11 +339,263 @@ public interface GenericQuery<T> extends JdbcWired, ParameterizedPoHandler<T> {
        
 
         String sql = sb.toString();
-        if (LOG.isInfoEnabled()) {
-            LOG.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
+        return DaoMetrics.execute(getPoClass(), DaoOperation.QUERY_FOR_VALUE, sql, filterArgs, begin, null,
+                () -> QueryResultCache.queryForValue(getJdbcTemplate(), getPoClass(), valueClass, sql, filterArgs),
+                r -> 1);
+    }
+
+    /**
+     * 分页查询，同时返回本页数据及总记录数。
+     * 
+     * 统计方式为exact并且数据库支持窗口函数时，通过count(*) over()在一条语句中取得总记录数；
+     * 否则先查询本页数据，再按getCountStrategy()统计总记录数（两条语句共用已编译的查询条件模板）。
+     * 第一页的记录数不足count时，本页的记录数即为总记录数，无需再统计。
+     * 
+     * @param includeFields 查询结果中只包括哪些字段，可以为空
+     * @param excludeFields 查询结果中不包括哪些字段，可以为空
+     * @param start 从第几条记录开始（0-based）
+     * @param count 每页最多返回多少条记录
+     * @param orderByQL 排序方式
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     * @return 本页数据及总记录数
+     */
+    default Page<T> queryPage(String includeFields, String excludeFields, int start, int count, String orderByQL,
+            String filterQL, Object... filterArgs) {
+        if (count <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, count);
+        }
+        start = Math.max(start, 0);
+
+        CountStrategy strategy = getCountStrategy();
+        Dialect dialect = Dialects.of(getJdbcTemplate());
+        if (strategy.isExact() && dialect.supportsWindowFunctions()) {
+            long begin = DaoMetrics.begin();
+            PoDefinition poDef = PoDefinition.instance(getPoClass());
+            String sql = PoUtils.getPageSQL(dialect, poDef, includeFields, excludeFields, start, count, orderByQL,
+                    filterQL);
+
+            RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
+            if (rowMapper == null) {
+                throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
+            }
+            List<T> rows = new ArrayList<T>();
+            long[] total = new long[] { -1 };
+            DaoMetrics.execute(getPoClass(), DaoOperation.QUERY_FOR_LIST, sql, filterArgs, begin, rowMapper, () -> {
+                getJdbcTemplate().query(sql, rs -> {
+                    rows.add(rowMapper.mapRow(rs, rows.size()));
+                    total[0] = rs.getLong(Page.TOTAL_COLUMN);
+                }, filterArgs);
+                return rows;
+            }, DaoMetrics::sizeOf);
+
+            if (total[0] >= 0) {
+                return new Page<T>(rows, total[0], start, count);
+            }
+            if (start == 0) {
+                return new Page<T>(rows, 0, start, count);
+            }
+            //超出最后一页时没有返回任何行，只能另行统计
+            return new Page<T>(rows, queryForCount(strategy, filterQL, filterArgs), start, count);
+        }
+
+        List<T> rows = queryForList(includeFields, excludeFields, start, count, orderByQL, null, filterQL, filterArgs);
+        if (rows == null) {
+            rows = new ArrayList<T>();
+        }
+        long total;
+        if (start == 0 && rows.size() < count) {
+            total = rows.size();
+        } else {
+            total = queryForCount(strategy, filterQL, filterArgs);
+        }
+        return new Page<T>(rows, total, start, count);
+    }
+
+    /**
+     * 查询符合条件的记录数，统计方式由getCountStrategy()决定
+     * 
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     * @return 记录数（统计方式为estimated时可能是估算值）
+     */
+    default long queryForCount(String filterQL, Object... filterArgs) {
+        return queryForCount(getCountStrategy(), filterQL, filterArgs);
+    }
+
+    /**
+     * 按指定的统计方式查询符合条件的记录数
+     * 
+     * @param strategy 统计方式，参见CountStrategy
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     * @return 记录数（统计方式为estimated时可能是估算值）
+     */
+    default long queryForCount(CountStrategy strategy, String filterQL, Object... filterArgs) {
+        return strategy.count(getJdbcTemplate(), getPoClass(), filterQL, filterArgs);
+    }
+
+    /**
+     * 记录数的统计方式，默认每次执行count(*)；大表可覆盖此方法，返回CountStrategy.cached(...)或CountStrategy.estimated(...)
+     */
+    default CountStrategy getCountStrategy() {
+        return CountStrategy.exact();
+    }
+
+    /**
+     * 以流的方式查询PO，结果集通过只进游标逐行读取，不会全部加载到内存中。
+     * 
+     * 返回的Stream持有数据库连接，读取完最后一行或关闭Stream时释放，应在try-with-resources中使用；
+     * 关闭Stream时才通知DaoMetricsListener，执行时间包括调用者处理结果的时间。
+     * PostgreSQL只有在事务中才能逐行读取，连接处于auto-commit状态时会临时关闭auto-commit；
+     * MySQL逐行读取期间同一连接不能执行其它语句，Stream关闭前不能通过同一事务访问数据库。
+     * 
+     * @param fetchSize 每次从数据库读取的行数（JDBC fetch size），0表示使用驱动的默认值
+     * @param includeFields 查询结果中只包括哪些字段，可以为空
+     * @param excludeFields 查询结果中不包括哪些字段，可以为空
+     * @param orderByQL 排序方式
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     * @return PO流
+     */
+    default Stream<T> queryForStream(int fetchSize, String includeFields, String excludeFields, String orderByQL,
+            String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
+        PoDefinition poDef = PoDefinition.instance(getPoClass());
+        String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, orderByQL, null, filterQL, null);
+
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
+        if (rowMapper == null) {
+            throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
+        }
+
+        return DaoMetrics.stream(getPoClass(), DaoOperation.QUERY_FOR_STREAM, sql, filterArgs, begin, rowMapper,
+                () -> StreamingQueryHelper.stream(getJdbcTemplate(), sql, filterArgs, fetchSize, rowMapper));
+    }
+
+    /**
+     * 逐行处理查询结果，结果集通过只进游标逐行读取，不会全部加载到内存中。方法返回时数据库资源已释放。
+     * MySQL逐行读取期间同一连接不能执行其它语句，action不能通过同一事务访问数据库。
+     * 
+     * @param action 对每个PO执行的操作
+     * @param fetchSize 每次从数据库读取的行数（JDBC fetch size），0表示使用驱动的默认值
+     * @param includeFields 查询结果中只包括哪些字段，可以为空
+     * @param excludeFields 查询结果中不包括哪些字段，可以为空
+     * @param orderByQL 排序方式
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     */
+    default void forEach(Consumer<? super T> action, int fetchSize, String includeFields, String excludeFields,
+            String orderByQL, String filterQL, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
+        PoDefinition poDef = PoDefinition.instance(getPoClass());
+        String sql = PoUtils.getQuerySQL(poDef, includeFields, excludeFields, 0, 0, orderByQL, null, filterQL, null);
+
+        RowMapper<T> rowMapper = DaoMetrics.timed(getRowMapper(getPoClass()), begin);
+        if (rowMapper == null) {
+            throw new BizException(BizStatus.S_PERSISTENCE_NOT_ROWMAPPER_FOUND);
         }
-        R value = getJdbcTemplate().queryForObject(sql, valueClass, filterArgs);
 
-        return value;
+        DaoMetrics.execute(getPoClass(), DaoOperation.QUERY_FOR_STREAM, sql, filterArgs, begin, rowMapper, () -> {
+            int[] rows = new int[1];
+            StreamingQueryHelper.forEach(getJdbcTemplate(), sql, filterArgs, fetchSize, rowMapper, po -> {
+                rows[0]++;
+                action.accept(po);
+            });
+            return rows;
+        }, rows -> rows[0]);
+    }
+
+    /**
+     * 键集分页（seek）查询。
+     * 
+     * 以排序键代替“limit start,count”分页：下一页的查询条件为“(k1,k2) > (本页最后一行的k1,k2)”，
+     * 数据库无需扫描并丢弃前面的记录，因此翻到第N页与查询第1页的代价相同。排序键的组合应能唯一确定一条记录（如包括id）。
+     * 排序键对应的字段不能为null（null不能参与行值比较），本页最后一行的排序键为null时抛出异常。
+     * 
+     * @param includeFields 查询结果中只包括哪些字段，可以为空（排序键会自动加入）
+     * @param excludeFields 查询结果中不包括哪些字段，可以为空（不能包括排序键）
+     * @param keyFields 排序键，多个属性之间用“,”分隔，如：“createTime,id”
+     * @param descending 是否按排序键降序排列
+     * @param continuation 上一页返回的KeysetPage.getContinuation()，查询第一页时为null
+     * @param count 每页最多返回多少条记录
+     * @param filterQL 查询条件
+     * @param filterArgs 查询条件的参数（预编译的SQL参数）
+     * @return 本页数据及查询下一页使用的continuation
+     */
+    default KeysetPage<T> queryForKeyset(String includeFields, String excludeFields, String keyFields,
+            boolean descending, String continuation, int count, String filterQL, Object... filterArgs) {
+        if (StringUtils.isEmpty(keyFields) || count <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, keyFields, count);
+        }
+
+        PoAccessPlan plan = PoAccessPlan.instance(getPoClass());
+        String[] keys = StringUtils.trimArrayElements(keyFields.split(","));
+        PoAccessPlan.Property[] keyProps = new PoAccessPlan.Property[keys.length];
+        StringBuilder sbOrder = new StringBuilder();
+        StringBuilder sbKeys = new StringBuilder();
+        StringBuilder sbArgs = new StringBuilder();
+
+        for (int i = 0; i < keys.length; i++) {
+            keyProps[i] = plan.getProperty(keys[i]);
+            if (keyProps[i] == null) {
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, keys[i]);
+            }
+            if (i > 0) {
+                sbOrder.append(',');
+                sbKeys.append(',');
+                sbArgs.append(',');
+            }
+            sbOrder.append("{#").append(keys[i]).append('}').append(descending ? " desc" : "");
+            sbKeys.append("{#").append(keys[i]).append('}');
+            sbArgs.append('?');
+            if (!StringUtils.isEmpty(includeFields)
+                    && !StringUtils.commaDelimitedListToSet(includeFields).contains(keys[i])) {
+                includeFields = includeFields + "," + keys[i];
+            }
+        }
+
+        String filter = filterQL;
+        Object[] args = filterArgs;
+        if (continuation != null) {
+            Object[] lastKeys = KeysetToken.decode(continuation);
+            if (lastKeys.length != keys.length) {
+                throw new BizException(BizStatus.S_INVALID_PARAMETERS, continuation);
+            }
+
+            //(k1,k2) > (?,?)
+            String seek;
+            if (keys.length == 1) {
+                seek = sbKeys + (descending ? " < " : " > ") + sbArgs;
+            } else {
+                seek = "(" + sbKeys + ")" + (descending ? " < (" : " > (") + sbArgs + ")";
+            }
+            filter = StringUtils.isEmpty(filterQL) ? seek : "(" + filterQL + ") and " + seek;
+
+            int argCount = filterArgs == null ? 0 : filterArgs.length;
+            args = new Object[argCount + lastKeys.length];
+            if (argCount > 0) {
+                System.arraycopy(filterArgs, 0, args, 0, argCount);
+            }
+            System.arraycopy(lastKeys, 0, args, argCount, lastKeys.length);
+        }
+
+        //多取一条，用于判断是否还有下一页
+        List<T> rows =
+                queryForList(includeFields, excludeFields, 0, count + 1, sbOrder.toString(), null, filter, args);
+        if (rows == null || rows.size() <= count) {
+            return new KeysetPage<T>(rows, null);
+        }
+
+        rows.remove(count);
+        T last = rows.get(count - 1);
+        Object[] lastKeys = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            lastKeys[i] = keyProps[i].get(last);
+            if (lastKeys[i] == null) {
+                throw new BizException(BizStatus.S_INVALID_PARAMETERS, keys[i]);
+            }
+        }
+        return new KeysetPage<T>(rows, KeysetToken.encode(lastKeys));
     }
 }
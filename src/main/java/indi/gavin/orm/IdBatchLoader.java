@@ -0,0 +1,301 @@
+package indi.gavin.orm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 合并并发的ObjectWithIdDao.get(id)请求：在很短的时间窗口内到达的请求合并为一条“{#id} in (...)”查询。
+ *
+ * 通过IdBatchLoader.enable启用后，调用代码无需修改。合并方式：
+ * 1. 某个JdbcTemplate上没有等待中的批次时，请求创建新批次并成为“领头者”，等待maxDelay后执行该批次的查询；
+ * 2. 等待期间其它线程的请求加入该批次，只等待查询结果；
+ * 3. 批次中的id数达到maxBatchSize时，由使其满员的请求立即执行查询并唤醒领头者，领头者不再等待。
+ * 查询在执行该批次的线程中进行，不使用额外的线程。当前线程在事务中时不参与合并，直接查询。
+ *
+ * 代价是每个请求最多增加maxDelay的延迟，只适合并发量大、按id查询频繁的PO；统计数据可用于评估合并的效果。
+ * 同一批次中多个请求查询同一id时，除第一个请求外都得到复制的对象（浅复制）。
+ *
+ * @author Gavin
+ *
+ */
+public final class IdBatchLoader {
+
+    //PO类->合并器（未启用时为null）
+    private static final ClassValue<AtomicReference<IdBatchLoader>> loaders =
+            new ClassValue<AtomicReference<IdBatchLoader>>() {
+                @Override
+                protected AtomicReference<IdBatchLoader> computeValue(Class<?> poClass) {
+                    return new AtomicReference<IdBatchLoader>();
+                }
+            };
+
+    /**
+     * 取得PO类的合并器，未启用时返回null
+     */
+    public static IdBatchLoader of(Class<?> poClass) {
+        return loaders.get(poClass).get();
+    }
+
+    /**
+     * 启用（或重新设置）PO类的请求合并
+     *
+     * @param maxBatchSize 每批最多多少个id
+     * @param maxDelayMicros 批次最多等待多少微秒
+     */
+    public static IdBatchLoader enable(Class<?> poClass, int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, maxBatchSize);
+        }
+        if (maxDelayMicros < 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, maxDelayMicros);
+        }
+        IdBatchLoader loader = new IdBatchLoader(poClass, maxBatchSize, maxDelayMicros);
+        loaders.get(poClass).set(loader);
+        return loader;
+    }
+
+    /**
+     * 停用PO类的请求合并
+     */
+    public static void disable(Class<?> poClass) {
+        loaders.get(poClass).set(null);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<?> poClass;
+    private final Supplier<?> instantiator;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    //每个JdbcTemplate上等待中的批次
+    private final Map<JdbcTemplate, Batch> pending = new IdentityHashMap<JdbcTemplate, Batch>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    //批次大小的分布：第i个元素是大小在(2^(i-1), 2^i]之间的批次数
+    private final LongAdder[] sizeHistogram;
+    //请求从加入批次到开始执行查询的等待时间（纳秒）
+    private final LongAdder totalDelay = new LongAdder();
+    private final LongAccumulator maxDelay = new LongAccumulator(Math::max, 0);
+
+    private IdBatchLoader(Class<?> poClass, int maxBatchSize, long maxDelayMicros) {
+        this.poClass = poClass;
+        this.instantiator = PoAccessors.instantiator(poClass);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.sizeHistogram = new LongAdder[bucketOf(maxBatchSize) + 1];
+        for (int i = 0; i < sizeHistogram.length; i++) {
+            sizeHistogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 通过id查询，与同一时间窗口内的其它请求合并为一次查询
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(ObjectWithIdDao<T> dao, String id) {
+        if (id == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return dao.queryForObject(null, null, "{#id}=?", id);
+        }
+        requests.increment();
+
+        JdbcTemplate db = dao.getJdbcTemplate();
+        long now = System.nanoTime();
+        Batch batch;
+        boolean leader = false;
+        boolean full = false;
+        boolean shared;
+        lock.lock();
+        try {
+            batch = pending.get(db);
+            if (batch == null) {
+                batch = new Batch(now, Thread.currentThread());
+                pending.put(db, batch);
+                leader = true;
+            }
+            shared = batch.ids.merge(id, 1, Integer::sum) > 1;
+            batch.joinedAtSum += now;
+            if (batch.ids.size() >= maxBatchSize) {
+                pending.remove(db);
+                batch.closed = true;
+                full = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full) {
+            if (!leader) {
+                LockSupport.unpark(batch.leader);
+            }
+            execute(dao, batch);
+        } else if (leader) {
+            //等待到期或批次满员（由使其满员的线程唤醒）；被中断时parkNanos立即返回，不再等待而是直接执行
+            long deadline = now + maxDelayNanos;
+            boolean interrupted = false;
+            for (long wait = maxDelayNanos; wait > 0 && !batch.closed; wait = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                    break;
+                }
+            }
+            boolean owner = false;
+            lock.lock();
+            try {
+                if (!batch.closed) {
+                    pending.remove(db, batch);
+                    batch.closed = true;
+                    owner = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (owner) {
+                execute(dao, batch);
+            }
+            //查询结束后恢复中断状态，由调用者处理
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Map<String, Object> rows;
+        try {
+            rows = batch.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        Object po = rows.get(id);
+        if (po != null && shared) {
+            Object copied = instantiator.get();
+            BeanUtils.copyProperties(po, copied);
+            po = copied;
+        }
+        return (T) po;
+    }
+
+    private <T> void execute(ObjectWithIdDao<T> dao, Batch batch) {
+        long start = System.nanoTime();
+        int size = batch.ids.size();
+        int count = 0;
+        for (Integer n : batch.ids.values()) {
+            count += n;
+        }
+        long delay = start * count - batch.joinedAtSum;
+        batches.increment();
+        sizeHistogram[bucketOf(size)].increment();
+        totalDelay.add(delay);
+        maxDelay.accumulate(start - batch.createdAt);
+
+        try {
+            Map<String, T> rows = IdQueries.load(dao, new ArrayList<String>(batch.ids.keySet()), false);
+            batch.future.complete(new LinkedHashMap<String, Object>(rows));
+        } catch (RuntimeException | Error e) {
+            batch.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    //大小为n的批次属于第几个区间：1->0, 2->1, 3~4->2, 5~8->3 ...
+    private static int bucketOf(int n) {
+        return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    public Class<?> getPoClass() {
+        return poClass;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelayMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxDelayNanos);
+    }
+
+    /**
+     * 合并的请求数
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * 执行的批次（查询）数
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * 批次大小（不重复的id数）的分布：第i个元素是大小在(2^(i-1), 2^i]之间的批次数，第0个元素是大小为1的批次数
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] result = new long[sizeHistogram.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sizeHistogram[i].sum();
+        }
+        return result;
+    }
+
+    /**
+     * 请求因等待合并而增加的平均延迟（微秒）
+     */
+    public double getAverageAddedLatencyMicros() {
+        long n = requests.sum();
+        return n == 0 ? 0 : totalDelay.sum() / 1000.0 / n;
+    }
+
+    /**
+     * 请求因等待合并而增加的最大延迟（微秒）
+     */
+    public long getMaxAddedLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxDelay.get());
+    }
+
+    @Override
+    public String toString() {
+        return "IdBatchLoader[" + poClass.getSimpleName() + ", requests=" + getRequestCount() + ", batches="
+                + getBatchCount() + ", avgDelay=" + String.format("%.1f", getAverageAddedLatencyMicros()) + "us]";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class Batch {
+        //id->请求次数，只在持有锁时修改
+        final Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<Map<String, Object>>();
+        final long createdAt;
+        //创建批次的线程（领头者），批次满员时唤醒
+        final Thread leader;
+        //各请求加入时间之和，用于计算总等待时间
+        long joinedAtSum;
+        //只在持有锁时修改，领头者等待期间不加锁读取
+        volatile boolean closed;
+
+        Batch(long createdAt, Thread leader) {
+            this.createdAt = createdAt;
+            this.leader = leader;
+        }
+    }
+}
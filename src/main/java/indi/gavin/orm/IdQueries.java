@@ -0,0 +1,183 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.Dialects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 按id批量查询PO（ObjectWithIdDao.getAll的实现）。
+ *
+ * 1. 生成“{#id} in (?,?,...)”条件，通过GenericQuery.queryForList查询；
+ * 2. id数超过数据库限制（Dialect.getMaxInListSize/getMaxBindParameters）时分批查询，可以并行执行：
+ *    各批提交到DaoExecutors.getDefault()，当前线程也领取尚未开始的批次自己执行，只等待其它线程已经开始执行的批次；
+ *    因此在该线程池中调用（如dao.async(() -> dao.getAll(...))）时，即使所有线程都在等待也不会死锁；
+ * 3. 每批的参数个数补齐（重复最后一个id）到2的幂，减少不同SQL语句的个数，便于数据库及QueryStatementCache复用已编译的语句；
+ * 4. 启用了实体缓存时，只查询缓存中没有的id。
+ *
+ * @author Gavin
+ *
+ */
+final class IdQueries {
+
+    private IdQueries() {
+    }
+
+    /**
+     * 按id批量查询
+     *
+     * @param ids 要查询的id，重复的id只查询一次，null被忽略
+     * @param parallel 分多批时是否并行查询（当前线程在事务中时始终顺序查询）
+     * @return id->PO，数据库中不存在的id不包括在内
+     */
+    static <T> Map<String, T> getAll(ObjectWithIdDao<T> dao, Collection<String> ids, boolean parallel) {
+        LinkedHashSet<String> distinct = new LinkedHashSet<String>();
+        for (String id : ids) {
+            if (id != null) {
+                distinct.add(id);
+            }
+        }
+        if (distinct.isEmpty()) {
+            return new HashMap<String, T>();
+        }
+
+        EntityCache cache = EntityCache.of(dao.getPoClass());
+        if (cache == null) {
+            return load(dao, new ArrayList<String>(distinct), parallel);
+        }
+        return cache.getAll(distinct, missing -> load(dao, missing, parallel));
+    }
+
+    /**
+     * 每条查询语句最多包含多少个id
+     */
+    static int getChunkSize(Dialect dialect) {
+        return Math.max(1, Math.min(dialect.getMaxInListSize(), dialect.getMaxBindParameters()));
+    }
+
+    /**
+     * 从数据库中查询（不经过实体缓存）
+     */
+    static <T> Map<String, T> load(ObjectWithIdDao<T> dao, List<String> ids, boolean parallel) {
+        int chunkSize = getChunkSize(Dialects.of(dao.getJdbcTemplate()));
+        if (ids.size() <= chunkSize) {
+            return loadChunk(dao, ids);
+        }
+
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            chunks.add(ids.subList(i, Math.min(i + chunkSize, ids.size())));
+        }
+
+        Map<String, T> result = new HashMap<String, T>(ids.size() * 4 / 3 + 1);
+        //异步执行的查询不在当前事务中，事务中只能顺序查询
+        if (!parallel || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (List<String> chunk : chunks) {
+                result.putAll(loadChunk(dao, chunk));
+            }
+            return result;
+        }
+
+        Executor executor = DaoExecutors.getDefault();
+        List<ChunkTask<T>> tasks = new ArrayList<ChunkTask<T>>(chunks.size());
+        for (List<String> chunk : chunks) {
+            ChunkTask<T> task = new ChunkTask<T>(dao, chunk);
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                //线程池已关闭等，由当前线程执行
+            }
+        }
+        //先执行还没有被线程池领取的批次，剩下的都已经在其它线程中执行，等待不会死锁
+        for (ChunkTask<T> task : tasks) {
+            task.run();
+        }
+        try {
+            for (ChunkTask<T> task : tasks) {
+                result.putAll(task.result.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private static <T> Map<String, T> loadChunk(ObjectWithIdDao<T> dao, List<String> ids) {
+        int size = ids.size() == 1 ? 1 : Math.min(Integer.highestOneBit(ids.size() - 1) << 1,
+                getChunkSize(Dialects.of(dao.getJdbcTemplate())));
+        size = Math.max(size, ids.size());
+
+        Object[] args = new Object[size];
+        StringBuilder filter = new StringBuilder(16 + size * 2);
+        filter.append("{#id} in (");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                filter.append(',');
+            }
+            filter.append('?');
+            args[i] = ids.get(Math.min(i, ids.size() - 1));
+        }
+        filter.append(')');
+
+        PoAccessPlan.Property id = PoAccessPlan.instance(dao.getPoClass()).getProperty("id");
+        if (id == null) {
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_CLASS, dao.getPoClass().getName());
+        }
+        List<T> rows = dao.queryForList(null, null, 0, 0, null, null, filter.toString(), args);
+        Map<String, T> result = new HashMap<String, T>(ids.size() * 4 / 3 + 1);
+        if (rows == null) {
+            return result;
+        }
+        for (T row : rows) {
+            Object value = id.get(row);
+            if (value != null) {
+                result.put(String.valueOf(value), row);
+            }
+        }
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 一批id的查询，由线程池或调用者线程中先领取的一方执行
+     */
+    private static final class ChunkTask<T> implements Runnable {
+        private final ObjectWithIdDao<T> dao;
+        private final List<String> ids;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        final CompletableFuture<Map<String, T>> result = new CompletableFuture<Map<String, T>>();
+
+        ChunkTask(ObjectWithIdDao<T> dao, List<String> ids) {
+            this.dao = dao;
+            this.ids = ids;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(loadChunk(dao, ids));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package indi.gavin.orm;
+
+import java.util.List;
+
+/**
+ * 键集分页（seek）的查询结果。
+ * 
+ * 下一页的查询条件由本页最后一行的排序键值生成，并以不透明的字符串（continuation）返回给调用者，
+ * 因此翻到第N页与查询第1页的代价相同。
+ * 
+ * @author Gavin
+ *
+ * @param <T>
+ */
+public final class KeysetPage<T> {
+
+    private final List<T> rows;
+
+    private final String continuation;
+
+    public KeysetPage(List<T> rows, String continuation) {
+        this.rows = rows;
+        this.continuation = continuation;
+    }
+
+    /**
+     * 本页的数据
+     */
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * 查询下一页时使用的continuation，null表示已经是最后一页
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public boolean hasMore() {
+        return continuation != null;
+    }
+}
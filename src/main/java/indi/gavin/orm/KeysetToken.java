@@ -0,0 +1,135 @@
+package indi.gavin.orm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 键集分页的continuation编解码。
+ * 
+ * 只支持常见的排序键类型（字符串、整数、浮点数、BigDecimal、布尔、日期），
+ * 按类型逐个写入后以URL安全的Base64编码；不使用Java序列化，解码外部传入的值是安全的。
+ * 值不能为null：行值比较中null的结果为unknown，包含null的continuation查不到任何记录。
+ * 
+ * @author Gavin
+ *
+ */
+final class KeysetToken {
+
+    private static final int VERSION = 1;
+
+    //排序键最多个数（个数以一个字节保存）
+    private static final int MAX_VALUES = 255;
+
+    private KeysetToken() {
+    }
+
+    static String encode(Object[] values) {
+        if (values.length == 0 || values.length > MAX_VALUES) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, values.length);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(values.length);
+            for (Object v : values) {
+                if (v == null) {
+                    throw new BizException(BizStatus.S_INVALID_PARAMETERS, "null");
+                } else if (v instanceof String) {
+                    out.writeByte('S');
+                    out.writeUTF((String) v);
+                } else if (v instanceof Integer) {
+                    out.writeByte('I');
+                    out.writeInt((Integer) v);
+                } else if (v instanceof Long) {
+                    out.writeByte('L');
+                    out.writeLong((Long) v);
+                } else if (v instanceof Double) {
+                    out.writeByte('D');
+                    out.writeDouble((Double) v);
+                } else if (v instanceof Float) {
+                    out.writeByte('F');
+                    out.writeFloat((Float) v);
+                } else if (v instanceof BigDecimal) {
+                    out.writeByte('B');
+                    out.writeUTF(v.toString());
+                } else if (v instanceof Boolean) {
+                    out.writeByte('Z');
+                    out.writeBoolean((Boolean) v);
+                } else if (v instanceof Timestamp) {
+                    out.writeByte('T');
+                    out.writeLong(((Timestamp) v).getTime());
+                    out.writeInt(((Timestamp) v).getNanos());
+                } else if (v instanceof Date) {
+                    out.writeByte('T');
+                    out.writeLong(((Date) v).getTime());
+                    out.writeInt((int) ((((Date) v).getTime() % 1000 + 1000) % 1000) * 1000000);
+                } else {
+                    throw new BizException(BizStatus.S_UNSUPPORTED, v.getClass().getName());
+                }
+            }
+        } catch (IOException e) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, e);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static Object[] decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new BizException(BizStatus.S_INVALID_PARAMETERS, token);
+            }
+            int length = in.readUnsignedByte();
+            if (length == 0) {
+                throw new BizException(BizStatus.S_INVALID_PARAMETERS, token);
+            }
+            Object[] values = new Object[length];
+            for (int i = 0; i < values.length; i++) {
+                byte type = in.readByte();
+                switch (type) {
+                case 'S':
+                    values[i] = in.readUTF();
+                    break;
+                case 'I':
+                    values[i] = in.readInt();
+                    break;
+                case 'L':
+                    values[i] = in.readLong();
+                    break;
+                case 'D':
+                    values[i] = in.readDouble();
+                    break;
+                case 'F':
+                    values[i] = in.readFloat();
+                    break;
+                case 'B':
+                    values[i] = new BigDecimal(in.readUTF());
+                    break;
+                case 'Z':
+                    values[i] = in.readBoolean();
+                    break;
+                case 'T':
+                    Timestamp ts = new Timestamp(in.readLong());
+                    ts.setNanos(in.readInt());
+                    values[i] = ts;
+                    break;
+                default:
+                    throw new BizException(BizStatus.S_INVALID_PARAMETERS, token);
+                }
+            }
+            if (in.available() > 0) {
+                throw new BizException(BizStatus.S_INVALID_PARAMETERS, token);
+            }
+            return values;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, e, token);
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package indi.gavin.orm;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import org.springframework.util.StringUtils;
 
@@ -14,10 +19,81 @@ import org.springframework.util.StringUtils;
 public interface ObjectWithIdDao<T> extends GenericDao<T>, GenericQuery<T> {
 
     /**
-     * 通过id查询相应记录
+     * 通过id查询相应记录，PO启用了实体缓存（EntityCache）时优先从缓存中读取；
+     * 启用了请求合并（IdBatchLoader）时，与其它线程同时发出的请求合并为一次查询
      */
     default T get(String id) {
-        return queryForObject(null, null, "{#id}=?", id);
+        IdBatchLoader batcher = IdBatchLoader.of(getPoClass());
+        Supplier<T> loader;
+        if (batcher == null) {
+            loader = () -> queryForObject(null, null, "{#id}=?", id);
+        } else {
+            loader = () -> batcher.load(this, id);
+        }
+
+        EntityCache cache = EntityCache.of(getPoClass());
+        if (cache == null) {
+            return loader.get();
+        }
+        return cache.get(id, loader);
+    }
+
+    /**
+     * 通过id批量查询，一次（id较多时分批）查询代替多次get(id)。
+     * 
+     * @param ids 要查询的id
+     * @return id->PO，按ids中的顺序排列，数据库中不存在的id不包括在内
+     */
+    default Map<String, T> getAll(Collection<String> ids) {
+        return getAll(ids, false);
+    }
+
+    /**
+     * 通过id批量查询
+     * 
+     * @param ids 要查询的id
+     * @param parallel id数超过数据库的限制需要分批时，是否并行查询（在事务中时始终顺序查询）
+     * @return id->PO，按ids中的顺序排列，数据库中不存在的id不包括在内
+     */
+    default Map<String, T> getAll(Collection<String> ids, boolean parallel) {
+        Map<String, T> found = IdQueries.getAll(this, ids, parallel);
+        Map<String, T> result = new LinkedHashMap<String, T>(found.size() * 4 / 3 + 1);
+        for (String id : ids) {
+            T po = found.get(id);
+            if (po != null) {
+                result.put(id, po);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过id批量查询，并返回数据库中不存在的id
+     * 
+     * @param ids 要查询的id
+     * @param missingIds 用于保存数据库中不存在的id
+     * @return id->PO，按ids中的顺序排列
+     */
+    default Map<String, T> getAll(Collection<String> ids, Collection<String> missingIds) {
+        Map<String, T> result = getAll(ids, false);
+        for (String id : ids) {
+            if (id != null && !result.containsKey(id)) {
+                missingIds.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过id批量查询，返回的列表与ids一一对应，数据库中不存在的id对应的元素为null
+     */
+    default List<T> getAllOrdered(List<String> ids) {
+        Map<String, T> found = IdQueries.getAll(this, ids, false);
+        List<T> result = new ArrayList<T>(ids.size());
+        for (String id : ids) {
+            result.add(found.get(id));
+        }
+        return result;
     }
 
     default <R> R getAs(Class<R> clazz, String id) {
@@ -43,16 +119,29 @@ public interface ObjectWithIdDao<T> extends GenericDao<T>, GenericQuery<T> {
     }
 
     /**
-     * 查询符合条件的记录数
+     * 按id进行键集分页，翻页的代价与页码无关。
+     * 
+     * @param continuation 上一页返回的KeysetPage.getContinuation()，查询第一页时为null
+     * @param count 每页最多返回多少条记录
+     * @param filter
+     * @param filterArgs
+     * @return
+     */
+    default KeysetPage<T> listAfter(String continuation, int count, String filter, Object... filterArgs) {
+        return queryForKeyset(null, null, "id", false, continuation, count, filter, filterArgs);
+    }
+
+    /**
+     * 查询符合条件的记录数，统计方式由getCountStrategy()决定
      * 
      * @param filter
      * @param filterArgs
      * @return
      */
     default int count(String filter, Object... filterArgs) {
-        int result = queryForValue(Integer.class, "count(*)", filter, filterArgs);
+        long result = queryForCount(filter, filterArgs);
 
-        return result;
+        return (int) Math.min(result, Integer.MAX_VALUE);
     }
 
     /**
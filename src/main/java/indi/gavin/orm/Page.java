@@ -0,0 +1,65 @@
+package indi.gavin.orm;
+
+import java.util.List;
+
+/**
+ * 分页查询的结果：本页数据及符合条件的总记录数。
+ * 
+ * @author Gavin
+ *
+ * @param <T>
+ */
+public final class Page<T> {
+
+    /**
+     * 分页查询中保存总记录数的列，PoRowMapper映射时忽略此列
+     */
+    public static final String TOTAL_COLUMN = "PAGE_TOTAL_ROWS__";
+
+    private final List<T> rows;
+
+    private final long total;
+
+    private final int start;
+
+    private final int count;
+
+    public Page(List<T> rows, long total, int start, int count) {
+        this.rows = rows;
+        this.total = total;
+        this.start = start;
+        this.count = count;
+    }
+
+    /**
+     * 本页的数据
+     */
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * 符合条件的总记录数（统计方式为CountStrategy.estimated时可能是估算值）
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 本页从第几条记录开始（0-based）
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * 每页最多多少条记录
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public boolean hasMore() {
+        return start + rows.size() < total;
+    }
+}
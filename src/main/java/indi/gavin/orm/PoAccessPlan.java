@@ -0,0 +1,247 @@
+package indi.gavin.orm;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * PO属性的访问计划。
+ *
+ * 按PoDefinition中的属性顺序，预先计算各属性对应的字段名、只读标志、SQL类型及读取属性值的函数对象，
+ * 每个PO类只生成一次，供insert/update等写操作及PoUtils.po2Map共享。
+ *
+ * SQL类型（java.sql.Types）由属性的Java类型决定，写操作按此类型绑定参数，值为null时也无需驱动查询参数的元数据；
+ * 无法确定类型的（如枚举、Java 8日期类型）为SqlTypeValue.TYPE_UNKNOWN，仍由Spring按值推断。
+ *
+ * @author Gavin
+ *
+ */
+public final class PoAccessPlan {
+
+    private static final ClassValue<PoAccessPlan> instances = new ClassValue<PoAccessPlan>() {
+        @Override
+        protected PoAccessPlan computeValue(Class<?> poClass) {
+            return new PoAccessPlan(poClass);
+        }
+    };
+
+    public static PoAccessPlan instance(Class<?> poClass) {
+        return instances.get(poClass);
+    }
+
+    //嵌套对象（$属性）的读写方法，复制PO时使用
+    private static final ClassValue<PropertyDescriptor[]> nestedProperties = new ClassValue<PropertyDescriptor[]>() {
+        @Override
+        protected PropertyDescriptor[] computeValue(Class<?> clazz) {
+            List<PropertyDescriptor> list = new ArrayList<PropertyDescriptor>();
+            for (Class<?> c = clazz; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    //与PoDefinition中嵌套对象的判断一致
+                    if (f.getType().isPrimitive() || f.getType().isArray() || f.getType().getPackage() == null
+                            || f.getType().getPackage().getName().startsWith("java")) {
+                        continue;
+                    }
+                    PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(clazz, f.getName());
+                    if (pd != null && pd.getReadMethod() != null && pd.getWriteMethod() != null) {
+                        list.add(pd);
+                    }
+                }
+            }
+            return list.toArray(new PropertyDescriptor[0]);
+        }
+    };
+
+    /**
+     * 把source的属性复制到target，嵌套对象（$属性）也复制一份而不与source共享，供实体缓存及查询结果缓存使用
+     */
+    public static <T> T copy(Object source, T target) {
+        BeanUtils.copyProperties(source, target);
+        for (PropertyDescriptor pd : nestedProperties.get(source.getClass())) {
+            Object nested = ReflectionUtils.invokeMethod(pd.getReadMethod(), source);
+            if (nested != null) {
+                Object copied = copy(nested, BeanUtils.instantiateClass(nested.getClass()));
+                ReflectionUtils.invokeMethod(pd.getWriteMethod(), target, copied);
+            }
+        }
+        return target;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<?> poClass;
+
+    //所有非嵌套属性，按PoDefinition中的顺序排列
+    private final List<Property> properties;
+
+    //可写属性（非只读、非嵌套），insert时使用
+    private final List<Property> writableProperties;
+
+    private final Map<String, Property> propertyMap;
+
+    //当前类声明的所有成员变量，po2Map时使用：key->字段名，value->成员变量读取器
+    private final String[] declaredColumns;
+    private final PoAccessors.ObjectGetter[] declaredReaders;
+
+    @SuppressWarnings("unchecked")
+    private PoAccessPlan(Class<?> poClass) {
+        this.poClass = poClass;
+
+        PoDefinition poDef = PoDefinition.instance(poClass);
+        PoMeta<Object> meta = PoMeta.of((Class<Object>) poClass);
+        List<Property> all = new ArrayList<Property>();
+        List<Property> writable = new ArrayList<Property>();
+        Map<String, Property> map = new HashMap<String, Property>();
+
+        for (String fieldName : poDef.getFields()) {
+            if (fieldName.indexOf('$') >= 0) {
+                //嵌套对象的属性只用于查询
+                continue;
+            }
+            int index = meta == null ? -1 : meta.indexOf(fieldName);
+            Property p;
+            if (index >= 0) {
+                //编译时生成的元数据直接调用getter
+                p = new Property(fieldName, poDef.getFieldColumn(fieldName), poDef.isFieldReadOnly(fieldName),
+                        sqlTypeOf(meta.getFieldType(index)), po -> meta.get(po, index));
+            } else {
+                Method getter = getMethod(poClass, "get" + StringUtils.capitalize(fieldName));
+                p = new Property(fieldName, poDef.getFieldColumn(fieldName), poDef.isFieldReadOnly(fieldName),
+                        getter == null ? SqlTypeValue.TYPE_UNKNOWN : sqlTypeOf(getter.getReturnType()),
+                        getter == null ? null : PoAccessors.getter(getter));
+            }
+            all.add(p);
+            map.put(fieldName, p);
+            if (!p.readOnly) {
+                writable.add(p);
+            }
+        }
+
+        this.properties = Collections.unmodifiableList(all);
+        this.writableProperties = Collections.unmodifiableList(writable);
+        this.propertyMap = map;
+
+        Field[] fields = poClass.getDeclaredFields();
+        this.declaredColumns = new String[fields.length];
+        this.declaredReaders = new PoAccessors.ObjectGetter[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            declaredColumns[i] = PoUtils.fieldName2ColumnName(fields[i].getName());
+            declaredReaders[i] = PoAccessors.fieldReader(fields[i]);
+        }
+    }
+
+    /**
+     * 在类及其父类中查找无参方法，找不到时返回null
+     */
+    private static Method getMethod(Class<?> clazz, String name) {
+        while (clazz != null && !Object.class.equals(clazz)) {
+            for (Method m : clazz.getDeclaredMethods()) {
+                if (m.getName().equals(name) && m.getParameterCount() == 0 && !m.isBridge()) {
+                    return m;
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        return null;
+    }
+
+    /**
+     * Java类型对应的SQL类型，无法确定时返回SqlTypeValue.TYPE_UNKNOWN
+     */
+    static int sqlTypeOf(Class<?> javaType) {
+        if (byte[].class.equals(javaType)) {
+            return Types.VARBINARY;
+        }
+        return StatementCreatorUtils.javaTypeToSqlParameterType(javaType);
+    }
+
+    public Class<?> getPoClass() {
+        return poClass;
+    }
+
+    /**
+     * 所有非嵌套属性，按PoDefinition中的顺序排列
+     */
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * 可写（非只读）属性，按PoDefinition中的顺序排列
+     */
+    public List<Property> getWritableProperties() {
+        return writableProperties;
+    }
+
+    /**
+     * 取得指定属性，属性不存在时返回null
+     */
+    public Property getProperty(String fieldName) {
+        return propertyMap.get(fieldName);
+    }
+
+    String[] getDeclaredColumns() {
+        return declaredColumns;
+    }
+
+    PoAccessors.ObjectGetter[] getDeclaredReaders() {
+        return declaredReaders;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final class Property {
+        private final String name;
+        private final String column;
+        private final boolean readOnly;
+        private final int sqlType;
+        private final PoAccessors.ObjectGetter getter;
+
+        Property(String name, String column, boolean readOnly, int sqlType, PoAccessors.ObjectGetter getter) {
+            this.name = name;
+            this.column = column;
+            this.readOnly = readOnly;
+            this.sqlType = sqlType;
+            this.getter = getter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        /**
+         * 绑定参数时使用的SQL类型（java.sql.Types），无法确定时为SqlTypeValue.TYPE_UNKNOWN
+         */
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        /**
+         * 读取PO对象的属性值
+         */
+        public Object get(Object entity) {
+            if (getter == null) {
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT);
+            }
+            return getter.get(entity);
+        }
+    }
+}
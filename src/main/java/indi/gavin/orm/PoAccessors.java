@@ -0,0 +1,310 @@
+package indi.gavin.orm;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 生成访问PO构造方法及属性的函数对象，取代Class.newInstance、Method.invoke等反射调用。
+ *
+ * 对于public的PO类及方法，通过LambdaMetafactory在运行时生成直接调用目标方法的类，基本类型的参数不会被装箱；
+ * 其它情况（非public的类或方法、PO类对本类的ClassLoader不可见等）使用MethodHandle调用。
+ *
+ * @author Gavin
+ *
+ */
+public final class PoAccessors {
+
+    private static Logger logger = LoggerFactory.getLogger(PoAccessors.class);
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private PoAccessors() {
+    }
+
+    /**
+     * 读取属性值
+     */
+    @FunctionalInterface
+    public interface ObjectGetter {
+        Object get(Object target);
+    }
+
+    /**
+     * 设置引用类型的属性值
+     */
+    @FunctionalInterface
+    public interface ObjectSetter {
+        void set(Object target, Object value);
+    }
+
+    /**
+     * 设置int类型的属性值
+     */
+    @FunctionalInterface
+    public interface IntSetter {
+        void set(Object target, int value);
+    }
+
+    /**
+     * 设置long类型的属性值
+     */
+    @FunctionalInterface
+    public interface LongSetter {
+        void set(Object target, long value);
+    }
+
+    /**
+     * 设置double类型的属性值
+     */
+    @FunctionalInterface
+    public interface DoubleSetter {
+        void set(Object target, double value);
+    }
+
+    /**
+     * 设置float类型的属性值
+     */
+    @FunctionalInterface
+    public interface FloatSetter {
+        void set(Object target, float value);
+    }
+
+    /**
+     * 取得调用无参构造方法创建实例的函数对象
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> instantiator(Class<T> clazz) {
+        PoMeta<T> meta = PoMeta.of(clazz);
+        if (meta != null) {
+            return meta::newInstance;
+        }
+        try {
+            Constructor<T> ctor = clazz.getDeclaredConstructor();
+            if (isPublic(ctor.getModifiers(), clazz)) {
+                MethodHandle mh = lookup.unreflectConstructor(ctor);
+                try {
+                    return (Supplier<T>) metafactory("get", Supplier.class, mh, MethodType.methodType(Object.class),
+                            MethodType.methodType(clazz)).invoke();
+                } catch (Throwable e) {
+                    logger.debug("Can't generate instantiator for {}, using method handle.", clazz.getName(), e);
+                }
+            }
+
+            ctor.setAccessible(true);
+            final MethodHandle mh = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) mh.invokeExact();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_CLASS, e, clazz.getName());
+                }
+            };
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            //没有可用的无参构造方法，在创建实例时报告错误
+            return () -> {
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_CLASS, e, clazz.getName());
+            };
+        }
+    }
+
+    /**
+     * 取得调用getter方法的函数对象，基本类型的返回值会被装箱
+     */
+    public static ObjectGetter getter(Method getter) {
+        try {
+            if (isPublic(getter.getModifiers(), getter.getDeclaringClass())) {
+                MethodHandle mh = lookup.unreflect(getter);
+                try {
+                    return (ObjectGetter) metafactory("get", ObjectGetter.class, mh,
+                            MethodType.methodType(Object.class, Object.class),
+                            MethodType.methodType(wrap(getter.getReturnType()), getter.getDeclaringClass())).invoke();
+                } catch (Throwable e) {
+                    logger.debug("Can't generate getter for {}, using method handle.", getter, e);
+                }
+            }
+
+            getter.setAccessible(true);
+            final MethodHandle mh =
+                    lookup.unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+            return target -> {
+                try {
+                    return mh.invokeExact(target);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } catch (IllegalAccessException e) {
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, e, getter.getName());
+        }
+    }
+
+    /**
+     * 取得直接读取成员变量（不经过getter）的函数对象
+     */
+    public static ObjectGetter fieldReader(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = lookup.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            final MethodHandle mh = getter.asType(MethodType.methodType(Object.class, Object.class));
+            return target -> {
+                try {
+                    return mh.invokeExact(target);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, e, field.getName());
+        }
+    }
+
+    /**
+     * 取得调用setter方法的函数对象，返回值类型根据setter参数类型而定：
+     * int->IntSetter，long->LongSetter，double->DoubleSetter，float->FloatSetter，其它->ObjectSetter
+     */
+    public static Object setter(Method setter) {
+        Class<?> paramClass = setter.getParameterTypes()[0];
+        Class<?> setterClass;
+        Class<?> valueClass;
+
+        if (int.class.equals(paramClass)) {
+            setterClass = IntSetter.class;
+            valueClass = int.class;
+        } else if (long.class.equals(paramClass)) {
+            setterClass = LongSetter.class;
+            valueClass = long.class;
+        } else if (double.class.equals(paramClass)) {
+            setterClass = DoubleSetter.class;
+            valueClass = double.class;
+        } else if (float.class.equals(paramClass)) {
+            setterClass = FloatSetter.class;
+            valueClass = float.class;
+        } else {
+            setterClass = ObjectSetter.class;
+            valueClass = Object.class;
+        }
+
+        try {
+            if (isPublic(setter.getModifiers(), setter.getDeclaringClass())) {
+                MethodHandle mh = lookup.unreflect(setter);
+                try {
+                    return metafactory("set", setterClass, mh,
+                            MethodType.methodType(void.class, Object.class, valueClass),
+                            MethodType.methodType(void.class, setter.getDeclaringClass(), paramClass)).invoke();
+                } catch (Throwable e) {
+                    logger.debug("Can't generate setter for {}, using method handle.", setter, e);
+                }
+            }
+
+            setter.setAccessible(true);
+            MethodHandle mh =
+                    lookup.unreflect(setter).asType(MethodType.methodType(void.class, Object.class, valueClass));
+            return handleSetter(setterClass, mh);
+        } catch (IllegalAccessException e) {
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, e, setter.getName());
+        }
+    }
+
+    private static Object handleSetter(Class<?> setterClass, MethodHandle mh) {
+        if (IntSetter.class.equals(setterClass)) {
+            return (IntSetter) (target, value) -> {
+                try {
+                    mh.invokeExact(target, value);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } else if (LongSetter.class.equals(setterClass)) {
+            return (LongSetter) (target, value) -> {
+                try {
+                    mh.invokeExact(target, value);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } else if (DoubleSetter.class.equals(setterClass)) {
+            return (DoubleSetter) (target, value) -> {
+                try {
+                    mh.invokeExact(target, value);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } else if (FloatSetter.class.equals(setterClass)) {
+            return (FloatSetter) (target, value) -> {
+                try {
+                    mh.invokeExact(target, value);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        } else {
+            return (ObjectSetter) (target, value) -> {
+                try {
+                    mh.invokeExact(target, value);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            };
+        }
+    }
+
+    /**
+     * 通过LambdaMetafactory生成实现函数接口的类，该类直接调用目标方法
+     */
+    private static MethodHandle metafactory(String samName, Class<?> samClass, MethodHandle target,
+            MethodType samType, MethodType instantiatedType) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(lookup, samName, MethodType.methodType(samClass), samType,
+                target, instantiatedType);
+        return site.getTarget();
+    }
+
+    /**
+     * 只有public类中的public成员，并且该类对本类的ClassLoader可见时，生成的类才能直接调用
+     */
+    private static boolean isPublic(int modifiers, Class<?> clazz) {
+        if (!Modifier.isPublic(modifiers)) {
+            return false;
+        }
+        for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(clazz.getName(), false, PoAccessors.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> wrap(Class<?> clazz) {
+        return clazz.isPrimitive() ? MethodType.methodType(clazz).wrap().returnType() : clazz;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT, e);
+    }
+}
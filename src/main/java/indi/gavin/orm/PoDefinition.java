@@ -4,45 +4,94 @@ import indi.gavin.orm.annotations.PoColumn;
 import indi.gavin.orm.annotations.PoTable;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.util.StringUtils;
 
 public final class PoDefinition {
 
-    private static Map<Class<?>, PoDefinition> instances = new HashMap<Class<?>, PoDefinition>();
+    //每个PO最多缓存的查询条件模板数（新、旧两代合计），防止动态拼接的模板撑满内存
+    private static final int MAX_FILTER_TEMPLATES = 1024;
 
-    public static synchronized PoDefinition instance(Class<?> poClass) {
-        PoDefinition poDef = instances.get(poClass);
-        if (poDef == null) {
-            poDef = new PoDefinition(poClass);
-            instances.put(poClass, poDef);
+    //实例缓存，读取时无需加锁；PoDefinition创建后不再修改，可被多个线程共享
+    private static final ClassValue<PoDefinition> instances = new ClassValue<PoDefinition>() {
+        @Override
+        protected PoDefinition computeValue(Class<?> poClass) {
+            return new PoDefinition(poClass);
         }
-        return poDef;
+    };
+
+    public static PoDefinition instance(Class<?> poClass) {
+        return instances.get(poClass);
     }
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private Class<?> poClass;
+    private final Class<?> poClass;
 
     //PO对应的表的信息：key->table_alias，value->table_name
-    private Map<String, String> poTables = new HashMap<String, String>();
+    private final Map<String, String> poTables = new HashMap<String, String>();
+
+    private final String poTableFrom;
+
+    private final String poTableJoin;
+
+    private final String poTableTrace;
 
-    private String poTableFrom = null;
+    private final int poMultiRowInsert;
 
-    private String poTableJoin = null;
+    //唯一键对应的PO属性
+    private final String[] poKeyFields;
 
-    private String poTableTrace = null;
+    //实体缓存的容量及过期时间（秒）
+    private final int poCacheSize;
+
+    private final long poCacheTtl;
+
+    private final boolean poQueryCache;
 
     //PO属性对应的字段的信息：key->po_fieldname，value->table_alias.column_name
-    private Map<String, String> poFields = new HashMap<String, String>();
+    //按属性定义的顺序保存（子类属性在前），插入语句等按此顺序生成字段列表
+    private final Map<String, String> poFields = new LinkedHashMap<String, String>();
+
+    private final Map<String, Boolean> poFieldReadOnly = new HashMap<String, Boolean>();
 
-    private Map<String, Boolean> poFieldReadOnly = new HashMap<String, Boolean>();
+    //已编译的查询条件模板：key->模板，value->编译结果
+    //分为新、旧两代：新一代满时整体降为旧一代，旧一代中命中的模板移回新一代，长期不用的模板随旧一代被丢弃
+    private volatile Map<String, FilterTemplate> filterTemplates = new ConcurrentHashMap<String, FilterTemplate>();
+
+    private volatile Map<String, FilterTemplate> oldFilterTemplates = Collections.emptyMap();
 
     private PoDefinition(Class<?> poClass) {
         this.poClass = poClass;
-        init();
+
+        //分析PO的表定义
+        PoTable annTable = poClass.getAnnotation(PoTable.class);
+        if (annTable == null) {
+            poTableJoin = null;
+            poTableFrom = null;
+            poTableTrace = null;
+            poMultiRowInsert = 0;
+            poKeyFields = new String[] { "id" };
+            poCacheSize = 0;
+            poCacheTtl = 0;
+            poQueryCache = false;
+        } else {
+            poTableJoin = annTable.join();
+            poTableFrom = annTable.from();
+            poTableTrace = annTable.trace();
+            poMultiRowInsert = annTable.multiRowInsert();
+            poKeyFields = StringUtils.commaDelimitedListToStringArray(StringUtils.trimAllWhitespace(annTable.keys()));
+            poCacheSize = annTable.cacheSize();
+            poCacheTtl = annTable.cacheTtl();
+            poQueryCache = annTable.queryCache();
+        }
+
+        init(annTable);
     }
 
     public int getTableCount() {
@@ -69,6 +118,41 @@ public final class PoDefinition {
         return poTableTrace;
     }
 
+    /**
+     * 批量创建记录时每条insert语句最多包含的行数，0表示不使用多行insert
+     */
+    public int getMultiRowInsert() {
+        return poMultiRowInsert;
+    }
+
+    /**
+     * 唯一键对应的PO属性，upsert时按这些属性判断记录是否已存在
+     */
+    public String[] getKeyFields() {
+        return poKeyFields.clone();
+    }
+
+    /**
+     * 实体缓存最多缓存的对象数，0表示不缓存
+     */
+    public int getCacheSize() {
+        return poCacheSize;
+    }
+
+    /**
+     * 实体缓存的过期时间（秒），0表示不过期
+     */
+    public long getCacheTtl() {
+        return poCacheTtl;
+    }
+
+    /**
+     * 是否缓存查询结果
+     */
+    public boolean isQueryCache() {
+        return poQueryCache;
+    }
+
     public String getTableName(int index) {
         return poTables.get(getTableAliases()[index]);
     }
@@ -77,6 +161,10 @@ public final class PoDefinition {
         return poFields.keySet().toArray(new String[0]);
     }
 
+    public Class<?> getPoClass() {
+        return poClass;
+    }
+
     public String getFieldColumn(String fieldName) {
         return poFields.get(fieldName);
     }
@@ -85,21 +173,42 @@ public final class PoDefinition {
         return poFieldReadOnly.get(fieldName);
     }
 
-    private void init() {
+    /**
+     * 取得编译后的查询条件模板，首次使用时编译并缓存
+     */
+    public FilterTemplate getFilterTemplate(String filter) {
+        Map<String, FilterTemplate> current = filterTemplates;
+        FilterTemplate ft = current.get(filter);
+        if (ft != null) {
+            return ft;
+        }
+
+        ft = oldFilterTemplates.get(filter);
+        if (ft == null) {
+            ft = FilterTemplate.compile(this, filter);
+        }
+        if (current.size() >= MAX_FILTER_TEMPLATES / 2) {
+            current = rotateFilterTemplates(current);
+        }
+        current.put(filter, ft);
+        return ft;
+    }
+
+    private synchronized Map<String, FilterTemplate> rotateFilterTemplates(Map<String, FilterTemplate> full) {
+        if (filterTemplates == full) {
+            oldFilterTemplates = full;
+            filterTemplates = new ConcurrentHashMap<String, FilterTemplate>();
+        }
+        return filterTemplates;
+    }
+
+    private void init(PoTable annTable) {
         String tableNames;
 
-        //分析PO的表定义
-        PoTable annTable = poClass.getAnnotation(PoTable.class);
         if (annTable == null) {
             tableNames = getDefaultDBName(poClass.getSimpleName());
-            poTableJoin = null;
-            poTableFrom = null;
-            poTableTrace = null;
         } else {
             tableNames = annTable.value();
-            poTableJoin = annTable.join();
-            poTableFrom = annTable.from();
-            poTableTrace = annTable.trace();
         }
 
         for (String s : StringUtils.trimAllWhitespace(tableNames).split(",")) {
@@ -114,8 +223,16 @@ public final class PoDefinition {
             }
         }
 
-        //处理PO属性与表字段的定义关系
-        getPoFileds(poClass);
+        //处理PO属性与表字段的定义关系，有编译时生成的元数据时直接使用
+        PoMeta<?> meta = PoMeta.of(poClass);
+        if (meta != null) {
+            for (int i = 0; i < meta.getFieldCount(); i++) {
+                poFields.put(meta.getField(i), meta.getFieldColumn(i));
+                poFieldReadOnly.put(meta.getField(i), meta.isFieldReadOnly(i));
+            }
+        } else {
+            getPoFileds(poClass);
+        }
 
     }
 
@@ -195,7 +312,7 @@ public final class PoDefinition {
             }
             if (!"-".equals(columnValue)) {
                 poFields.put(suffix + "$" + field, columnValue);
-                poFieldReadOnly.put(suffix + "." + field, readOnly);
+                poFieldReadOnly.put(suffix + "$" + field, readOnly);
             }
         }
 
@@ -0,0 +1,204 @@
+package indi.gavin.orm;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 编译时生成的PO元数据（由indi.gavin.orm.processor.PoMetaProcessor为每个@PoTable类生成“类名_PoMeta”）。
+ *
+ * 包括属性与字段的对应关系、默认的select部分、insert语句，以及直接调用getter/setter的取值、映射方法。
+ * 运行时存在生成的类时，PoDefinition、PoAccessPlan、PoRowMapper等直接使用这些元数据，不再通过反射扫描PO类、
+ * 也不再为每个属性生成访问函数，减少启动时间及首次访问的延迟；不存在时仍使用反射。
+ *
+ * 生成的类与PO类在同一个包中，类名为PO的类名（嵌套类的“$”替换为“_”）加“_PoMeta”。
+ *
+ * @author Gavin
+ *
+ * @param <T>
+ */
+public abstract class PoMeta<T> {
+    private static Logger logger = LoggerFactory.getLogger(PoMeta.class);
+
+    public static final String SUFFIX = "_PoMeta";
+
+    //PO类->元数据（没有生成时为null）
+    private static final ClassValue<PoMeta<?>> instances = new ClassValue<PoMeta<?>>() {
+        @Override
+        protected PoMeta<?> computeValue(Class<?> poClass) {
+            return load(poClass);
+        }
+    };
+
+    /**
+     * 取得PO类的元数据，没有生成时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PoMeta<T> of(Class<T> poClass) {
+        return (PoMeta<T>) instances.get(poClass);
+    }
+
+    /**
+     * PO类对应的元数据类名
+     */
+    public static String getMetaClassName(String poBinaryName) {
+        int pos = poBinaryName.lastIndexOf('.');
+        return poBinaryName.substring(0, pos + 1) + poBinaryName.substring(pos + 1).replace('$', '_') + SUFFIX;
+    }
+
+    private static PoMeta<?> load(Class<?> poClass) {
+        if (poClass.isPrimitive() || poClass.isArray() || poClass.getClassLoader() == null) {
+            return null;
+        }
+        Class<?> metaClass;
+        try {
+            metaClass = Class.forName(getMetaClassName(poClass.getName()), true, poClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            PoMeta<?> meta = (PoMeta<?>) metaClass.getDeclaredConstructor().newInstance();
+            if (meta.getPoClass() != poClass) {
+                logger.warn("{} is not generated for {}, ignored.", metaClass.getName(), poClass.getName());
+                return null;
+            }
+            return meta;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            logger.warn("Can't load {}, using reflection: {}", metaClass.getName(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * PoRowMapper能够映射的属性类型
+     */
+    static boolean isMappable(Class<?> type) {
+        return String.class == type || int.class == type || Integer.class == type || long.class == type
+                || Long.class == type || Date.class == type || double.class == type || Double.class == type
+                || float.class == type || Float.class == type;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Class<T> poClass;
+    private final String[] fields;
+    private final String[] columns;
+    private final boolean[] readOnly;
+    private final Class<?>[] types;
+    private final String select;
+    private final String insertSQL;
+    private final Map<String, Integer> indexes;
+
+    /**
+     * @param fields PO属性，顺序与PoDefinition一致，嵌套对象的属性为“对象$属性”
+     * @param columns 属性对应的字段（table_alias.column_name或SQL表达式）
+     * @param readOnly 属性是否只读
+     * @param types 属性的类型
+     * @param select 默认的select部分（所有属性）
+     * @param insertSQL 包括所有可写属性的insert语句，多表联合的PO为null
+     */
+    protected PoMeta(Class<T> poClass, String[] fields, String[] columns, boolean[] readOnly, Class<?>[] types,
+            String select, String insertSQL) {
+        this.poClass = poClass;
+        this.fields = fields;
+        this.columns = columns;
+        this.readOnly = readOnly;
+        this.types = types;
+        this.select = select;
+        this.insertSQL = insertSQL;
+        this.indexes = new HashMap<String, Integer>(fields.length * 4 / 3 + 1);
+        for (int i = 0; i < fields.length; i++) {
+            indexes.put(fields[i], i);
+        }
+    }
+
+    /**
+     * 创建PO实例
+     */
+    public abstract T newInstance();
+
+    /**
+     * 读取属性值（只支持非嵌套的属性）
+     *
+     * @param field 属性序号
+     */
+    public abstract Object get(T po, int field);
+
+    /**
+     * 从结果集中读取一列并设置到属性中，取值方法与PoRowMapper一致（如int属性用ResultSet.getInt）
+     *
+     * @param field 属性序号，属性类型必须是isMappable支持的类型
+     * @param column 结果集中的列序号（从1开始）
+     */
+    public abstract void set(T po, int field, ResultSet rs, int column) throws SQLException;
+
+    public Class<T> getPoClass() {
+        return poClass;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public String getField(int field) {
+        return fields[field];
+    }
+
+    public String getFieldColumn(int field) {
+        return columns[field];
+    }
+
+    public boolean isFieldReadOnly(int field) {
+        return readOnly[field];
+    }
+
+    public Class<?> getFieldType(int field) {
+        return types[field];
+    }
+
+    /**
+     * 属性的序号，不存在时返回-1
+     */
+    public int indexOf(String field) {
+        Integer i = indexes.get(field);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * 默认的select部分（所有属性，“字段 as 别名”，逗号分隔）
+     */
+    public String getSelect() {
+        return select;
+    }
+
+    /**
+     * 包括所有可写属性的insert语句，多表联合的PO为null
+     */
+    public String getInsertSQL() {
+        return insertSQL;
+    }
+
+    /**
+     * 属性序号无效
+     */
+    protected final RuntimeException unknownField(int field) {
+        return new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, String.valueOf(field));
+    }
+
+    /**
+     * 嵌套对象为null，无法设置其属性
+     */
+    protected final void nullNested(int field) {
+        logger.error(" null instance for embeded property: {}, class is:  {}", fields[field], poClass.getName());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + fields.length + " fields]";
+    }
+}
@@ -1,7 +1,8 @@
 package indi.gavin.orm;
 
+import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.sql.ResultSet;
@@ -9,16 +10,25 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.util.StringUtils;
 
 /**
- * 通过类反射机制将jdbcTemplate查询结果转换为数据对象(PO)。
- * 目前支持的数据类型：int、string、date、double、float。
+ * 将jdbcTemplate查询结果转换为数据对象(PO)。
+ * 目前支持的数据类型：int、long、string、date、double、float。
+ * 
+ * 通过反射找到各字段对应的setter方法后，由PoAccessors生成直接调用setter的函数对象，映射时不再使用反射调用。
+ * 每个ResultSet只在映射第一行时读取元数据并取得绑定计划（列序号->binder），其余行直接按计划取值、设置属性。
+ * 绑定计划按结果集的结构（列名及顺序）缓存在PoRowMapper中；当前ResultSet使用的计划保存在forQuery()返回的
+ * 映射器中（每次查询一个），直接使用共享的instance()时保存在当前线程中，并发的查询不会互相覆盖。
  * 
  * @author Gavin
  *
@@ -31,114 +41,229 @@ public final class PoRowMapper<T> implements RowMapper<T> {
     /**
      * 实例缓存
      */
-    private static Map<Class<?>, RowMapper<?>> instances = new HashMap<Class<?>, RowMapper<?>>();
+    private static final ClassValue<RowMapper<?>> instances = new ClassValue<RowMapper<?>>() {
+        @Override
+        protected RowMapper<?> computeValue(Class<?> clazz) {
+            return new PoRowMapper<Object>(clazz);
+        }
+    };
+
+    //每个PO类最多缓存的绑定计划数（不同结构的结果集），超过时淘汰任意一个
+    private static final int MAX_PLANS = 64;
 
     @SuppressWarnings("unchecked")
     public static <W> RowMapper<W> instance(Class<W> clazz) {
-        RowMapper<W> m = (RowMapper<W>) instances.get(clazz);
-        if (m == null) {
-            m = new PoRowMapper<W>(clazz);
-            instances.put(clazz, m);
-        }
-        return m;
+        return (RowMapper<W>) instances.get(clazz);
     }
 
-    private Class<T> instClass;
-    private Map<String, Method> setters = new HashMap<String, Method>();
+    /**
+     * 为一次查询创建映射器，只能用于同一次查询（同一个线程）
+     */
+    @SuppressWarnings("unchecked")
+    public static <W> RowMapper<W> forQuery(Class<W> clazz) {
+        return new QueryRowMapper<W>((PoRowMapper<W>) instances.get(clazz));
+    }
+
+    private final Class<T> instClass;
+    private final Supplier<T> instantiator;
+
+    //绑定计划缓存：key->结果集的列名（逗号分隔），value->绑定计划
+    private final Map<String, RowPlan> plans = new ConcurrentHashMap<String, RowPlan>();
+    //直接使用instance()时，当前线程正在映射的ResultSet及其绑定计划
+    private final ThreadLocal<BoundPlan> lastPlan = new ThreadLocal<BoundPlan>();
 
-    private PoRowMapper(Class<T> clazz) {
+    @SuppressWarnings("unchecked")
+    private PoRowMapper(Class<?> clazz) {
         if (clazz == null)
             throw new NullPointerException("Null Class to instantiate " + getClass().getName());
 
-        instClass = clazz;
+        instClass = (Class<T>) clazz;
+        instantiator = PoAccessors.instantiator(instClass);
     }
 
     @Override
     public T mapRow(ResultSet rs, int index) throws SQLException {
+        T obj = newInstance();
+
+        //同一个ResultSet的所有行共用一个绑定计划，只在第一行时读取元数据
+        BoundPlan bound = lastPlan.get();
+        if (bound == null || bound.rs.get() != rs) {
+            bound = new BoundPlan(rs, getPlan(rs.getMetaData()));
+            lastPlan.set(bound);
+        }
+        bound.plan.apply(rs, obj);
+
+        return obj;
+    }
+
+    private T newInstance() throws SQLException {
         try {
-            T obj = instClass.newInstance();
-            Object invokeObj = null;
-            ResultSetMetaData md = rs.getMetaData();
-            int columnCount = md.getColumnCount();
-            String columnName;
-            String fieldName;
-            Method setter;
-            Class<?> paramClass;
-
-            for (int i = 1; i <= columnCount; i++) {
-                //首先，取得设置对象属性的;setter方法
-                columnName = md.getColumnName(i);
-                String[] alias = columnName.split("\\$");
-                if (alias.length > 1) {
-                    //嵌套对象
-                    fieldName = PoUtils.columnName2FieldName(alias[0]);
-                    invokeObj = BizUtils.getProperty(obj, fieldName);
-                    if (null == invokeObj) {
-                        logger.error(" null instance for embeded property: {}, class is:  {}", fieldName, obj
-                                .getClass().getName());
-                        continue;
-                    }
-                    setter = getSetterOfColumnName(invokeObj.getClass(), fieldName, alias[1]);
-                } else {
-                    //非嵌套对象
-                    setter = getSetterOfColumnName(instClass, "", columnName);
-                    invokeObj = obj;
+            return instantiator.get();
+        } catch (BizException e) {
+            throw new SQLException(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 取得与结果集各列对应的绑定计划，相同结构（列名及顺序）的结果集共用一个计划
+     */
+    private RowPlan getPlan(ResultSetMetaData md) throws SQLException {
+        int columnCount = md.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = md.getColumnName(i + 1);
+        }
+
+        String shape = String.join(",", columnNames);
+        RowPlan plan = plans.get(shape);
+        if (plan == null) {
+            plan = createPlan(columnNames);
+            if (plans.size() >= MAX_PLANS) {
+                Iterator<String> it = plans.keySet().iterator();
+                if (it.hasNext()) {
+                    it.next();
+                    it.remove();
                 }
-                if (setter == null) {
-                    logger.error("Can't find setter for column: {}", columnName);
+            }
+            RowPlan prev = plans.putIfAbsent(shape, plan);
+            if (prev != null) {
+                plan = prev;
+            }
+        }
+        return plan;
+    }
+
+    private RowPlan createPlan(String[] columnNames) {
+        int columnCount = columnNames.length;
+        ColumnBinder[] columnBinders = new ColumnBinder[columnCount];
+        PoAccessors.ObjectGetter[] nestedGetters = new PoAccessors.ObjectGetter[columnCount];
+        String[] nestedFields = new String[columnCount];
+        Map<String, Method> readMethods = new HashMap<String, Method>();
+        Map<String, PoAccessors.ObjectGetter> getters = new HashMap<String, PoAccessors.ObjectGetter>();
+        PoMeta<T> meta = PoMeta.of(instClass);
+        String columnName;
+        String fieldName;
+
+        for (int i = 0; i < columnCount; i++) {
+            columnName = columnNames[i];
+            if (Page.TOTAL_COLUMN.equalsIgnoreCase(columnName)) {
+                //分页查询的总记录数
+                continue;
+            }
+            int pos = columnName.indexOf('$');
+            if (pos >= 0 && pos < columnName.length() - 1) {
+                //嵌套对象
+                int end = columnName.indexOf('$', pos + 1);
+                String nestedColumn = end < 0 ? columnName.substring(pos + 1) : columnName.substring(pos + 1, end);
+                fieldName = PoUtils.columnName2FieldName(columnName.substring(0, pos));
+
+                columnBinders[i] = getBinderOfMeta(meta,
+                        fieldName + "$" + PoUtils.columnName2FieldName(nestedColumn));
+                if (columnBinders[i] != null) {
                     continue;
                 }
 
-                //然后，根据setter方法参数类型，从rs中取得相应值，并设置到对象中
-                paramClass = setter.getParameterTypes()[0];
-                try {
-                    if (String.class.equals(paramClass)) {
-                        //字符串
-                        String sValue = rs.getString(i);
-                        setter.invoke(invokeObj, sValue);
-                    } else if (int.class.equals(paramClass)) {
-                        //整数
-                        Integer iValue = rs.getInt(i);
-                        setter.invoke(invokeObj, iValue);
-                    } else if (Integer.class.equals(paramClass)) {
-                        //整数(Integer)                        
-                        Integer iValue = rs.getInt(i);
-                        setter.invoke(invokeObj, iValue);
-                    } else if (Long.class.equals(paramClass)) {
-                        //长整型 (Long)                    
-                        Long lValue = rs.getLong(i);
-                        setter.invoke(invokeObj, lValue);
-                    } else if (long.class.equals(paramClass)) {
-                        //长整型                     
-                        Long lValue = rs.getLong(i);
-                        setter.invoke(invokeObj, lValue);
-                    } else if (Date.class.equals(paramClass)) {
-                        //日期
-                        Date dValue = rs.getTimestamp(i);
-                        setter.invoke(invokeObj, dValue);
-                    } else if (Double.class.equals(paramClass)) {
-                        //double
-                        Double dValue = rs.getDouble(i);
-                        setter.invoke(invokeObj, dValue);
-                    } else if (Float.class.equals(paramClass)) {
-                        //float
-                        Float fValue = rs.getFloat(i);
-                        setter.invoke(invokeObj, fValue);
-                    } else {
-                        logger.warn("Unsupported field type: {}", paramClass.getName());
+                Method readMethod = readMethods.get(fieldName);
+                if (readMethod == null) {
+                    PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(instClass, fieldName);
+                    readMethod = pd == null ? null : pd.getReadMethod();
+                    if (readMethod == null) {
+                        throw new BizException(BizStatus.S_COMMON_GET_POPERTY_FAILED_1, fieldName);
                     }
-                } catch (IllegalArgumentException e) {
-                    logger.warn(e.getMessage(), e);
-                } catch (InvocationTargetException e) {
-                    logger.warn(e.getMessage(), e);
+                    readMethods.put(fieldName, readMethod);
+                    getters.put(fieldName, PoAccessors.getter(readMethod));
                 }
+                nestedGetters[i] = getters.get(fieldName);
+                nestedFields[i] = fieldName;
+                columnBinders[i] = getBinderOfColumnName(readMethod.getReturnType(), fieldName, nestedColumn);
+            } else {
+                //非嵌套对象
+                columnBinders[i] = getBinderOfMeta(meta, PoUtils.columnName2FieldName(columnName));
+                if (columnBinders[i] != null) {
+                    continue;
+                }
+                columnBinders[i] = getBinderOfColumnName(instClass, "", columnName);
             }
+            if (columnBinders[i] == null) {
+                logger.error("Can't find setter for column: {}", columnName);
+            }
+        }
 
-            return obj;
-        } catch (InstantiationException e) {
-            throw new SQLException(e.getMessage(), e);
-        } catch (IllegalAccessException e) {
-            throw new SQLException(e.getMessage(), e);
+        return new RowPlan(columnBinders, nestedGetters, nestedFields);
+    }
+
+    /**
+     * 通过编译时生成的元数据直接调用setter（嵌套对象的属性由元数据先取得嵌套对象），没有元数据或属性类型不支持时返回null
+     */
+    private ColumnBinder getBinderOfMeta(PoMeta<T> meta, String fieldName) {
+        int index = meta == null ? -1 : meta.indexOf(fieldName);
+        if (index < 0 || !PoMeta.isMappable(meta.getFieldType(index))) {
+            return null;
+        }
+        return (rs, i, target) -> meta.set(instClass.cast(target), index, rs, i);
+    }
+
+    /**
+     * 根据jdbc resultset中的字段名取得对应数据对象属性的binder
+     */
+    protected ColumnBinder getBinderOfColumnName(Class<?> clazz, String prefix, String dbColumnName) {
+        Method setter = getSetterOfColumnName(clazz, prefix, dbColumnName);
+        if (setter == null) {
+            return null;
+        }
+        return createBinder(setter);
+    }
+
+    /**
+     * 根据setter方法参数类型，生成从rs中取值并设置到对象中的binder，基本类型的值不会被装箱
+     */
+    static ColumnBinder createBinder(Method setter) {
+        Class<?> paramClass = setter.getParameterTypes()[0];
+        Object s = PoAccessors.setter(setter);
+
+        if (String.class.equals(paramClass)) {
+            //字符串
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getString(i));
+        } else if (int.class.equals(paramClass)) {
+            //整数
+            PoAccessors.IntSetter is = (PoAccessors.IntSetter) s;
+            return (rs, i, target) -> is.set(target, rs.getInt(i));
+        } else if (Integer.class.equals(paramClass)) {
+            //整数(Integer)
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getInt(i));
+        } else if (Long.class.equals(paramClass)) {
+            //长整型 (Long)
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getLong(i));
+        } else if (long.class.equals(paramClass)) {
+            //长整型
+            PoAccessors.LongSetter ls = (PoAccessors.LongSetter) s;
+            return (rs, i, target) -> ls.set(target, rs.getLong(i));
+        } else if (Date.class.equals(paramClass)) {
+            //日期
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getTimestamp(i));
+        } else if (Double.class.equals(paramClass)) {
+            //double (Double)
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getDouble(i));
+        } else if (double.class.equals(paramClass)) {
+            //double
+            PoAccessors.DoubleSetter ds = (PoAccessors.DoubleSetter) s;
+            return (rs, i, target) -> ds.set(target, rs.getDouble(i));
+        } else if (Float.class.equals(paramClass)) {
+            //float (Float)
+            PoAccessors.ObjectSetter os = (PoAccessors.ObjectSetter) s;
+            return (rs, i, target) -> os.set(target, rs.getFloat(i));
+        } else if (float.class.equals(paramClass)) {
+            //float
+            PoAccessors.FloatSetter fs = (PoAccessors.FloatSetter) s;
+            return (rs, i, target) -> fs.set(target, rs.getFloat(i));
+        } else {
+            logger.warn("Unsupported field type: {}", paramClass.getName());
+            return null;
         }
     }
 
@@ -149,11 +274,6 @@ public final class PoRowMapper<T> implements RowMapper<T> {
      * @return 与columnName对应的pojo属性的set方法
      */
     protected Method getSetterOfColumnName(Class<?> clazz, String prefix, String dbColumnName) {
-        String fullKey = prefix + "_" + dbColumnName;
-        if (setters.containsKey(fullKey)) {
-            return setters.get(fullKey);
-        }
-
         String fieldName = PoUtils.columnName2FieldName(dbColumnName);
         String setterName;
         Method setter = null;
@@ -176,8 +296,93 @@ public final class PoRowMapper<T> implements RowMapper<T> {
             logger.warn("{} hasn't setter for column: {}.", instClass.getName(), dbColumnName);
         }
 
-        setters.put(fullKey, setter);
         return setter;
     }
 
+    /**
+     * 结果集的绑定计划：列序号->读取值并设置属性的binder（嵌套对象的列先通过getter取得嵌套对象）
+     */
+    private final class RowPlan {
+        private final ColumnBinder[] binders;
+        private final PoAccessors.ObjectGetter[] nestedGetters;
+        private final String[] nestedFields;
+
+        RowPlan(ColumnBinder[] binders, PoAccessors.ObjectGetter[] nestedGetters, String[] nestedFields) {
+            this.binders = binders;
+            this.nestedGetters = nestedGetters;
+            this.nestedFields = nestedFields;
+        }
+
+        void apply(ResultSet rs, Object obj) throws SQLException {
+            Object invokeObj;
+            for (int i = 0; i < binders.length; i++) {
+                ColumnBinder binder = binders[i];
+                if (binder == null) {
+                    continue;
+                }
+                if (nestedGetters[i] == null) {
+                    invokeObj = obj;
+                } else {
+                    invokeObj = nestedGetters[i].get(obj);
+                    if (null == invokeObj) {
+                        logger.error(" null instance for embeded property: {}, class is:  {}", nestedFields[i],
+                                instClass.getName());
+                        continue;
+                    }
+                }
+
+                try {
+                    binder.bind(rs, i + 1, invokeObj);
+                } catch (RuntimeException e) {
+                    logger.warn(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次查询使用的映射器，保存当前ResultSet的绑定计划（只在执行查询的线程中访问）
+     */
+    private static final class QueryRowMapper<T> implements RowMapper<T> {
+        private final PoRowMapper<T> mapper;
+        private ResultSet rs;
+        private PoRowMapper<T>.RowPlan plan;
+
+        QueryRowMapper(PoRowMapper<T> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public T mapRow(ResultSet rs, int index) throws SQLException {
+            T obj = mapper.newInstance();
+            if (rs != this.rs) {
+                plan = mapper.getPlan(rs.getMetaData());
+                this.rs = rs;
+            }
+            plan.apply(rs, obj);
+            return obj;
+        }
+    }
+
+    /**
+     * 当前线程正在映射的ResultSet及其绑定计划
+     */
+    private final class BoundPlan {
+        private final WeakReference<ResultSet> rs;
+        private final RowPlan plan;
+
+        BoundPlan(ResultSet rs, RowPlan plan) {
+            this.rs = new WeakReference<ResultSet>(rs);
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * 从rs中取得指定列的值，并设置到对象的相应属性中
+     */
+    @FunctionalInterface
+    interface ColumnBinder {
+        void bind(ResultSet rs, int index, Object target) throws SQLException;
+    }
+
 }
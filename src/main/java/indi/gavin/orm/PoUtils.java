@@ -1,15 +1,15 @@
 package indi.gavin.orm;
 
-import java.lang.reflect.Field;
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.MySQLDialect;
+
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.util.StringUtils;
 import org.springframework.expression.ParserContext;
 
@@ -23,20 +23,65 @@ public final class PoUtils implements BizStatus {
 
     public static String getQuerySQL(PoDefinition poDef, String includeFields, String excludeFields, int start,
             int count, String orderBy, String groupBy, String filter, Object filterPo) {
+        return getQuerySQL(MySQLDialect.INSTANCE, poDef, includeFields, excludeFields, start, count, orderBy, groupBy,
+                filter, filterPo);
+    }
+
+    /**
+     * 生成查询语句，分页部分由方言生成
+     */
+    public static String getQuerySQL(Dialect dialect, PoDefinition poDef, String includeFields, String excludeFields,
+            int start, int count, String orderBy, String groupBy, String filter, Object filterPo) {
+        String sql;
+        if (filterPo == null) {
+            sql = QueryStatementCache.getStatement(poDef, includeFields, excludeFields, orderBy, groupBy, filter);
+        } else {
+            //查询条件依赖filterPo的属性值，不能缓存
+            sql = buildQuerySQL(poDef, includeFields, excludeFields, orderBy, groupBy, filter, filterPo);
+        }
+
+        if (start < 0) {
+            start = 0;
+        }
+        if (count > 0) {
+            StringBuilder sb = new StringBuilder(sql.length() + 24);
+            sb.append(sql);
+            dialect.appendPaging(sb, start, count);
+            return sb.toString();
+        }
+
+        return sql;
+    }
+
+    /**
+     * 生成分页查询语句，通过窗口函数count(*) over()在每一行中附带总记录数（列名为Page.TOTAL_COLUMN）
+     */
+    public static String getPageSQL(Dialect dialect, PoDefinition poDef, String includeFields, String excludeFields,
+            int start, int count, String orderBy, String filter) {
         StringBuilder sb = new StringBuilder();
 
         sb.append("select ").append(PoUtils.getQuerySelect(poDef, includeFields, excludeFields));
+        sb.append(",count(*) over() as ").append(Page.TOTAL_COLUMN);
         sb.append(" from ").append(PoUtils.getQueryFrom(poDef));
-        if (!StringUtils.isEmpty(filter)) {
-            if (StringUtils.isEmpty(poDef.getTableJoin())) {
-                sb.append(" where ").append(PoUtils.parseFilter(poDef, filter, filterPo));
-            } else {
-                sb.append(" where (").append(poDef.getTableJoin()).append(") and (");
-                sb.append(PoUtils.parseFilter(poDef, filter, filterPo)).append(')');
-            }
-        } else if (!StringUtils.isEmpty(poDef.getTableJoin())) {
-            sb.append(" where (").append(poDef.getTableJoin()).append(')');
+        appendWhere(sb, poDef, filter, null);
+        if (!StringUtils.isEmpty(StringUtils.trimAllWhitespace(orderBy))) {
+            sb.append(" order by ").append(PoUtils.parseFilter(poDef, orderBy, null));
         }
+        dialect.appendPaging(sb, Math.max(start, 0), count);
+
+        return sb.toString();
+    }
+
+    /**
+     * 生成查询语句（不含分页部分）
+     */
+    static String buildQuerySQL(PoDefinition poDef, String includeFields, String excludeFields, String orderBy,
+            String groupBy, String filter, Object filterPo) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("select ").append(PoUtils.getQuerySelect(poDef, includeFields, excludeFields));
+        sb.append(" from ").append(PoUtils.getQueryFrom(poDef));
+        appendWhere(sb, poDef, filter, filterPo);
 
         if (!StringUtils.isEmpty(StringUtils.trimAllWhitespace(orderBy))) {
             sb.append(" order by ").append(PoUtils.parseFilter(poDef, orderBy, null));
@@ -45,16 +90,25 @@ public final class PoUtils implements BizStatus {
             sb.append(" group by ").append(PoUtils.parseFilter(poDef, groupBy, null));
         }
 
-        if (start < 0) {
-            start = 0;
-        }
-        if (count > 0) {
-            sb.append(" limit ").append(start).append(',').append(count);
-        }
-
         return sb.toString();
     }
 
+    /**
+     * 追加where部分（查询条件及多表联合条件）
+     */
+    static void appendWhere(StringBuilder sb, PoDefinition poDef, String filter, Object filterPo) {
+        if (!StringUtils.isEmpty(filter)) {
+            if (StringUtils.isEmpty(poDef.getTableJoin())) {
+                sb.append(" where ").append(PoUtils.parseFilter(poDef, filter, filterPo));
+            } else {
+                sb.append(" where (").append(poDef.getTableJoin()).append(") and (");
+                sb.append(PoUtils.parseFilter(poDef, filter, filterPo)).append(')');
+            }
+        } else if (!StringUtils.isEmpty(poDef.getTableJoin())) {
+            sb.append(" where (").append(poDef.getTableJoin()).append(')');
+        }
+    }
+
     public static String getQueryFrom(PoDefinition poDef) {
         if (StringUtils.isEmpty(poDef.getTableFrom())) {
             StringBuilder sb = new StringBuilder();
@@ -81,6 +135,10 @@ public final class PoUtils implements BizStatus {
     }
 
     protected static String getQuerySelectByDefault(PoDefinition poDef) {
+        PoMeta<?> meta = PoMeta.of(poDef.getPoClass());
+        if (meta != null && !meta.getSelect().isEmpty()) {
+            return meta.getSelect();
+        }
         StringBuilder sb = new StringBuilder();
         String columnName;
 
@@ -123,21 +181,7 @@ public final class PoUtils implements BizStatus {
     }
 
     public static String parseFilter(PoDefinition poDef, String filter, Object filterPo) {
-        ExpressionParser filterParser = new SpelExpressionParser();
-        StandardEvaluationContext ctx;
-        if (filterPo == null) {
-            ctx = new StandardEvaluationContext();
-        } else {
-            ctx = new StandardEvaluationContext(filterPo);
-        }
-
-        for (String fieldName : poDef.getFields()) {
-            ctx.setVariable(fieldName, poDef.getFieldColumn(fieldName));
-        }
-
-        String result = filterParser.parseExpression(filter, FilterParseContext.instance()).getValue(ctx, String.class);
-
-        return result;
+        return poDef.getFilterTemplate(filter).evaluate(filterPo);
     }
 
     public static String columnName2FieldName(String dbColumnName) {
@@ -204,25 +248,37 @@ public final class PoUtils implements BizStatus {
      * @throws Exception
      */
     public static Map<String, Object> po2Map(Object entity) throws Exception {
-        Field[] field = entity.getClass().getDeclaredFields();
+        PoAccessPlan plan = PoAccessPlan.instance(entity.getClass());
+        String[] columns = plan.getDeclaredColumns();
+        PoAccessors.ObjectGetter[] readers = plan.getDeclaredReaders();
         Map<String, Object> map = new LinkedHashMap<String, Object>();
 
-        for (Field f : field) {
-            //把私有变量变成公有
-            f.setAccessible(true);
-            String fieldName = fieldName2ColumnName(f.getName());
-            if ("id".equals(fieldName) && null == f.get(entity)) {
-                String tableName = fieldName2ColumnName(entity.getClass().getSimpleName());
-                map.put(fieldName, BizUtils.uuid(tableName));
-            } else {
-                map.put(fieldName, f.get(entity));
-            }
+        for (int i = 0; i < columns.length; i++) {
+            map.put(columns[i], readers[i].get(entity));
         }
         return map;
     }
 
+    /**
+     * 按PO属性的类型包装查询条件的参数，绑定时使用确定的SQL类型，值为null时驱动无需查询参数的元数据。
+     * 
+     * 例如：dao.queryForList(..., "{#name}=?", PoUtils.typed(UserPo.class, "name", name))
+     * 
+     * @param poClass PO类
+     * @param fieldName PO属性名（不支持嵌套属性）
+     * @param value 参数值，可以为null
+     * @return 包含SQL类型的参数
+     */
+    public static SqlParameterValue typed(Class<?> poClass, String fieldName, Object value) {
+        PoAccessPlan.Property p = PoAccessPlan.instance(poClass).getProperty(fieldName);
+        if (p == null) {
+            throw new BizException(S_BIZ_P_ERROR_INVALID_PO_FIELD, fieldName);
+        }
+        return new SqlParameterValue(p.getSqlType(), value);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    private static Map<Class<?>, Class<?>> class2PoClass = new HashMap<Class<?>, Class<?>>();
+    private static final Map<Class<?>, Class<?>> class2PoClass = new ConcurrentHashMap<Class<?>, Class<?>>();
 
     /**
      * 
@@ -230,7 +286,7 @@ public final class PoUtils implements BizStatus {
      * @param parameterizedPoType (暂未使用）
      * @return
      */
-    public static synchronized Class<?> getParameterizedPoClass(Class<?> rootClass, Class<?> parameterizedPoType) {
+    public static Class<?> getParameterizedPoClass(Class<?> rootClass, Class<?> parameterizedPoType) {
         Class<?> poClass = class2PoClass.get(rootClass);
         if (poClass != null) {
             return poClass;
@@ -0,0 +1,471 @@
+package indi.gavin.orm;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+/**
+ * 查询结果缓存（GenericQuery.queryForList/queryForValue）。
+ *
+ * 以数据源、SQL语句、绑定参数及结果类型为键缓存查询结果，通过@PoTable(queryCache=true)或QueryResultCache.enable按PO类启用。
+ *
+ * 失效机制：每个表有一个版本号，通过GenericDaoHelper增加、修改、删除记录时递增该表的版本号；
+ * 缓存结果时记录PO涉及的所有表（多表联合时为每个表）在查询前的版本号，读取时任一表的版本号发生变化即视为失效。
+ * PO涉及的表包括@PoTable的value中的表，以及from、join中“from/join/,”之后的表名（子查询中的表也包括在内）。
+ * 在事务中修改时，事务结束后再递增一次版本号；在（非只读）事务中查询的结果不放入缓存。
+ * 不经过本框架直接修改数据库的，只能依赖过期时间（setTtl）。
+ *
+ * 缓存的PO列表在放入及取出时都复制（包括嵌套对象），调用者修改返回的对象不影响缓存；
+ * 嵌套对象以外的可变属性（如Date、数组）仍与缓存共享，调用者不应修改。
+ *
+ * @author Gavin
+ *
+ */
+public final class QueryResultCache {
+    private static Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    /**
+     * 默认最多缓存的结果数
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * 默认过期时间（毫秒）
+     */
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+
+    //PO类->缓存设置及涉及的表
+    private static final ClassValue<Region> regions = new ClassValue<Region>() {
+        @Override
+        protected Region computeValue(Class<?> poClass) {
+            return new Region(PoDefinition.instance(poClass));
+        }
+    };
+
+    //PO类->创建实例的函数对象，复制结果时使用
+    private static final ClassValue<Supplier<?>> instantiators = new ClassValue<Supplier<?>>() {
+        @Override
+        protected Supplier<?> computeValue(Class<?> clazz) {
+            return PoAccessors.instantiator(clazz);
+        }
+    };
+
+    //表名（小写）->版本号
+    private static final ConcurrentHashMap<String, AtomicLong> tableVersions =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    private static final ConcurrentHashMap<Key, Entry> results = new ConcurrentHashMap<Key, Entry>();
+
+    //from、join中“from/join/,”之后的表名（可带schema及引号），子查询以“(”开始，不会被当作表名
+    private static final Pattern FROM_TABLE =
+            Pattern.compile("(?i)(?:^|\\bfrom\\b|\\bjoin\\b|,)\\s*[`\"\\[]?([a-z_][\\w.$]*)");
+    private static final Pattern JOIN_TABLE =
+            Pattern.compile("(?i)\\b(?:from|join)\\s+[`\"\\[]?([a-z_][\\w.$]*)");
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+    private static volatile long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private QueryResultCache() {
+    }
+
+    /**
+     * 查询PO列表，PO类启用了结果缓存时优先从缓存中读取
+     */
+    static <R> List<R> queryForList(JdbcTemplate db, Class<?> poClass, Class<R> rowClass, String sql,
+            RowMapper<R> rowMapper, Object[] args) {
+        Region region = regions.get(poClass);
+        if (!region.enabled || maxSize <= 0) {
+            return query(db, sql, rowMapper, args);
+        }
+
+        Key key = new Key(db.getDataSource(), sql, args, rowClass);
+        Entry e = lookup(key, region);
+        if (e != null) {
+            return copyList(e.value);
+        }
+
+        long[] versions = region.getVersions();
+        List<R> result = query(db, sql, rowMapper, args);
+        if (result != null) {
+            store(key, copyList(result), versions);
+        }
+        return result;
+    }
+
+    /**
+     * 查询一个值，PO类启用了结果缓存时优先从缓存中读取（只缓存数值、字符串等不可变类型的值）
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R queryForValue(JdbcTemplate db, Class<?> poClass, Class<R> valueClass, String sql, Object[] args) {
+        Region region = regions.get(poClass);
+        if (!region.enabled || maxSize <= 0 || !isImmutable(valueClass)) {
+            return queryForObject(db, sql, valueClass, args);
+        }
+
+        Key key = new Key(db.getDataSource(), sql, args, valueClass);
+        Entry e = lookup(key, region);
+        if (e != null) {
+            return (R) e.value;
+        }
+
+        long[] versions = region.getVersions();
+        R value = queryForObject(db, sql, valueClass, args);
+        store(key, value, versions);
+        return value;
+    }
+
+    private static <R> List<R> query(JdbcTemplate db, String sql, RowMapper<R> rowMapper, Object[] args) {
+        return args == null ? db.query(sql, rowMapper) : db.query(sql, rowMapper, args);
+    }
+
+    private static <R> R queryForObject(JdbcTemplate db, String sql, Class<R> valueClass, Object[] args) {
+        return args == null ? db.queryForObject(sql, valueClass) : db.queryForObject(sql, valueClass, args);
+    }
+
+    /**
+     * 取得PO涉及的各表当前的版本号
+     */
+    static long[] getTableVersions(Class<?> poClass) {
+        return regions.get(poClass).getVersions();
+    }
+
+    /**
+     * PO涉及的各表的版本号是否与versions一致（即期间没有通过本框架修改过数据）
+     */
+    static boolean isCurrent(Class<?> poClass, long[] versions) {
+        return regions.get(poClass).isCurrent(versions);
+    }
+
+    /**
+     * 启用PO类的结果缓存，优先于@PoTable中的设置
+     */
+    public static void enable(Class<?> poClass) {
+        Region region = regions.get(poClass);
+        if (region.tables.length == 0) {
+            //无法确定涉及哪些表，也就无法失效
+            logger.warn("Can't enable query result cache for {}: no table defined.", poClass.getName());
+            return;
+        }
+        region.enabled = true;
+    }
+
+    /**
+     * 停用PO类的结果缓存
+     */
+    public static void disable(Class<?> poClass) {
+        regions.get(poClass).enabled = false;
+    }
+
+    public static boolean isEnabled(Class<?> poClass) {
+        return regions.get(poClass).enabled;
+    }
+
+    /**
+     * 表中的数据发生了变化，使涉及该表的缓存结果失效（在事务中时，事务结束后再失效一次）
+     */
+    public static void invalidateTable(String tableName) {
+        AtomicLong version = getVersion(tableName);
+        version.incrementAndGet();
+        //每个事务中每个表只需注册一次，以版本号对象作为事务资源的键
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(version)) {
+            TransactionSynchronizationManager.bindResource(version, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(version);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 取得表的版本号
+     */
+    public static long getTableVersion(String tableName) {
+        return getVersion(tableName).get();
+    }
+
+    /**
+     * 设置最多缓存的结果数，小于等于0表示不缓存
+     */
+    public static void setMaxSize(int size) {
+        maxSize = size;
+        while (results.size() > Math.max(size, 0)) {
+            evictOne();
+        }
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 设置过期时间（毫秒），小于等于0表示不过期
+     */
+    public static void setTtl(long ttlMillis) {
+        ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+    }
+
+    public static long getTtl() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    public static int size() {
+        return results.size();
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * 清空缓存及统计数据
+     */
+    public static void clear() {
+        results.clear();
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    private static Entry lookup(Key key, Region region) {
+        Entry e = results.get(key);
+        if (e != null) {
+            if ((e.expireAt == 0 || e.expireAt - System.nanoTime() > 0) && region.isCurrent(e.versions)) {
+                hits.incrementAndGet();
+                return e;
+            }
+            results.remove(key, e);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private static void store(Key key, Object value, long[] versions) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            //事务中可能读到未提交的数据
+            return;
+        }
+        if (results.size() >= maxSize) {
+            evictOne();
+        }
+        long ttl = ttlNanos;
+        results.put(key, new Entry(value, versions, ttl == 0 ? 0 : System.nanoTime() + ttl));
+    }
+
+    /**
+     * 缓存已满时淘汰任意一条结果
+     */
+    private static void evictOne() {
+        Iterator<Key> it = results.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static AtomicLong getVersion(String tableName) {
+        return tableVersions.computeIfAbsent(tableName.toLowerCase(), k -> new AtomicLong());
+    }
+
+    /**
+     * PO涉及的所有表（小写）。多取到的名称（如from中函数的参数）只会使缓存多失效几次，不影响正确性
+     */
+    static Set<String> getTableNames(PoDefinition poDef) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String alias : poDef.getTableAliases()) {
+            names.add(poDef.getTableName(alias).toLowerCase());
+        }
+        addTables(names, FROM_TABLE, poDef.getTableFrom());
+        addTables(names, JOIN_TABLE, poDef.getTableJoin());
+        return names;
+    }
+
+    private static void addTables(Set<String> names, Pattern pattern, String sql) {
+        if (StringUtils.isEmpty(sql)) {
+            return;
+        }
+        Matcher m = pattern.matcher(sql.trim());
+        while (m.find()) {
+            String name = m.group(1).toLowerCase();
+            if (!"select".equals(name) && !"lateral".equals(name)) {
+                names.add(name);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> copyList(Object list) {
+        List<R> source = (List<R>) list;
+        List<R> target = new ArrayList<R>(source.size());
+        for (R row : source) {
+            if (row == null || isImmutable(row.getClass())) {
+                target.add(row);
+            } else {
+                target.add(PoAccessPlan.copy(row, (R) instantiators.get(row.getClass()).get()));
+            }
+        }
+        return target;
+    }
+
+    private static boolean isImmutable(Class<?> clazz) {
+        if (clazz.isPrimitive() || String.class.equals(clazz) || Boolean.class.equals(clazz)
+                || Character.class.equals(clazz) || BigDecimal.class.equals(clazz) || BigInteger.class.equals(clazz)) {
+            return true;
+        }
+        //Integer、Long等基本类型的包装类
+        return Number.class.isAssignableFrom(clazz) && clazz.getName().startsWith("java.lang.");
+    }
+
+    /**
+     * 复制SQL参数用作缓存的key：参数可能被调用者修改，Date复制一份；PoUtils.typed包装的参数转换为可比较的形式
+     */
+    static Object[] copyArgs(Object[] args) {
+        if (args == null) {
+            return new Object[0];
+        }
+        Object[] copied = args.clone();
+        for (int i = 0; i < copied.length; i++) {
+            Object arg = copied[i];
+            //PoUtils.typed包装的参数没有实现equals，按类型及值比较
+            if (arg instanceof SqlParameterValue) {
+                SqlParameterValue typed = (SqlParameterValue) arg;
+                arg = typed.getValue() instanceof Date ? ((Date) typed.getValue()).clone() : typed.getValue();
+                copied[i] = new Object[] { typed.getSqlType(), arg };
+            } else if (arg instanceof Date) {
+                copied[i] = ((Date) arg).clone();
+            }
+        }
+        return copied;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * PO类的缓存设置
+     */
+    private static final class Region {
+        volatile boolean enabled;
+        //涉及的表的版本号
+        final AtomicLong[] tables;
+
+        Region(PoDefinition poDef) {
+            Set<String> names = getTableNames(poDef);
+            tables = new AtomicLong[names.size()];
+            int i = 0;
+            for (String name : names) {
+                tables[i++] = getVersion(name);
+            }
+            enabled = poDef.isQueryCache() && tables.length > 0;
+        }
+
+        long[] getVersions() {
+            long[] versions = new long[tables.length];
+            for (int i = 0; i < tables.length; i++) {
+                versions[i] = tables[i].get();
+            }
+            return versions;
+        }
+
+        boolean isCurrent(long[] versions) {
+            for (int i = 0; i < tables.length; i++) {
+                if (tables[i].get() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        //查询前各表的版本号
+        final long[] versions;
+        //过期时间（System.nanoTime），0表示不过期
+        final long expireAt;
+
+        Entry(Object value, long[] versions, long expireAt) {
+            this.value = value;
+            this.versions = versions;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static final class Key {
+        private final DataSource ds;
+        private final String sql;
+        private final Object[] args;
+        private final Class<?> resultClass;
+        private final int hash;
+
+        Key(DataSource ds, String sql, Object[] args, Class<?> resultClass) {
+            this.ds = ds;
+            this.sql = sql;
+            //参数可能被调用者修改，保存副本
+            this.args = copyArgs(args);
+            this.resultClass = resultClass;
+
+            int h = System.identityHashCode(ds);
+            h = 31 * h + sql.hashCode();
+            h = 31 * h + Arrays.deepHashCode(this.args);
+            h = 31 * h + resultClass.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return hash == k.hash && ds == k.ds && resultClass == k.resultClass && sql.equals(k.sql)
+                    && Arrays.deepEquals(args, k.args);
+        }
+    }
+}
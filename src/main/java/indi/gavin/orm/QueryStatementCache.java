@@ -0,0 +1,179 @@
+package indi.gavin.orm;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 查询语句缓存。
+ *
+ * 以PO类、查询字段（include/exclude）、排序、分组、查询条件模板为键，缓存PoUtils生成的SELECT语句。
+ * 分页部分（limit）不参与缓存，命中后再追加到语句末尾，因此不同的分页参数共享同一条缓存。
+ *
+ * 注意：仅缓存不依赖filterPo的查询条件（即filterPo为null时），并且模板中只含有字段引用（如“{#field}”），
+ * 此时查询条件模板的解析结果只与PO定义有关。
+ *
+ * @author Gavin
+ *
+ */
+public final class QueryStatementCache {
+
+    /**
+     * 默认最多缓存的语句数
+     */
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static final ConcurrentHashMap<Key, String> statements = new ConcurrentHashMap<Key, String>();
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private QueryStatementCache() {
+    }
+
+    /**
+     * 取得查询语句（不含分页部分），缓存中没有时生成并放入缓存
+     */
+    static String getStatement(PoDefinition poDef, String includeFields, String excludeFields, String orderBy,
+            String groupBy, String filter) {
+        Key key = new Key(poDef, includeFields, excludeFields, orderBy, groupBy, filter);
+        String sql = statements.get(key);
+        if (sql != null) {
+            hits.incrementAndGet();
+            return sql;
+        }
+
+        misses.incrementAndGet();
+        sql = PoUtils.buildQuerySQL(poDef, includeFields, excludeFields, orderBy, groupBy, filter, null);
+        if (maxSize <= 0 || !isStatic(poDef, orderBy) || !isStatic(poDef, groupBy) || !isStatic(poDef, filter)) {
+            return sql;
+        }
+        if (statements.size() >= maxSize) {
+            evictOne();
+        }
+        String prev = statements.putIfAbsent(key, sql);
+
+        return prev == null ? sql : prev;
+    }
+
+    /**
+     * 预先注册常用的查询形态（如在应用启动时调用），避免首次请求时生成SQL
+     *
+     * @return 生成的查询语句（不含分页部分）
+     */
+    public static String register(Class<?> poClass, String includeFields, String excludeFields, String orderBy,
+            String groupBy, String filter) {
+        return getStatement(PoDefinition.instance(poClass), includeFields, excludeFields, orderBy, groupBy, filter);
+    }
+
+    /**
+     * 设置最多缓存的语句数，小于等于0表示不缓存
+     */
+    public static void setMaxSize(int size) {
+        maxSize = size;
+        while (statements.size() > Math.max(size, 0)) {
+            evictOne();
+        }
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static int size() {
+        return statements.size();
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * 清空缓存及统计数据
+     */
+    public static void clear() {
+        statements.clear();
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * 模板中含有需要SpEL计算的表达式时，每次计算的结果可能不同，不能缓存
+     */
+    private static boolean isStatic(PoDefinition poDef, String template) {
+        return template == null || template.isEmpty() || poDef.getFilterTemplate(template).isStatic();
+    }
+
+    /**
+     * 缓存已满时淘汰任意一条语句
+     */
+    private static void evictOne() {
+        Iterator<Key> it = statements.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class Key {
+        private final PoDefinition poDef;
+        private final String includeFields;
+        private final String excludeFields;
+        private final String orderBy;
+        private final String groupBy;
+        private final String filter;
+        private final int hash;
+
+        Key(PoDefinition poDef, String includeFields, String excludeFields, String orderBy, String groupBy,
+                String filter) {
+            this.poDef = poDef;
+            this.includeFields = includeFields;
+            this.excludeFields = excludeFields;
+            this.orderBy = orderBy;
+            this.groupBy = groupBy;
+            this.filter = filter;
+
+            int h = System.identityHashCode(poDef);
+            h = 31 * h + Objects.hashCode(includeFields);
+            h = 31 * h + Objects.hashCode(excludeFields);
+            h = 31 * h + Objects.hashCode(orderBy);
+            h = 31 * h + Objects.hashCode(groupBy);
+            h = 31 * h + Objects.hashCode(filter);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return poDef == k.poDef && hash == k.hash && Objects.equals(filter, k.filter)
+                    && Objects.equals(includeFields, k.includeFields) && Objects.equals(excludeFields, k.excludeFields)
+                    && Objects.equals(orderBy, k.orderBy) && Objects.equals(groupBy, k.groupBy);
+        }
+    }
+}
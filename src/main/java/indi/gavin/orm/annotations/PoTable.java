@@ -46,4 +46,43 @@ public @interface PoTable {
       *2.  记录表在原表结构的基础上追加字段“TRACE_ID”和“TRACE_ACTION”、并以TRACE_ID为主键
      */
     String trace() default "";
+
+    /**
+     * 批量创建记录时，每条insert语句最多包含多少行（insert ... values (...),(...),...）。
+     * 0表示不使用多行insert，而是通过JDBC批处理逐行提交。
+     * 
+     * 例如：
+     *     @PoTable(value="TM_LOG",multiRowInsert=500)
+     */
+    int multiRowInsert() default 0;
+
+    /**
+     * 唯一键对应的PO属性，多个属性之间用逗号分隔。
+     * upsert（insert-or-update）时按这些属性判断记录是否已存在，要求数据库中有对应的主键或唯一索引。
+     * 
+     * 例如：
+     *     @PoTable(value="TM_SYNC_ITEM",keys="source,code")
+     */
+    String keys() default "id";
+
+    /**
+     * 实体缓存最多缓存多少个对象，0表示不缓存。启用后ObjectWithIdDao.get优先从缓存中读取，参见EntityCache。
+     * 
+     * 例如：
+     *     @PoTable(value="TM_DICT",cacheSize=5000,cacheTtl=600)
+     */
+    int cacheSize() default 0;
+
+    /**
+     * 实体缓存的过期时间（秒），0表示不过期
+     */
+    long cacheTtl() default 0;
+
+    /**
+     * 是否缓存queryForList/queryForValue的查询结果，通过GenericDaoHelper修改相关表时自动失效，参见QueryResultCache。
+     * 
+     * 例如：
+     *     @PoTable(value="TM_ORDER",queryCache=true)
+     */
+    boolean queryCache() default false;
 }
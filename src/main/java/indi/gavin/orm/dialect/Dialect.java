@@ -0,0 +1,129 @@
+package indi.gavin.orm.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 数据库方言。
+ * 
+ * 封装各数据库SQL语法及限制的差异（分页、多行insert、upsert、自增主键的返回、绑定参数个数等），
+ * 查询及修改语句的生成通过方言选择各数据库最快的写法。通过Dialects.of(JdbcTemplate)取得当前数据源对应的方言。
+ * 
+ * @author Gavin
+ *
+ */
+public interface Dialect {
+
+    /**
+     * 方言名称，如：MySQL
+     */
+    String getName();
+
+    /**
+     * 在查询语句后追加分页部分
+     * 
+     * @param sb 查询语句
+     * @param start 从第几条记录开始（0-based）
+     * @param count 最多返回多少条记录
+     */
+    void appendPaging(StringBuilder sb, int start, int count);
+
+    /**
+     * 一条语句最多允许的绑定参数个数
+     */
+    int getMaxBindParameters();
+
+    /**
+     * “in (?,?,...)”中最多包含多少个值
+     */
+    default int getMaxInListSize() {
+        return 1000;
+    }
+
+    /**
+     * 是否支持窗口函数（如count(*) over()），支持时分页查询可以在同一条语句中取得总记录数
+     */
+    default boolean supportsWindowFunctions() {
+        return false;
+    }
+
+    /**
+     * 一条多行insert语句最多包含多少行
+     */
+    default int getMaxInsertRows() {
+        return 1000;
+    }
+
+    /**
+     * 生成insert-or-update语句，记录（按keyColumns判断）已存在时更新updateColumns，否则插入。
+     * 
+     * @param table 表名
+     * @param columns insert的字段
+     * @param keyColumns 唯一键字段
+     * @param updateColumns 记录已存在时更新的字段，为空时不更新
+     * @param rows 语句中包含多少行
+     */
+    String getUpsertSQL(String table, List<String> columns, List<String> keyColumns, List<String> updateColumns,
+            int rows);
+
+    /**
+     * 创建执行insert并返回自动生成的主键的语句
+     * 
+     * @param keyColumns 主键字段
+     */
+    default PreparedStatement prepareReturningKeys(Connection con, String sql, String[] keyColumns)
+            throws SQLException {
+        if (keyColumns == null || keyColumns.length == 0) {
+            return con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        return con.prepareStatement(sql, keyColumns);
+    }
+
+    /**
+     * 取得流式查询实际使用的JDBC fetch size
+     * 
+     * @param fetchSize 调用者指定的fetch size，0表示使用驱动的默认值
+     */
+    default int getStreamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
+    /**
+     * 流式查询是否需要在事务中执行（关闭auto-commit）。
+     * 
+     * 为true时，连接处于auto-commit状态的流式查询会临时关闭auto-commit，关闭结果集后再恢复。
+     */
+    default boolean isStreamingInTransaction() {
+        return false;
+    }
+
+    /**
+     * 根据执行计划估算查询语句返回的记录数，用于代替代价高的count(*)
+     * 
+     * @param db 执行EXPLAIN的JdbcTemplate
+     * @param sql 查询语句，如：select 1 from T where ...
+     * @param args 查询语句的参数
+     * @return 估算的记录数，不支持或无法估算时返回-1
+     */
+    default long estimateRowCount(JdbcTemplate db, String sql, Object[] args) {
+        return -1;
+    }
+
+    /**
+     * 拼接“(?,?,...),(?,?,...)”形式的多行values
+     */
+    static void appendValues(StringBuilder sb, int columns, int rows) {
+        for (int r = 0; r < rows; r++) {
+            sb.append(r > 0 ? ",(" : "(");
+            for (int i = 0; i < columns; i++) {
+                sb.append(i > 0 ? ",?" : "?");
+            }
+            sb.append(')');
+        }
+    }
+}
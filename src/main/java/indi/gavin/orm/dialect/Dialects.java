@@ -0,0 +1,105 @@
+package indi.gavin.orm.dialect;
+
+import indi.gavin.orm.jdbc.JdbcWizard;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * 取得数据源对应的方言。
+ * 
+ * JdbcWizard可以直接指定方言；其它情况根据DatabaseMetaData中的数据库产品名自动识别。
+ * 只有MySQL及MariaDB使用MySQL方言；不支持的数据库输出警告后使用MySQL 5.x的写法（与未引入方言前的行为一致，
+ * 分页等语法可能不正确），应通过JdbcWizard指定方言。
+ * 
+ * @author Gavin
+ *
+ */
+public final class Dialects {
+    private static Logger logger = LoggerFactory.getLogger(Dialects.class);
+
+    //数据源->方言，数据源被回收后自动移除
+    private static final Map<DataSource, Dialect> dialects =
+            new ConcurrentReferenceHashMap<DataSource, Dialect>(16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
+    private Dialects() {
+    }
+
+    public static Dialect of(JdbcTemplate db) {
+        if (db instanceof JdbcWizard) {
+            return ((JdbcWizard) db).getDialect();
+        }
+        return of(db.getDataSource());
+    }
+
+    public static Dialect of(DataSource ds) {
+        if (ds == null) {
+            return MySQLDialect.INSTANCE;
+        }
+        Dialect dialect = dialects.get(ds);
+        if (dialect == null) {
+            dialect = detect(ds);
+            dialects.put(ds, dialect);
+        }
+        return dialect;
+    }
+
+    /**
+     * 根据数据库产品名及版本识别方言
+     */
+    public static Dialect detect(DataSource ds) {
+        Object[] product;
+        try {
+            product = (Object[]) JdbcUtils.extractDatabaseMetaData(ds, md -> new Object[] {
+                    JdbcUtils.commonDatabaseName(md.getDatabaseProductName()), md.getDatabaseMajorVersion(),
+                    md.getDatabaseMinorVersion() });
+        } catch (MetaDataAccessException e) {
+            logger.warn("Can't detect database dialect, using MySQL: {}", e.getMessage());
+            return MySQLDialect.INSTANCE;
+        }
+
+        Dialect dialect = forProduct((String) product[0], (Integer) product[1], (Integer) product[2]);
+        logger.info("Database dialect: {} for {} {}.{}", dialect.getName(), product[0], product[1], product[2]);
+        return dialect;
+    }
+
+    public static Dialect forProductName(String product) {
+        return forProduct(product, 0, 0);
+    }
+
+    /**
+     * 根据数据库产品名及版本取得方言，版本号用于判断是否支持窗口函数等新特性
+     */
+    public static Dialect forProduct(String product, int majorVersion, int minorVersion) {
+        if (product == null) {
+            logger.warn("Unknown database product, falling back to MySQL 5.x dialect");
+            return MySQLDialect.INSTANCE;
+        }
+        String name = product.toLowerCase();
+        if (name.contains("postgresql")) {
+            return PostgreSQLDialect.INSTANCE;
+        }
+        if (name.equals("h2") || name.startsWith("h2 ")) {
+            return H2Dialect.INSTANCE;
+        }
+        if (name.contains("mariadb")) {
+            //MariaDB 10.2开始支持窗口函数
+            boolean window = majorVersion > 10 || majorVersion == 10 && minorVersion >= 2;
+            return window ? MySQLDialect.MYSQL8 : MySQLDialect.INSTANCE;
+        }
+        if (name.contains("mysql")) {
+            return majorVersion >= 8 ? MySQLDialect.MYSQL8 : MySQLDialect.INSTANCE;
+        }
+        logger.warn("Unsupported database {}, falling back to MySQL 5.x dialect; "
+                + "specify the dialect with JdbcWizard if paging or upsert SQL fails", product);
+        return MySQLDialect.INSTANCE;
+    }
+}
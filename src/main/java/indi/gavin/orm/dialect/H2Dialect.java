@@ -0,0 +1,70 @@
+package indi.gavin.orm.dialect;
+
+import java.util.List;
+
+/**
+ * H2方言，可用于在嵌入式数据库中验证各种优化写法
+ * 
+ * @author Gavin
+ *
+ */
+public class H2Dialect implements Dialect {
+
+    public static final H2Dialect INSTANCE = new H2Dialect();
+
+    @Override
+    public String getName() {
+        return "H2";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, int start, int count) {
+        sb.append(" limit ").append(count);
+        if (start > 0) {
+            sb.append(" offset ").append(start);
+        }
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return 65535;
+    }
+
+    @Override
+    public boolean supportsWindowFunctions() {
+        return true;
+    }
+
+    /**
+     * merge into t using (values (?,?)) as S(c1,c2) on (t.c1=S.c1)
+     * when matched then update set c2=S.c2 when not matched then insert (c1,c2) values (S.c1,S.c2)
+     */
+    @Override
+    public String getUpsertSQL(String table, List<String> columns, List<String> keyColumns,
+            List<String> updateColumns, int rows) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("merge into ").append(table).append(" T using (values ");
+        Dialect.appendValues(sb, columns.size(), rows);
+        sb.append(") as S(").append(String.join(",", columns)).append(") on (");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            String c = keyColumns.get(i);
+            sb.append(i > 0 ? " and " : "").append("T.").append(c).append("=S.").append(c);
+        }
+        sb.append(')');
+        if (!updateColumns.isEmpty()) {
+            sb.append(" when matched then update set ");
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String c = updateColumns.get(i);
+                sb.append(i > 0 ? "," : "").append(c).append("=S.").append(c);
+            }
+        }
+        sb.append(" when not matched then insert (").append(String.join(",", columns)).append(") values (");
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i > 0 ? ",S." : "S.").append(columns.get(i));
+        }
+        sb.append(')');
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package indi.gavin.orm.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * MySQL（及MariaDB）方言
+ * 
+ * @author Gavin
+ *
+ */
+public class MySQLDialect implements Dialect {
+
+    /**
+     * MySQL 5.x
+     */
+    public static final MySQLDialect INSTANCE = new MySQLDialect(false);
+
+    /**
+     * MySQL 8.0及以上版本（支持窗口函数）
+     */
+    public static final MySQLDialect MYSQL8 = new MySQLDialect(true);
+
+    private final boolean windowFunctions;
+
+    public MySQLDialect(boolean windowFunctions) {
+        this.windowFunctions = windowFunctions;
+    }
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, int start, int count) {
+        sb.append(" limit ").append(start).append(',').append(count);
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return 65535;
+    }
+
+    @Override
+    public boolean supportsWindowFunctions() {
+        return windowFunctions;
+    }
+
+    /**
+     * insert into t(c1,c2) values (?,?) on duplicate key update c2=values(c2)
+     */
+    @Override
+    public String getUpsertSQL(String table, List<String> columns, List<String> keyColumns,
+            List<String> updateColumns, int rows) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("insert into ").append(table).append('(').append(String.join(",", columns)).append(") values ");
+        Dialect.appendValues(sb, columns.size(), rows);
+        sb.append(" on duplicate key update ");
+        if (updateColumns.isEmpty()) {
+            //不更新任何字段
+            String c = keyColumns.isEmpty() ? columns.get(0) : keyColumns.get(0);
+            sb.append(c).append('=').append(c);
+        } else {
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String c = updateColumns.get(i);
+                sb.append(i > 0 ? "," : "").append(c).append("=values(").append(c).append(')');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 取EXPLAIN结果中的rows×filtered%，多表联合（执行计划有多行）时无法估算
+     */
+    @Override
+    public long estimateRowCount(JdbcTemplate db, String sql, Object[] args) {
+        return db.query("explain " + sql, args, rs -> {
+            if (!rs.next()) {
+                return -1L;
+            }
+            long rows = rs.getLong("rows");
+            double filtered = rs.getDouble("filtered");
+            if (rs.wasNull()) {
+                filtered = 100;
+            }
+            return rs.next() ? -1L : (long) (rows * filtered / 100);
+        });
+    }
+
+    /**
+     * MySQL只能通过RETURN_GENERATED_KEYS取得自增主键
+     */
+    @Override
+    public PreparedStatement prepareReturningKeys(Connection con, String sql, String[] keyColumns)
+            throws SQLException {
+        return con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    /**
+     * MySQL驱动只有在fetch size为Integer.MIN_VALUE时才逐行读取结果集，否则会把结果集全部读入内存。
+     * 
+     * 注意：逐行读取期间，同一连接在结果集读完或关闭前不能执行其它语句（驱动会抛出异常），
+     * 因此在事务中流式查询时，处理每一行的操作不能再通过同一事务访问数据库。
+     */
+    @Override
+    public int getStreamingFetchSize(int fetchSize) {
+        return fetchSize > 0 ? Integer.MIN_VALUE : fetchSize;
+    }
+}
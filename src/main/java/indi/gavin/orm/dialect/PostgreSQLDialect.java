@@ -0,0 +1,92 @@
+package indi.gavin.orm.dialect;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * PostgreSQL方言
+ * 
+ * @author Gavin
+ *
+ */
+public class PostgreSQLDialect implements Dialect {
+
+    public static final PostgreSQLDialect INSTANCE = new PostgreSQLDialect();
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    @Override
+    public String getName() {
+        return "PostgreSQL";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, int start, int count) {
+        sb.append(" limit ").append(count);
+        if (start > 0) {
+            sb.append(" offset ").append(start);
+        }
+    }
+
+    /**
+     * 协议中绑定参数个数为16位有符号整数
+     */
+    @Override
+    public int getMaxBindParameters() {
+        return 32767;
+    }
+
+    @Override
+    public boolean supportsWindowFunctions() {
+        return true;
+    }
+
+    /**
+     * PostgreSQL驱动在auto-commit状态下忽略fetch size，会把结果集全部读入内存
+     */
+    @Override
+    public boolean isStreamingInTransaction() {
+        return true;
+    }
+
+    /**
+     * 取EXPLAIN结果第一行（最外层节点）中的“rows=N”
+     */
+    @Override
+    public long estimateRowCount(JdbcTemplate db, String sql, Object[] args) {
+        return db.query("explain " + sql, args, rs -> {
+            if (!rs.next()) {
+                return -1L;
+            }
+            Matcher m = PLAN_ROWS.matcher(rs.getString(1));
+            return m.find() ? Long.parseLong(m.group(1)) : -1L;
+        });
+    }
+
+    /**
+     * insert into t(c1,c2) values (?,?) on conflict (c1) do update set c2=excluded.c2
+     */
+    @Override
+    public String getUpsertSQL(String table, List<String> columns, List<String> keyColumns,
+            List<String> updateColumns, int rows) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("insert into ").append(table).append('(').append(String.join(",", columns)).append(") values ");
+        Dialect.appendValues(sb, columns.size(), rows);
+        sb.append(" on conflict (").append(String.join(",", keyColumns)).append(')');
+        if (updateColumns.isEmpty()) {
+            sb.append(" do nothing");
+        } else {
+            sb.append(" do update set ");
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String c = updateColumns.get(i);
+                sb.append(i > 0 ? "," : "").append(c).append("=excluded.").append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -5,17 +5,39 @@ package indi.gavin.orm.helper;
 
 import indi.gavin.orm.BizException;
 import indi.gavin.orm.BizStatus;
+import indi.gavin.orm.EntityCache;
+import indi.gavin.orm.PoAccessPlan;
 import indi.gavin.orm.PoDefinition;
+import indi.gavin.orm.PoMeta;
 import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.QueryResultCache;
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.Dialects;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoOperation;
 
-import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -30,8 +52,30 @@ import org.springframework.util.StringUtils;
 public class GenericDaoHelper {
     private static Logger logger = LoggerFactory.getLogger(GenericDaoHelper.class);
 
+    /**
+     * 批量创建记录时，默认每批提交的记录数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    //按id修改、删除时的条件，此时只需淘汰实体缓存中的一个对象
+    private static final String ID_FILTER = "{#id}=?";
+
+    /**
+     * 按属性的SQL类型（PoAccessPlan.Property.getSqlType）绑定参数
+     */
+    private static ParameterizedPreparedStatementSetter<Object[]> argumentSetter(int[] sqlTypes) {
+        return (ps, args) -> {
+            for (int i = 0; i < args.length; i++) {
+                StatementCreatorUtils.setParameterValue(ps, i + 1, sqlTypes[i], args[i]);
+            }
+        };
+    }
+
     protected JdbcTemplate db;
     protected Class<?> poClass;
+    protected PoAccessPlan plan;
+    //编译时生成的、包括所有可写属性的单行insert语句（没有时为null）
+    private String fullInsertSQL;
 
     public GenericDaoHelper(JdbcTemplate db, Class<?> poClass) {
         Assert.notNull(db);
@@ -45,6 +89,9 @@ public class GenericDaoHelper {
 
         this.db = db;
         this.poClass = poClass;
+        this.plan = PoAccessPlan.instance(poClass);
+        PoMeta<?> meta = PoMeta.of(poClass);
+        this.fullInsertSQL = meta == null ? null : meta.getInsertSQL();
     }
 
     /**
@@ -55,80 +102,468 @@ public class GenericDaoHelper {
      */
     public int create(Object entity) {
         Assert.notNull(entity);
+        long begin = DaoMetrics.begin();
 
-        PoDefinition poDef = PoDefinition.instance(poClass);
-        String tableName = poDef.getTableName(0);
-        StringBuilder sbFields = new StringBuilder();
-        StringBuilder sbValues = new StringBuilder();
+        List<PoAccessPlan.Property> columns = new ArrayList<PoAccessPlan.Property>();
         List<Object> listValues = new ArrayList<Object>();
-        String getterName;
-        Method getter;
         Object value;
 
-        for (String fieldName : poDef.getFields()) {
-            if (poDef.isFieldReadOnly(fieldName)) {
-                continue;
-            }
-            getterName = "get" + StringUtils.capitalize(fieldName);
-            value = null;
-            try {
-                getter = getMethod(poClass, getterName);
-                value = getter.invoke(entity);
-            } catch (Exception e) {
-                logger.error("解析PO对象出错 {}", e.getMessage());
-                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT, e);
+        for (PoAccessPlan.Property p : plan.getWritableProperties()) {
+            value = getValue(p, entity);
+            if (value != null) {
+                listValues.add(value);
+                columns.add(p);
             }
+        }
+
+        //拼接并执行SQL语句
+        String sql = getInsertSQL(columns);
+        Object[] args = listValues.toArray();
+        int result = DaoMetrics.execute(poClass, DaoOperation.CREATE, sql, args, begin, null,
+                () -> db.update(sql, args, getSqlTypes(columns)), Integer::intValue);
+        invalidateQueryCache();
+
+        return result;
+    }
 
+    /**
+     * 创建一条新记录，并取得数据库自动生成的主键（如自增id）。
+     * 
+     * @param entity 实体对象
+     * @param keyHolder 用于保存生成的主键
+     * @return 受影响的记录行数（正常情况下应该为“1”）
+     */
+    public int create(Object entity, KeyHolder keyHolder) {
+        Assert.notNull(entity);
+        Assert.notNull(keyHolder);
+        long begin = DaoMetrics.begin();
+
+        List<PoAccessPlan.Property> columns = new ArrayList<PoAccessPlan.Property>();
+        List<Object> listValues = new ArrayList<Object>();
+        Object value;
+
+        for (PoAccessPlan.Property p : plan.getWritableProperties()) {
+            value = getValue(p, entity);
             if (value != null) {
                 listValues.add(value);
-                sbFields.append(',').append(poDef.getFieldColumn(fieldName));
-                sbValues.append(",?");
+                columns.add(p);
             }
         }
 
-        //拼接并执行SQL语句
-        StringBuilder sbSQL = new StringBuilder();
+        String sql = getInsertSQL(columns);
+
+        Dialect dialect = getDialect();
+        PoAccessPlan.Property id = plan.getProperty("id");
+        String[] keyColumns = id == null ? new String[0] : new String[] { id.getColumn() };
+        Object[] args = listValues.toArray();
+        ParameterizedPreparedStatementSetter<Object[]> setter = argumentSetter(getSqlTypes(columns));
+        int result = DaoMetrics.execute(poClass, DaoOperation.CREATE, sql, args, begin, null, () -> db.update(con -> {
+            PreparedStatement ps = dialect.prepareReturningKeys(con, sql, keyColumns);
+            try {
+                setter.setValues(ps, args);
+            } catch (SQLException e) {
+                JdbcUtils.closeStatement(ps);
+                throw e;
+            }
+            return ps;
+        }, keyHolder), Integer::intValue);
+        invalidateQueryCache();
 
-        sbSQL.append("insert into ").append(tableName);
-        sbSQL.append('(').append(sbFields.substring(1)).append(')');
-        sbSQL.append(" values (").append(sbValues.substring(1)).append(')');
+        return result;
+    }
 
-        String sql = sbSQL.toString();
-        if (logger.isInfoEnabled()) {
-            logger.info("SQL: {} with {}", sql, listValues.toString());
+    /**
+     * 批量创建记录，使用JDBC批处理执行。
+     * 
+     * 由于insert语句中不包括值为null的属性，实体按非空属性的组合分组，每组共用一条预编译语句。
+     * 
+     * @param entities 实体对象
+     * @param batchSize 每批最多提交多少条记录
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致
+     */
+    public int[] createAll(Collection<?> entities, int batchSize) {
+        Assert.notNull(entities);
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+
+        int[] result = new int[entities.size()];
+        try {
+            for (InsertGroup group : groupByColumns(entities, plan.getWritableProperties())) {
+                long begin = DaoMetrics.begin();
+                String sql = getInsertSQL(group.columns);
+
+                int[][] counts = DaoMetrics.execute(poClass, DaoOperation.CREATE, sql, null, begin, null,
+                        () -> db.batchUpdate(sql, group.values, size, argumentSetter(group.sqlTypes)),
+                        DaoMetrics::sumOf);
+                int k = 0;
+                for (int[] batch : counts) {
+                    for (int c : batch) {
+                        result[group.rows.get(k++)] = c;
+                    }
+                }
+            }
+        } finally {
+            //部分批次可能已经提交
+            invalidateQueryCache();
         }
-        int result = db.update(sql, listValues.toArray());
 
         return result;
     }
-    
-    private Method getMethod(Class<?> clazz, String getterName) {
-        if(clazz.equals(Object.class)) {
+
+    /**
+     * 批量创建记录，使用多行insert语句（insert ... values (...),(...),...）。
+     * 
+     * 实体按非空属性的组合分组后，每组按行数及绑定参数个数的上限（由数据库方言决定）拆分为多条insert语句。
+     * 
+     * @param entities 实体对象
+     * @param maxRows 每条insert语句最多包含多少行
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致；
+     *         语句的受影响行数与其包含的行数不一致时为Statement.SUCCESS_NO_INFO
+     */
+    public int[] createAllMultiRow(Collection<?> entities, int maxRows) {
+        Assert.notNull(entities);
+        Assert.isTrue(maxRows > 0);
+
+        int[] result = new int[entities.size()];
+        try {
+            for (InsertGroup group : groupByColumns(entities, plan.getWritableProperties())) {
+                executeMultiRow(group, DaoOperation.CREATE, rows -> getInsertSQL(group.columns, rows), maxRows,
+                        result);
+            }
+        } finally {
+            //部分语句可能已经提交
+            invalidateQueryCache();
+        }
+
+        return result;
+    }
+
+    /**
+     * 插入一条记录，按唯一键（PoTable.keys）判断记录已存在时改为更新，整个操作只需一条语句。
+     * 
+     * 值为null的属性既不插入也不更新；只读属性（唯一键除外）不参与插入及更新。
+     * 
+     * @param entity 实体对象
+     * @param updateFields 记录已存在时更新哪些属性，多个属性之间用逗号分隔；为空时更新除唯一键外的所有属性
+     * @return 受影响的记录行数，取决于数据库（如MySQL插入时为1、更新时为2、未变化时为0）
+     */
+    public int upsert(Object entity, String updateFields) {
+        Assert.notNull(entity);
+        long begin = DaoMetrics.begin();
+
+        InsertGroup group = groupByColumns(Collections.singletonList(entity), getUpsertProperties()).iterator().next();
+        String sql = getUpsertSQL(group.columns, updateFields, 1);
+        Object[] args = group.values.get(0);
+        int result = DaoMetrics.execute(poClass, DaoOperation.UPSERT, sql, args, begin, null,
+                () -> db.update(sql, args, group.sqlTypes), Integer::intValue);
+        evictCache(Collections.singletonList(entity));
+
+        return result;
+    }
+
+    /**
+     * 批量upsert，使用JDBC批处理执行，每个实体对应一条单行的upsert语句。
+     * 
+     * @param entities 实体对象
+     * @param updateFields 记录已存在时更新哪些属性，为空时更新除唯一键外的所有属性
+     * @param batchSize 每批最多提交多少条记录
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致
+     */
+    public int[] upsertAll(Collection<?> entities, String updateFields, int batchSize) {
+        Assert.notNull(entities);
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+
+        int[] result = new int[entities.size()];
+        try {
+            for (InsertGroup group : groupByColumns(entities, getUpsertProperties())) {
+                long begin = DaoMetrics.begin();
+                String sql = getUpsertSQL(group.columns, updateFields, 1);
+
+                int[][] counts = DaoMetrics.execute(poClass, DaoOperation.UPSERT, sql, null, begin, null,
+                        () -> db.batchUpdate(sql, group.values, size, argumentSetter(group.sqlTypes)),
+                        DaoMetrics::sumOf);
+                int k = 0;
+                for (int[] batch : counts) {
+                    for (int c : batch) {
+                        result[group.rows.get(k++)] = c;
+                    }
+                }
+            }
+        } finally {
+            //部分批次可能已经提交
+            evictCache(entities);
+        }
+
+        return result;
+    }
+
+    /**
+     * 批量upsert，使用多行upsert语句。
+     * 
+     * 注意：同一条语句中不能包含唯一键相同的多个实体（PostgreSQL会报错，MySQL以最后一行为准）。
+     * 
+     * @param entities 实体对象
+     * @param updateFields 记录已存在时更新哪些属性，为空时更新除唯一键外的所有属性
+     * @param maxRows 每条语句最多包含多少行
+     * @return 每个实体对应的受影响记录行数，顺序与entities一致；包含多行的语句为Statement.SUCCESS_NO_INFO
+     */
+    public int[] upsertAllMultiRow(Collection<?> entities, String updateFields, int maxRows) {
+        Assert.notNull(entities);
+        Assert.isTrue(maxRows > 0);
+
+        int[] result = new int[entities.size()];
+        try {
+            for (InsertGroup group : groupByColumns(entities, getUpsertProperties())) {
+                List<String> updateColumns = getUpdateColumns(group.columns, updateFields);
+                executeMultiRow(group, DaoOperation.UPSERT, rows -> getDialect().getUpsertSQL(getTableName(),
+                        getColumns(group.columns), getKeyColumns(group.columns), updateColumns, rows), maxRows, result);
+            }
+        } finally {
+            //部分语句可能已经提交
+            evictCache(entities);
+        }
+
+        return result;
+    }
+
+    /**
+     * 按行数及绑定参数个数的上限，将一组实体拆分为多条多行语句执行
+     * 
+     * @param sqlOfRows 根据行数生成语句
+     * @param result 保存每个实体对应的结果：语句的受影响行数与其包含的行数一致时为1，否则为Statement.SUCCESS_NO_INFO
+     */
+    private void executeMultiRow(InsertGroup group, DaoOperation operation, IntFunction<String> sqlOfRows,
+            int maxRows, int[] result) {
+        Dialect dialect = getDialect();
+        int columnCount = group.columns.size();
+        int chunk = Math.min(maxRows, dialect.getMaxInsertRows());
+        chunk = Math.max(1, Math.min(chunk, dialect.getMaxBindParameters() / Math.max(columnCount, 1)));
+        int total = group.rows.size();
+        String chunkSQL = null;
+
+        for (int from = 0; from < total; from += chunk) {
+            long begin = DaoMetrics.begin();
+            int rows = Math.min(chunk, total - from);
+            if (rows == chunk && chunkSQL == null) {
+                chunkSQL = sqlOfRows.apply(chunk);
+            }
+            String sql = rows == chunk ? chunkSQL : sqlOfRows.apply(rows);
+
+            Object[] args = new Object[rows * columnCount];
+            int[] sqlTypes = new int[rows * columnCount];
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(group.values.get(from + i), 0, args, i * columnCount, columnCount);
+                System.arraycopy(group.sqlTypes, 0, sqlTypes, i * columnCount, columnCount);
+            }
+
+            int count = DaoMetrics.execute(poClass, operation, sql, args, begin, null,
+                    () -> db.update(sql, args, sqlTypes), Integer::intValue);
+            int rowResult = count == rows ? 1 : Statement.SUCCESS_NO_INFO;
+            for (int i = 0; i < rows; i++) {
+                result[group.rows.get(from + i)] = rowResult;
+            }
+        }
+    }
+
+    /**
+     * 按非空属性的组合对实体分组，组的顺序与各组合首次出现的顺序一致
+     */
+    protected Collection<InsertGroup> groupByColumns(Collection<?> entities, List<PoAccessPlan.Property> props) {
+        int propCount = props.size();
+        Map<BitSet, InsertGroup> groups = new LinkedHashMap<BitSet, InsertGroup>();
+        Object[] values = new Object[propCount];
+        int row = 0;
+
+        for (Object entity : entities) {
+            Assert.notNull(entity);
+            BitSet signature = new BitSet(propCount);
+            for (int i = 0; i < propCount; i++) {
+                values[i] = getValue(props.get(i), entity);
+                if (values[i] != null) {
+                    signature.set(i);
+                }
+            }
+
+            InsertGroup group = groups.get(signature);
+            if (group == null) {
+                group = new InsertGroup(props, signature);
+                groups.put(signature, group);
+            }
+            Object[] args = new Object[group.columns.size()];
+            for (int i = signature.nextSetBit(0), j = 0; i >= 0; i = signature.nextSetBit(i + 1), j++) {
+                args[j] = values[i];
+            }
+            group.rows.add(row++);
+            group.values.add(args);
+        }
+
+        return groups.values();
+    }
+
+    /**
+     * 生成insert语句
+     */
+    protected String getInsertSQL(List<PoAccessPlan.Property> columns) {
+        return getInsertSQL(columns, 1);
+    }
+
+    /**
+     * 生成包含多行的insert语句
+     */
+    protected String getInsertSQL(List<PoAccessPlan.Property> columns, int rows) {
+        if (columns.isEmpty()) {
+            logger.error("PO对象的所有属性都为空, poClass is: {}", poClass.getName());
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT);
+        }
+        //columns是可写属性的子集（顺序不变），个数相同时即为所有可写属性
+        if (rows == 1 && fullInsertSQL != null && columns.size() == plan.getWritableProperties().size()) {
+            return fullInsertSQL;
+        }
+
+        StringBuilder sbSQL = new StringBuilder();
+
+        sbSQL.append("insert into ").append(getTableName()).append('(');
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sbSQL.append(',');
+            }
+            sbSQL.append(columns.get(i).getColumn());
+        }
+        sbSQL.append(") values ");
+        Dialect.appendValues(sbSQL, columns.size(), rows);
+
+        return sbSQL.toString();
+    }
+
+    /**
+     * 生成upsert语句
+     */
+    protected String getUpsertSQL(List<PoAccessPlan.Property> columns, String updateFields, int rows) {
+        return getDialect().getUpsertSQL(getTableName(), getColumns(columns), getKeyColumns(columns),
+                getUpdateColumns(columns, updateFields), rows);
+    }
+
+    /**
+     * upsert时参与insert的属性：可写属性及唯一键
+     */
+    protected List<PoAccessPlan.Property> getUpsertProperties() {
+        List<String> keys = Arrays.asList(PoDefinition.instance(poClass).getKeyFields());
+        List<PoAccessPlan.Property> props = new ArrayList<PoAccessPlan.Property>();
+
+        for (PoAccessPlan.Property p : plan.getProperties()) {
+            if (!p.isReadOnly() || keys.contains(p.getName())) {
+                props.add(p);
+            }
+        }
+        return props;
+    }
+
+    /**
+     * 唯一键对应的字段，要求所有唯一键属性都不为空
+     */
+    private List<String> getKeyColumns(List<PoAccessPlan.Property> columns) {
+        List<String> keyColumns = new ArrayList<String>();
+
+        for (String key : PoDefinition.instance(poClass).getKeyFields()) {
+            PoAccessPlan.Property p = plan.getProperty(key);
+            if (p == null) {
+                logger.error("PO属性不存在: {}", key);
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, key);
+            }
+            if (!columns.contains(p)) {
+                logger.error("唯一键属性为空: {}, poClass is: {}", key, poClass.getName());
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT);
+            }
+            keyColumns.add(p.getColumn());
+        }
+        if (keyColumns.isEmpty()) {
+            logger.error("PO未定义唯一键, poClass is: {}", poClass.getName());
             throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT);
         }
+
+        return keyColumns;
+    }
+
+    /**
+     * 记录已存在时更新的字段：只包括参与insert的非唯一键、非只读属性
+     */
+    private List<String> getUpdateColumns(List<PoAccessPlan.Property> columns, String updateFields) {
+        List<String> keys = Arrays.asList(PoDefinition.instance(poClass).getKeyFields());
+        List<String> updateColumns = new ArrayList<String>();
+
+        if (StringUtils.isEmpty(updateFields)) {
+            for (PoAccessPlan.Property p : columns) {
+                if (!p.isReadOnly() && !keys.contains(p.getName())) {
+                    updateColumns.add(p.getColumn());
+                }
+            }
+            return updateColumns;
+        }
+
+        for (String fieldName : updateFields.split(",")) {
+            fieldName = fieldName.trim();
+            PoAccessPlan.Property p = plan.getProperty(fieldName);
+            if (p == null) {
+                logger.error("PO属性不存在: {}", fieldName);
+                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, fieldName);
+            }
+            if (!p.isReadOnly() && !keys.contains(fieldName) && columns.contains(p)) {
+                updateColumns.add(p.getColumn());
+            }
+        }
+        return updateColumns;
+    }
+
+    private static List<String> getColumns(List<PoAccessPlan.Property> props) {
+        List<String> columns = new ArrayList<String>(props.size());
+        for (PoAccessPlan.Property p : props) {
+            columns.add(p.getColumn());
+        }
+        return columns;
+    }
+
+    private String getTableName() {
+        return PoDefinition.instance(poClass).getTableName(0);
+    }
+
+    /**
+     * 当前数据源的方言
+     */
+    protected Dialect getDialect() {
+        return Dialects.of(db);
+    }
+
+    private static int[] getSqlTypes(List<PoAccessPlan.Property> columns) {
+        int[] sqlTypes = new int[columns.size()];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            sqlTypes[i] = columns.get(i).getSqlType();
+        }
+        return sqlTypes;
+    }
+
+    private Object getValue(PoAccessPlan.Property p, Object entity) {
         try {
-           return clazz.getDeclaredMethod(getterName);
-        } catch (NoSuchMethodException e) {
-         return  this.getMethod(clazz.getSuperclass(), getterName);
+            return p.get(entity);
+        } catch (Exception e) {
+            logger.error("解析PO对象出错: {}", e.getMessage());
+            throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT, e);
         }
-       
     }
 
     public int update(Object entity, String includeFields, String excludeFields, String filter, Object... filterArgs) {
         Assert.notNull(entity);
+        long begin = DaoMetrics.begin();
 
         PoDefinition poDef = PoDefinition.instance(poClass);
         String tableName = poDef.getTableName(0);
         StringBuilder sbSQL = new StringBuilder();
         List<Object> listValues = new ArrayList<Object>();
-        String getterName;
-        Method getter;
+        List<PoAccessPlan.Property> columns = new ArrayList<PoAccessPlan.Property>();
         Object value;
-        String[] saIncluded;
+        List<PoAccessPlan.Property> included;
         String[] saExcluded;
 
         if (StringUtils.isEmpty(includeFields)) {
-            saIncluded = poDef.getFields();
+            included = plan.getWritableProperties();
             if (StringUtils.isEmpty(excludeFields)) {
                 saExcluded = new String[0];
             } else {
@@ -136,32 +571,30 @@ public class GenericDaoHelper {
                 Arrays.sort(saExcluded);
             }
         } else {
-            saIncluded = includeFields.split(",");
+            included = new ArrayList<PoAccessPlan.Property>();
+            for (String fieldName : includeFields.split(",")) {
+                //去掉空格
+                fieldName = fieldName.trim();
+                PoAccessPlan.Property p = plan.getProperty(fieldName);
+                if (p == null) {
+                    logger.error("PO属性不存在: {}", fieldName);
+                    throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_FIELD, fieldName);
+                }
+                included.add(p);
+            }
             saExcluded = new String[0];
         }
 
         sbSQL.append("update ").append(tableName).append(" set ");
-        for (String fieldName : saIncluded) {
-            //去掉空格
-            fieldName = fieldName.trim();
-            if (Arrays.binarySearch(saExcluded, fieldName) >= 0) {
+        for (PoAccessPlan.Property p : included) {
+            if (p.isReadOnly() || Arrays.binarySearch(saExcluded, p.getName()) >= 0) {
                 continue;
             }
-            if (poDef.isFieldReadOnly(fieldName)) {
-                continue;
-            }
-            getterName = "get" + StringUtils.capitalize(fieldName);
-            value = null;
-            try {
-                getter = this.getMethod(poClass, getterName);
-                value = getter.invoke(entity);
-            } catch (Exception e) {
-                logger.error("解析PO对象出错: {}", e.getMessage());
-                throw new BizException(BizStatus.S_BIZ_P_ERROR_INVALID_PO_OBJECT, e);
-            }
+            value = getValue(p, entity);
 
             listValues.add(value);
-            sbSQL.append(poDef.getFieldColumn(fieldName)).append("=?,");
+            columns.add(p);
+            sbSQL.append(p.getColumn()).append("=?,");
         }
         sbSQL.deleteCharAt(sbSQL.length() - 1);
 
@@ -177,14 +610,43 @@ public class GenericDaoHelper {
 
         //执行SQL
         String sql = sbSQL.toString();
-        if (logger.isInfoEnabled()) {
-            logger.info("SQL: {} with {}", sql, listValues.toString());
+        //set部分按属性类型绑定，条件参数的类型未知（可以通过PoUtils.typed指定）
+        int[] sqlTypes = new int[listValues.size()];
+        Arrays.fill(sqlTypes, SqlTypeValue.TYPE_UNKNOWN);
+        for (int i = 0; i < columns.size(); i++) {
+            sqlTypes[i] = columns.get(i).getSqlType();
         }
-        int result = db.update(sql, listValues.toArray());
+        Object[] args = listValues.toArray();
+        int result = DaoMetrics.execute(poClass, DaoOperation.UPDATE, sql, args, begin, null,
+                () -> db.update(sql, args, sqlTypes), Integer::intValue);
+        evictCache(filter, filterArgs);
 
         return result;
     }
 
+    /**
+     * 一组非空属性相同的实体
+     */
+    protected static final class InsertGroup {
+        //参与insert的属性
+        final List<PoAccessPlan.Property> columns;
+        //各属性的SQL类型，顺序与columns一致
+        final int[] sqlTypes;
+        //各实体在原集合中的序号
+        final List<Integer> rows = new ArrayList<Integer>();
+        //各实体的属性值，顺序与columns一致
+        final List<Object[]> values = new ArrayList<Object[]>();
+
+        InsertGroup(List<PoAccessPlan.Property> props, BitSet signature) {
+            List<PoAccessPlan.Property> list = new ArrayList<PoAccessPlan.Property>(signature.cardinality());
+            for (int i = signature.nextSetBit(0); i >= 0; i = signature.nextSetBit(i + 1)) {
+                list.add(props.get(i));
+            }
+            this.columns = list;
+            this.sqlTypes = getSqlTypes(list);
+        }
+    }
+
     /**
      * 删除操作
      * 
@@ -193,6 +655,7 @@ public class GenericDaoHelper {
      * @return 受影响的记录数
      */
     public int delete(String filter, Object... filterArgs) {
+        long begin = DaoMetrics.begin();
         PoDefinition poDef = PoDefinition.instance(poClass);
         StringBuilder sbSQL = new StringBuilder();
 
@@ -203,12 +666,55 @@ public class GenericDaoHelper {
 
         //执行SQL
         String sql = sbSQL.toString();
-        if (logger.isInfoEnabled()) {
-            logger.info("SQL: {} with {}", sql, StringUtils.arrayToCommaDelimitedString(filterArgs));
-        }
-        int result = db.update(sql, filterArgs);
+        int result = DaoMetrics.execute(poClass, DaoOperation.DELETE, sql, filterArgs, begin, null,
+                () -> db.update(sql, filterArgs), Integer::intValue);
+        evictCache(filter, filterArgs);
 
         return result;
     }
 
+    /**
+     * 修改数据后使查询结果缓存失效
+     */
+    protected void invalidateQueryCache() {
+        QueryResultCache.invalidateTable(getTableName());
+    }
+
+    /**
+     * 修改数据后淘汰缓存：查询结果缓存失效；实体缓存在条件为“{#id}=?”时只淘汰该id，否则清空整个缓存区
+     */
+    protected void evictCache(String filter, Object[] filterArgs) {
+        invalidateQueryCache();
+        if (EntityCache.of(poClass) == null) {
+            return;
+        }
+        if (ID_FILTER.equals(filter) && filterArgs != null && filterArgs.length == 1) {
+            //PoUtils.typed包装的id按其中的值淘汰
+            Object id = filterArgs[0] instanceof SqlParameterValue ? ((SqlParameterValue) filterArgs[0]).getValue()
+                    : filterArgs[0];
+            EntityCache.evict(poClass, id);
+        } else {
+            EntityCache.invalidate(poClass);
+        }
+    }
+
+    /**
+     * upsert后淘汰缓存：查询结果缓存失效；实体缓存按实体的id淘汰，唯一键不是id时无法确定被修改的记录，清空整个缓存区
+     */
+    protected void evictCache(Collection<?> entities) {
+        invalidateQueryCache();
+        if (EntityCache.of(poClass) == null) {
+            return;
+        }
+        PoAccessPlan.Property id = plan.getProperty("id");
+        String[] keys = PoDefinition.instance(poClass).getKeyFields();
+        if (id == null || keys.length != 1 || !"id".equals(keys[0])) {
+            EntityCache.invalidate(poClass);
+            return;
+        }
+        for (Object entity : entities) {
+            EntityCache.evict(poClass, getValue(id, entity));
+        }
+    }
+
 }
@@ -0,0 +1,186 @@
+/**
+ * <p>Copyright &copy; 2017 。</p>
+ */
+package indi.gavin.orm.helper;
+
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.Dialects;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * <b>Application name:</b><br>
+ * <b>Application describing:</b> 以流的方式逐行处理查询结果，结果集不会全部加载到内存中 <br>
+ * <b>Copyright:</b>Copyright &copy; 2017<br>
+ * <b>Date:</b><br>
+ * @author gavin
+ * @version $Revision: 1.0 $
+ */
+public final class StreamingQueryHelper {
+    private static Logger logger = LoggerFactory.getLogger(StreamingQueryHelper.class);
+
+    private StreamingQueryHelper() {
+    }
+
+    /**
+     * 逐行处理查询结果，方法返回时数据库资源已释放。
+     * 
+     * MySQL逐行读取期间同一连接不能执行其它语句，action不能通过同一连接（如同一事务）访问数据库。
+     *
+     * @param fetchSize 每次从数据库读取的行数，0表示使用驱动的默认值；实际使用的值由方言决定（如MySQL为Integer.MIN_VALUE）
+     */
+    public static <R> void forEach(JdbcTemplate db, String sql, Object[] args, int fetchSize,
+            RowMapper<R> rowMapper, Consumer<? super R> action) {
+        try (Stream<R> stream = stream(db, sql, args, fetchSize, rowMapper)) {
+            stream.forEachOrdered(action);
+        }
+    }
+
+    /**
+     * 以Stream的形式返回查询结果。
+     *
+     * Stream持有数据库连接，读取完最后一行或调用close()时释放，调用者应使用try-with-resources确保关闭。
+     * 方言要求流式查询在事务中执行（如PostgreSQL）而连接处于auto-commit状态时，临时关闭auto-commit，释放连接前恢复。
+     * MySQL逐行读取期间同一连接不能执行其它语句，Stream关闭前不能通过同一连接（如同一事务）访问数据库。
+     */
+    public static <R> Stream<R> stream(JdbcTemplate db, String sql, Object[] args, int fetchSize,
+            RowMapper<R> rowMapper) {
+        Dialect dialect = Dialects.of(db);
+        int dialectFetchSize = dialect.getStreamingFetchSize(fetchSize);
+        DataSource ds = db.getDataSource();
+        Connection con = DataSourceUtils.getConnection(ds);
+        boolean autoCommit = false;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            if (dialect.isStreamingInTransaction() && con.getAutoCommit()) {
+                con.setAutoCommit(false);
+                autoCommit = true;
+            }
+            ps = getStatementCreator(sql, args, dialectFetchSize).createPreparedStatement(con);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            release(ds, con, autoCommit, ps, rs);
+            throw db.getExceptionTranslator().translate("StreamingQuery", sql, e);
+        } catch (RuntimeException e) {
+            release(ds, con, autoCommit, ps, rs);
+            throw e;
+        }
+
+        ResultSetSpliterator<R> spliterator =
+                new ResultSetSpliterator<R>(db, sql, ds, con, autoCommit, ps, rs, rowMapper);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * 关闭结果集及语句，恢复auto-commit后释放连接
+     */
+    private static void release(DataSource ds, Connection con, boolean autoCommit, PreparedStatement ps,
+            ResultSet rs) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(ps);
+        if (autoCommit) {
+            try {
+                //只读查询，恢复auto-commit时提交的事务中没有修改
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.warn("Can't restore auto-commit after streaming query", e);
+            }
+        }
+        DataSourceUtils.releaseConnection(con, ds);
+    }
+
+    private static PreparedStatementCreator getStatementCreator(String sql, Object[] args, int fetchSize) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                if (fetchSize != 0) {
+                    ps.setFetchSize(fetchSize);
+                }
+                new ArgumentPreparedStatementSetter(args).setValues(ps);
+            } catch (SQLException e) {
+                JdbcUtils.closeStatement(ps);
+                throw e;
+            }
+            return ps;
+        };
+    }
+
+    /**
+     * 基于只进游标的Spliterator，读取完最后一行时自动释放数据库资源
+     */
+    private static final class ResultSetSpliterator<R> extends Spliterators.AbstractSpliterator<R> {
+        private final JdbcTemplate db;
+        private final String sql;
+        private final DataSource ds;
+        private final RowMapper<R> rowMapper;
+        private final boolean autoCommit;
+        private Connection con;
+        private PreparedStatement ps;
+        private ResultSet rs;
+        private int rowNum = 0;
+
+        ResultSetSpliterator(JdbcTemplate db, String sql, DataSource ds, Connection con, boolean autoCommit,
+                PreparedStatement ps, ResultSet rs, RowMapper<R> rowMapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.db = db;
+            this.sql = sql;
+            this.ds = ds;
+            this.con = con;
+            this.autoCommit = autoCommit;
+            this.ps = ps;
+            this.rs = rs;
+            this.rowMapper = rowMapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            if (rs == null) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(rowMapper.mapRow(rs, rowNum++));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw db.getExceptionTranslator().translate("StreamingQuery", sql, e);
+            }
+        }
+
+        void close() {
+            if (rs == null) {
+                return;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Close streaming query after {} rows: {}", rowNum, sql);
+            }
+            release(ds, con, autoCommit, ps, rs);
+            rs = null;
+            ps = null;
+            con = null;
+        }
+    }
+}
@@ -1,11 +1,38 @@
 package indi.gavin.orm.jdbc;
 
+import indi.gavin.orm.dialect.Dialect;
+import indi.gavin.orm.dialect.Dialects;
+
 import javax.sql.DataSource;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 
 public class JdbcWizard extends JdbcTemplate {
+
+    private volatile Dialect dialect;
+
     public JdbcWizard(DataSource dataSource) {
         super(dataSource);
     }
+
+    public JdbcWizard(DataSource dataSource, Dialect dialect) {
+        super(dataSource);
+        this.dialect = dialect;
+    }
+
+    /**
+     * 取得数据库方言，未指定时根据数据源自动识别
+     */
+    public Dialect getDialect() {
+        Dialect d = dialect;
+        if (d == null) {
+            d = Dialects.of(getDataSource());
+            dialect = d;
+        }
+        return d;
+    }
+
+    public void setDialect(Dialect dialect) {
+        this.dialect = dialect;
+    }
 }
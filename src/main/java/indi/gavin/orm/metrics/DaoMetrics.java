@@ -0,0 +1,229 @@
+package indi.gavin.orm.metrics;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * DAO操作的计时及统计入口，供GenericQuery、GenericDaoHelper等调用。
+ * 
+ * 用法：
+ * <pre>
+ * long begin = DaoMetrics.begin();
+ * ...生成SQL...
+ * rowMapper = DaoMetrics.timed(rowMapper, begin);
+ * return DaoMetrics.execute(poClass, operation, sql, args, begin, rowMapper, () -> ...执行..., DaoMetrics::sizeOf);
+ * </pre>
+ * 监听器不需要统计（未注册监听器，或DaoMetricsListener.isActive返回false）并且不记录SQL日志时begin()返回0，其余方法直接执行或返回，
+ * 不调用System.nanoTime，除执行SQL的lambda外也不分配对象。
+ * 
+ * @author Gavin
+ *
+ */
+public final class DaoMetrics {
+
+    private static volatile DaoMetricsListener listener = DaoMetricsListener.NOOP;
+
+    private DaoMetrics() {
+    }
+
+    public static DaoMetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 注册监听器，为null时恢复为DaoMetricsListener.NOOP
+     */
+    public static void setListener(DaoMetricsListener listener) {
+        DaoMetrics.listener = listener == null ? DaoMetricsListener.NOOP : listener;
+    }
+
+    /**
+     * 是否注册了监听器并且需要统计（DaoMetricsListener.isActive）
+     */
+    public static boolean isEnabled() {
+        return listener.isActive();
+    }
+
+    /**
+     * 操作开始，返回开始时间（System.nanoTime）；既没有注册监听器也不需要记录SQL日志（SqlLogger）时返回0
+     */
+    public static long begin() {
+        if (!isEnabled() && !SqlLogger.isActive()) {
+            return 0;
+        }
+        long begin = System.nanoTime();
+        listener.onBegin(begin);
+        return begin;
+    }
+
+    /**
+     * 记录某一阶段（如生成SQL）结束的时间；begin为0时返回0
+     */
+    public static long mark(long begin) {
+        if (begin == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        listener.onMark(begin);
+        return now;
+    }
+
+    /**
+     * 需要统计时包装rowMapper，累计映射结果的时间；否则原样返回
+     */
+    public static <R> RowMapper<R> timed(RowMapper<R> rowMapper, long begin) {
+        if (begin == 0 || rowMapper == null || !isEnabled()) {
+            return rowMapper;
+        }
+        return new TimedRowMapper<R>(rowMapper, listener);
+    }
+
+    /**
+     * 执行SQL并计时，结束时通知监听器并记录SQL日志
+     * 
+     * @param begin begin()的返回值，为0时只执行，不计时
+     * @param rowMapper 经过timed()包装的映射器，没有时为null
+     * @param execution 执行SQL
+     * @param rows 根据执行结果计算返回的记录数或受影响的记录数（结果不为null时调用）
+     */
+    public static <R> R execute(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long begin,
+            Object rowMapper, Supplier<R> execution, ToIntFunction<? super R> rows) {
+        return run(poClass, operation, sql, args, begin, rowMapper, execution, rows, false);
+    }
+
+    /**
+     * 与execute相同，区别是没有查询结果（EmptyResultDataAccessException）时返回null
+     */
+    public static <R> R query(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long begin,
+            Object rowMapper, Supplier<R> execution, ToIntFunction<? super R> rows) {
+        return run(poClass, operation, sql, args, begin, rowMapper, execution, rows, true);
+    }
+
+    /**
+     * 流式查询计时：关闭返回的Stream时结束计时，执行时间包括调用者处理各行的时间；未关闭Stream时不通知监听器
+     * 
+     * @param execution 执行查询，返回持有结果集的Stream
+     */
+    public static <R> Stream<R> stream(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+            long begin, Object rowMapper, Supplier<Stream<R>> execution) {
+        if (begin == 0) {
+            return execution.get();
+        }
+        long started = mark(begin);
+        Stream<R> stream;
+        try {
+            stream = execution.get();
+        } catch (RuntimeException | Error e) {
+            end(poClass, operation, sql, args, begin, started, rowMapper, 0, e);
+            throw e;
+        }
+        int[] rows = new int[1];
+        return stream.peek(r -> rows[0]++)
+                .onClose(() -> end(poClass, operation, sql, args, begin, started, rowMapper, rows[0], null));
+    }
+
+    private static <R> R run(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long begin,
+            Object rowMapper, Supplier<R> execution, ToIntFunction<? super R> rows, boolean emptyAsNull) {
+        R result = null;
+        Throwable error = null;
+        long started = mark(begin);
+        try {
+            result = execution.get();
+        } catch (EmptyResultDataAccessException e) {
+            if (!emptyAsNull) {
+                error = e;
+                throw e;
+            }
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            if (begin != 0) {
+                end(poClass, operation, sql, args, begin, started, rowMapper,
+                        result == null ? 0 : rows.applyAsInt(result), error);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 操作结束，通知监听器并记录SQL日志
+     * 
+     * @param begin begin()的返回值，为0时什么也不做
+     * @param started 开始执行SQL的时间（mark()的返回值）
+     * @param rowMapper 经过timed()包装的映射器，没有时为null
+     * @param rows 返回的记录数或受影响的记录数
+     * @param error 失败时的异常
+     */
+    public static void end(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long begin,
+            long started, Object rowMapper, int rows, Throwable error) {
+        if (begin == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long mapNanos = rowMapper instanceof TimedRowMapper ? ((TimedRowMapper<?>) rowMapper).mapNanos : 0;
+        if (started == 0) {
+            started = begin;
+        }
+        long executeNanos = Math.max(0, now - started - mapNanos);
+        listener.onOperation(begin, poClass, operation, sql, args, started - begin, executeNanos, mapNanos, rows,
+                error);
+        SqlLogger.log(sql, args, now - begin, rows, error);
+    }
+
+    /**
+     * 集合的大小，null时为0
+     */
+    public static int sizeOf(Collection<?> result) {
+        return result == null ? 0 : result.size();
+    }
+
+    /**
+     * 批处理结果的受影响记录数之和，结果未知（如Statement.SUCCESS_NO_INFO）的按1计
+     */
+    public static int sumOf(int[]... counts) {
+        if (counts == null) {
+            return 0;
+        }
+        int sum = 0;
+        for (int[] batch : counts) {
+            for (int c : batch) {
+                sum += c < 0 ? 1 : c;
+            }
+        }
+        return sum;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class TimedRowMapper<R> implements RowMapper<R> {
+        private final RowMapper<R> target;
+        //包装时注册的监听器，每一行回调beginRow/endRow
+        private final DaoMetricsListener listener;
+        //只在执行查询的线程中访问
+        long mapNanos;
+
+        TimedRowMapper(RowMapper<R> target, DaoMetricsListener listener) {
+            this.target = target;
+            this.listener = listener;
+        }
+
+        @Override
+        public R mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Object row = listener.beginRow(target, rowNum);
+            long t = System.nanoTime();
+            try {
+                return target.mapRow(rs, rowNum);
+            } finally {
+                mapNanos += System.nanoTime() - t;
+                listener.endRow(row);
+            }
+        }
+    }
+}
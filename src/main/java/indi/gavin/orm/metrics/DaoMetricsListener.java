@@ -0,0 +1,94 @@
+package indi.gavin.orm.metrics;
+
+/**
+ * DAO操作的统计接口，通过DaoMetrics.setListener注册。
+ * 
+ * 每执行一条SQL语句（批处理及多行语句按一次操作计）回调一次，回调在执行SQL的线程中进行，实现类应当尽快返回。
+ * 
+ * @author Gavin
+ *
+ */
+public interface DaoMetricsListener {
+
+    /**
+     * 默认实现，什么也不做；此时DAO不调用System.nanoTime，也不分配任何对象
+     */
+    DaoMetricsListener NOOP = new DaoMetricsListener() {
+        @Override
+        public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+        }
+
+        @Override
+        public boolean isActive() {
+            return false;
+        }
+    };
+
+    /**
+     * 当前是否需要统计，返回false时DAO不计时（但仍可能回调onOperation，比如需要记录SQL日志时）。
+     * 每次操作开始时都会调用，实现类应当只读取一个变量
+     */
+    default boolean isActive() {
+        return true;
+    }
+
+    /**
+     * 一次DAO操作完成（或失败）
+     * 
+     * @param poClass PO类
+     * @param operation 操作类型
+     * @param sql 执行的SQL语句
+     * @param args SQL参数，可能为null；不要修改或保存此数组
+     * @param buildNanos 生成SQL语句的时间（纳秒），包括解析PO定义、拼接语句等
+     * @param executeNanos 执行SQL语句的时间（纳秒），不包括映射结果的时间
+     * @param mapNanos 将结果集映射为对象的时间（纳秒），没有映射结果时为0
+     * @param rows 查询返回的记录数，或修改操作受影响的记录数
+     * @param error 操作失败时的异常，成功时为null
+     */
+    void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long buildNanos,
+            long executeNanos, long mapNanos, int rows, Throwable error);
+
+    /**
+     * 操作开始（DaoMetrics.begin），isActive返回false但需要记录SQL日志时也会调用
+     * 
+     * @param begin 开始时间，同一线程中用于识别本次操作
+     */
+    default void onBegin(long begin) {
+    }
+
+    /**
+     * 生成SQL结束、开始执行SQL（DaoMetrics.mark）
+     * 
+     * @param begin onBegin的参数
+     */
+    default void onMark(long begin) {
+    }
+
+    /**
+     * 一次DAO操作完成（或失败），默认调用不带begin参数的onOperation
+     * 
+     * @param begin onBegin的参数，操作可能在其它线程中结束（如关闭Stream）
+     */
+    default void onOperation(long begin, Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+            long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+        onOperation(poClass, operation, sql, args, buildNanos, executeNanos, mapNanos, rows, error);
+    }
+
+    /**
+     * 开始映射一行结果（仅在isActive返回true时调用）
+     * 
+     * @return 传给endRow的对象，可以为null
+     */
+    default Object beginRow(Object rowMapper, int rowNum) {
+        return null;
+    }
+
+    /**
+     * 一行结果映射完成
+     * 
+     * @param row beginRow的返回值
+     */
+    default void endRow(Object row) {
+    }
+}
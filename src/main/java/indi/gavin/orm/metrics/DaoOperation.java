@@ -0,0 +1,11 @@
+package indi.gavin.orm.metrics;
+
+/**
+ * DAO操作的类型
+ * 
+ * @author Gavin
+ *
+ */
+public enum DaoOperation {
+    QUERY_FOR_LIST, QUERY_FOR_OBJECT, QUERY_FOR_VALUE, CREATE, UPDATE, DELETE, UPSERT, QUERY_FOR_STREAM
+}
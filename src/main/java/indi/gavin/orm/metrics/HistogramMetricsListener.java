@@ -0,0 +1,205 @@
+package indi.gavin.orm.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按PO类及操作类型统计DAO操作：次数、错误数、记录数，以及生成SQL、执行、映射结果三个阶段的耗时直方图；
+ * 总耗时超过阈值的操作输出到慢查询日志（WARN级别，logger名为“indi.gavin.orm.SlowQuery”）。
+ * 
+ * 记录时只访问ConcurrentHashMap及原子变量，不加锁；每个PO类的每种操作第一次出现时才创建统计对象。
+ * 
+ * <pre>
+ * HistogramMetricsListener metrics = new HistogramMetricsListener(500);
+ * DaoMetrics.setListener(metrics);
+ * ...
+ * metrics.getStats(UserPo.class, DaoOperation.QUERY_FOR_LIST).getExecuteNanos().getValueAtPercentile(99);
+ * </pre>
+ * 
+ * @author Gavin
+ *
+ */
+public class HistogramMetricsListener implements DaoMetricsListener {
+    private static Logger slowLogger = LoggerFactory.getLogger("indi.gavin.orm.SlowQuery");
+
+    private static final DaoOperation[] OPERATIONS = DaoOperation.values();
+
+    private final Map<Class<?>, AtomicReferenceArray<OperationStats>> stats =
+            new ConcurrentHashMap<Class<?>, AtomicReferenceArray<OperationStats>>();
+
+    private volatile long slowThresholdNanos;
+
+    /**
+     * 不输出慢查询日志
+     */
+    public HistogramMetricsListener() {
+        this(0);
+    }
+
+    /**
+     * @param slowThresholdMillis 总耗时达到多少毫秒时输出慢查询日志，小于等于0表示不输出
+     */
+    public HistogramMetricsListener(long slowThresholdMillis) {
+        setSlowThreshold(slowThresholdMillis);
+    }
+
+    /**
+     * 设置慢查询的阈值（毫秒），小于等于0表示不输出慢查询日志
+     */
+    public void setSlowThreshold(long slowThresholdMillis) {
+        this.slowThresholdNanos = slowThresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis) : 0;
+    }
+
+    public long getSlowThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long buildNanos,
+            long executeNanos, long mapNanos, int rows, Throwable error) {
+        OperationStats s = getOrCreate(poClass, operation);
+        s.count.increment();
+        s.rows.add(rows);
+        if (error != null) {
+            s.errors.increment();
+        }
+        s.buildNanos.record(buildNanos);
+        s.executeNanos.record(executeNanos);
+        s.mapNanos.record(mapNanos);
+
+        long total = buildNanos + executeNanos + mapNanos;
+        long threshold = slowThresholdNanos;
+        if (threshold > 0 && total >= threshold && slowLogger.isWarnEnabled()) {
+            slowLogger.warn("Slow {} on {} ({} ms: build {} us, execute {} us, map {} us, {} rows{}): {} with {}",
+                    operation, poClass.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(total),
+                    TimeUnit.NANOSECONDS.toMicros(buildNanos), TimeUnit.NANOSECONDS.toMicros(executeNanos),
+                    TimeUnit.NANOSECONDS.toMicros(mapNanos), rows, error == null ? "" : ", failed", sql,
+                    args == null ? "[]" : Arrays.deepToString(args));
+        }
+    }
+
+    /**
+     * 取得PO类某种操作的统计，还没有执行过时返回null
+     */
+    public OperationStats getStats(Class<?> poClass, DaoOperation operation) {
+        AtomicReferenceArray<OperationStats> array = stats.get(poClass);
+        return array == null ? null : array.get(operation.ordinal());
+    }
+
+    /**
+     * 所有统计：PO类->各操作的统计（按DaoOperation的顺序，没有执行过的为null）
+     */
+    public Map<Class<?>, OperationStats[]> getAllStats() {
+        Map<Class<?>, OperationStats[]> result = new HashMap<Class<?>, OperationStats[]>();
+        for (Map.Entry<Class<?>, AtomicReferenceArray<OperationStats>> e : stats.entrySet()) {
+            OperationStats[] array = new OperationStats[OPERATIONS.length];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = e.getValue().get(i);
+            }
+            result.put(e.getKey(), array);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    private OperationStats getOrCreate(Class<?> poClass, DaoOperation operation) {
+        AtomicReferenceArray<OperationStats> array = stats.get(poClass);
+        if (array == null) {
+            array = stats.computeIfAbsent(poClass, c -> new AtomicReferenceArray<OperationStats>(OPERATIONS.length));
+        }
+        int i = operation.ordinal();
+        OperationStats s = array.get(i);
+        if (s == null) {
+            array.compareAndSet(i, null, new OperationStats(poClass, operation));
+            s = array.get(i);
+        }
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationStats[] array : getAllStats().values()) {
+            for (OperationStats s : array) {
+                if (s != null) {
+                    sb.append(s).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * PO类某种操作的统计，耗时的单位为纳秒
+     */
+    public static final class OperationStats {
+        private final Class<?> poClass;
+        private final DaoOperation operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram buildNanos = new LatencyHistogram();
+        private final LatencyHistogram executeNanos = new LatencyHistogram();
+        private final LatencyHistogram mapNanos = new LatencyHistogram();
+
+        OperationStats(Class<?> poClass, DaoOperation operation) {
+            this.poClass = poClass;
+            this.operation = operation;
+        }
+
+        public Class<?> getPoClass() {
+            return poClass;
+        }
+
+        public DaoOperation getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        public long getRowCount() {
+            return rows.sum();
+        }
+
+        public LatencyHistogram getBuildNanos() {
+            return buildNanos;
+        }
+
+        public LatencyHistogram getExecuteNanos() {
+            return executeNanos;
+        }
+
+        public LatencyHistogram getMapNanos() {
+            return mapNanos;
+        }
+
+        @Override
+        public String toString() {
+            return poClass.getSimpleName() + "." + operation + ": count=" + getCount() + ", errors=" + getErrorCount()
+                    + ", rows=" + getRowCount() + ", build[" + buildNanos + "], execute[" + executeNanos + "], map["
+                    + mapNanos + "]";
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package indi.gavin.orm.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 将DAO操作作为JFR（Java Flight Recorder）事件输出，与GC、锁等事件一起分析ORM自身（生成SQL、映射结果）的开销：
+ * 1. indi.gavin.orm.Operation：整个操作，从DaoMetrics.begin()开始到操作结束；
+ * 2. indi.gavin.orm.Phase：操作的BUILD（生成SQL）、EXECUTE（执行SQL及映射结果）阶段；
+ * 3. indi.gavin.orm.MapRow：映射每一行结果，默认不记录。
+ *
+ * 通过JfrMetricsListener.install()启用，原来注册的监听器继续生效。之后由JFR的设置控制是否记录：
+ * <pre>
+ * java -XX:StartFlightRecording=settings=profile ...   （或在.jfc文件中设置indi.gavin.orm.Operation#enabled）
+ * </pre>
+ * 没有JFR记录启用该事件时isActive()返回false，DAO不计时，与未注册监听器的开销相同。
+ * 运行环境不支持JFR（jdk.jfr，Java 11+或8u262+）时install()返回false，不做任何事。
+ * 编译本类所在的包同样需要jdk.jfr，即JDK 11+或8u262+。
+ *
+ * @author Gavin
+ *
+ */
+public final class JfrMetricsListener implements DaoMetricsListener {
+    private static Logger logger = LoggerFactory.getLogger(JfrMetricsListener.class);
+
+    private static final boolean SUPPORTED = detect();
+
+    //每个线程中尚未结束的操作（按begin()的返回值识别）；未关闭的Stream等不会结束，最多保留MAX_PENDING个
+    private static final int MAX_PENDING = 16;
+    private static final ThreadLocal<ArrayDeque<Trace>> pending = new ThreadLocal<ArrayDeque<Trace>>() {
+        @Override
+        protected ArrayDeque<Trace> initialValue() {
+            return new ArrayDeque<Trace>();
+        }
+    };
+
+    private final DaoMetricsListener delegate;
+
+    private JfrMetricsListener(DaoMetricsListener delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 当前JVM是否支持JFR事件
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * 启用JFR事件（在当前注册的监听器外包装一层），已经启用时什么也不做
+     *
+     * @return 是否启用成功（JVM不支持JFR时返回false）
+     */
+    public static boolean install() {
+        if (!SUPPORTED) {
+            return false;
+        }
+        DaoMetricsListener current = DaoMetrics.getListener();
+        if (!(current instanceof JfrMetricsListener)) {
+            DaoMetrics.setListener(new JfrMetricsListener(current));
+        }
+        return true;
+    }
+
+    /**
+     * 停用JFR事件，恢复原来注册的监听器
+     */
+    public static void uninstall() {
+        DaoMetricsListener current = DaoMetrics.getListener();
+        if (current instanceof JfrMetricsListener) {
+            DaoMetrics.setListener(((JfrMetricsListener) current).delegate);
+        }
+    }
+
+    /**
+     * 被包装的监听器
+     */
+    public DaoMetricsListener getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isActive() {
+        return OperationEvent.isRecording() || PhaseEvent.isRecording() || MapRowEvent.isRecording()
+                || delegate.isActive();
+    }
+
+    @Override
+    public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args, long buildNanos,
+            long executeNanos, long mapNanos, int rows, Throwable error) {
+        if (delegate != NOOP) {
+            delegate.onOperation(poClass, operation, sql, args, buildNanos, executeNanos, mapNanos, rows, error);
+        }
+        if (OperationEvent.isRecording()) {
+            OperationEvent.emit(poClass, operation, sql, buildNanos, executeNanos, mapNanos, rows, error);
+        }
+    }
+
+    /**
+     * 操作开始，开始Operation事件及BUILD阶段
+     */
+    @Override
+    public void onBegin(long begin) {
+        delegate.onBegin(begin);
+        if (!OperationEvent.isRecording() && !PhaseEvent.isRecording()) {
+            return;
+        }
+        ArrayDeque<Trace> traces = pending.get();
+        if (traces.size() >= MAX_PENDING) {
+            traces.pollFirst();
+        }
+        traces.addLast(new Trace(begin));
+    }
+
+    /**
+     * 开始执行SQL，结束BUILD阶段并开始EXECUTE阶段
+     */
+    @Override
+    public void onMark(long begin) {
+        delegate.onMark(begin);
+        Trace trace = find(begin, false);
+        if (trace != null && trace.execute == null) {
+            trace.build.end();
+            trace.execute = PhaseEvent.start(PhaseEvent.EXECUTE);
+        }
+    }
+
+    /**
+     * 操作结束，提交开始时创建的事件；找不到时（如在其它线程中结束）提交一个没有持续时间的事件
+     */
+    @Override
+    public void onOperation(long begin, Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+            long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+        delegate.onOperation(begin, poClass, operation, sql, args, buildNanos, executeNanos, mapNanos, rows, error);
+        Trace trace = find(begin, true);
+        if (trace != null) {
+            trace.complete(poClass, operation, sql, buildNanos, executeNanos, mapNanos, rows, error);
+        } else if (OperationEvent.isRecording()) {
+            OperationEvent.emit(poClass, operation, sql, buildNanos, executeNanos, mapNanos, rows, error);
+        }
+    }
+
+    /**
+     * 开始映射一行；MapRow事件启用时返回该事件（此时不回调被包装的监听器），否则交给被包装的监听器
+     */
+    @Override
+    public Object beginRow(Object rowMapper, int rowNum) {
+        if (MapRowEvent.isRecording()) {
+            return MapRowEvent.start(rowMapper.getClass(), rowNum);
+        }
+        return delegate.beginRow(rowMapper, rowNum);
+    }
+
+    @Override
+    public void endRow(Object row) {
+        if (row instanceof MapRowEvent) {
+            ((MapRowEvent) row).commit();
+        } else {
+            delegate.endRow(row);
+        }
+    }
+
+    private static Trace find(long begin, boolean remove) {
+        Iterator<Trace> it = pending.get().descendingIterator();
+        while (it.hasNext()) {
+            Trace trace = it.next();
+            if (trace.begin == begin) {
+                if (remove) {
+                    it.remove();
+                }
+                return trace;
+            }
+        }
+        return null;
+    }
+
+    //jdk.jfr.Event不存在时不加载OperationEvent
+    private static boolean detect() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            //加载并注册事件类型
+            OperationEvent.isRecording();
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.debug("JFR is not supported: {}", e.toString());
+            return false;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class Trace {
+        final long begin;
+        final OperationEvent operation;
+        final PhaseEvent build;
+        //开始执行SQL后才创建
+        PhaseEvent execute;
+
+        Trace(long begin) {
+            this.begin = begin;
+            this.operation = OperationEvent.start();
+            this.build = PhaseEvent.start(PhaseEvent.BUILD);
+        }
+
+        void complete(Class<?> poClass, DaoOperation op, String sql, long buildNanos, long executeNanos,
+                long mapNanos, int rows, Throwable error) {
+            if (execute == null) {
+                //没有单独的生成SQL阶段，整个操作都是执行阶段
+                build.phase = PhaseEvent.EXECUTE;
+                build.end();
+            } else {
+                execute.end();
+                execute.complete(poClass, op, sql);
+            }
+            build.complete(poClass, op, sql);
+            operation.complete(poClass, op, sql, buildNanos, executeNanos, mapNanos, rows, error);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package indi.gavin.orm.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 映射一行结果的JFR事件（indi.gavin.orm.MapRow）。
+ *
+ * 每行一个事件，数量很多，默认不记录；需要时在.jfc文件中设置indi.gavin.orm.MapRow#enabled=true。
+ *
+ * @author Gavin
+ *
+ */
+@Name(MapRowEvent.NAME)
+@Label("ORM Map Row")
+@Category("ORM")
+@Description("Mapping of one result set row to an object by indi.gavin.orm")
+@StackTrace(false)
+@Enabled(false)
+final class MapRowEvent extends Event {
+    static final String NAME = "indi.gavin.orm.MapRow";
+
+    private static final EventType TYPE = EventType.getEventType(MapRowEvent.class);
+
+    @Label("Row Mapper")
+    Class<?> rowMapper;
+
+    @Label("Row Number")
+    int rowNum;
+
+    static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    static MapRowEvent start(Class<?> rowMapper, int rowNum) {
+        MapRowEvent event = new MapRowEvent();
+        event.rowMapper = rowMapper;
+        event.rowNum = rowNum;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,104 @@
+package indi.gavin.orm.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * DAO操作的JFR事件（indi.gavin.orm.Operation），由JfrMetricsListener在DaoMetrics.begin()时开始、操作结束时提交。
+ *
+ * 事件的起止时间即整个操作（生成SQL到映射完结果）的时间，各阶段的耗时另外记录在buildTime、executeTime、mapTime中。
+ * 在其它线程中结束的操作（如在其它线程中关闭的Stream）无法关联开始时的事件，只在结束时提交一个没有持续时间的事件。
+ * 只在JfrMetricsListener确认JFR可用后才加载本类。
+ *
+ * @author Gavin
+ *
+ */
+@Name(OperationEvent.NAME)
+@Label("ORM Operation")
+@Category("ORM")
+@Description("DAO operation of indi.gavin.orm: SQL build, execute and row mapping time")
+@StackTrace(false)
+final class OperationEvent extends Event {
+    static final String NAME = "indi.gavin.orm.Operation";
+
+    private static final EventType TYPE = EventType.getEventType(OperationEvent.class);
+
+    @Label("PO Class")
+    Class<?> poClass;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL Id")
+    @Description("Hash of the SQL text; statements that differ only in bound values share the same id")
+    int sqlId;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Build Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long buildTime;
+
+    @Label("Execute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executeTime;
+
+    @Label("Map Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long mapTime;
+
+    @Label("Error")
+    String error;
+
+    /**
+     * 是否有JFR记录启用了本事件
+     */
+    static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * 操作开始时创建事件并开始计时
+     */
+    static OperationEvent start() {
+        OperationEvent event = new OperationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 结束时没有开始时的事件，提交一个新事件
+     */
+    static void emit(Class<?> poClass, DaoOperation operation, String sql, long buildNanos, long executeNanos,
+            long mapNanos, int rows, Throwable error) {
+        new OperationEvent().complete(poClass, operation, sql, buildNanos, executeNanos, mapNanos, rows, error);
+    }
+
+    void complete(Class<?> poClass, DaoOperation operation, String sql, long buildNanos, long executeNanos,
+            long mapNanos, int rows, Throwable error) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.poClass = poClass;
+        this.operation = operation.name();
+        this.sqlId = sql == null ? 0 : sql.hashCode();
+        this.sql = sql;
+        this.rows = rows;
+        this.buildTime = buildNanos;
+        this.executeTime = executeNanos;
+        this.mapTime = mapNanos;
+        this.error = error == null ? null : error.getClass().getName();
+        commit();
+    }
+}
@@ -0,0 +1,67 @@
+package indi.gavin.orm.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * DAO操作各阶段的JFR事件（indi.gavin.orm.Phase），与indi.gavin.orm.Operation事件在同一线程中、时间上相互嵌套：
+ * 1. BUILD：从DaoMetrics.begin()到开始执行SQL，包括解析PO定义、拼接语句、准备参数等；
+ * 2. EXECUTE：从开始执行SQL到操作结束，逐行映射结果与读取结果集交替进行，因此包括映射时间（映射各行另见indi.gavin.orm.MapRow）。
+ *
+ * @author Gavin
+ *
+ */
+@Name(PhaseEvent.NAME)
+@Label("ORM Phase")
+@Category("ORM")
+@Description("Phase of a DAO operation of indi.gavin.orm: BUILD or EXECUTE")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+    static final String NAME = "indi.gavin.orm.Phase";
+
+    static final String BUILD = "BUILD";
+    static final String EXECUTE = "EXECUTE";
+
+    private static final EventType TYPE = EventType.getEventType(PhaseEvent.class);
+
+    @Label("Phase")
+    String phase;
+
+    @Label("PO Class")
+    Class<?> poClass;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL Id")
+    int sqlId;
+
+    static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    static PhaseEvent start(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 提交已经结束（end()）的阶段；操作信息在操作结束时才知道，BUILD阶段的事件要等到那时才提交
+     */
+    void complete(Class<?> poClass, DaoOperation operation, String sql) {
+        if (!shouldCommit()) {
+            return;
+        }
+        this.poClass = poClass;
+        this.operation = operation.name();
+        this.sqlId = sql == null ? 0 : sql.hashCode();
+        commit();
+    }
+}
@@ -0,0 +1,297 @@
+package indi.gavin.orm.metrics;
+
+import indi.gavin.orm.BizException;
+import indi.gavin.orm.BizStatus;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SQL日志（logger名为“indi.gavin.orm.SQL”，INFO级别）。
+ *
+ * 记录方式（Mode）：
+ * 1. OFF：不记录；
+ * 2. SAMPLED：随机记录约1/sampleRate的语句；
+ * 3. SLOW：只记录耗时不小于slowThreshold的语句；
+ * 4. FULL：记录所有语句（默认）。
+ *
+ * 执行SQL的线程只把语句、参数数组的引用及耗时写入预先分配的环形缓冲区，不拼接字符串、不分配对象；
+ * 后台线程（orm-sql-logger）从缓冲区读取并格式化，参数值在真正输出时才转换为字符串。
+ * 缓冲区满时丢弃新的记录（getDroppedCount()）。因为延迟格式化，调用者在执行SQL后修改参数数组或其中的对象，日志中看到的是修改后的值。
+ * 缓冲区为空时后台线程一直等待，直到有新的记录写入时被唤醒（写入时只有后台线程正在等待才需要唤醒）。
+ * 后台线程是守护线程，JVM退出前可调用flush()输出缓冲区中剩余的记录。
+ *
+ * @author Gavin
+ *
+ */
+public final class SqlLogger {
+    private static Logger logger = LoggerFactory.getLogger("indi.gavin.orm.SQL");
+
+    public enum Mode {
+        OFF, SAMPLED, SLOW, FULL
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MASK = BUFFER_SIZE - 1;
+    //日志中最多输出多少个参数、SQL语句最多输出多少个字符（多行insert的语句及参数可能很长）
+    private static final int MAX_RENDERED_ARGS = 64;
+    private static final int MAX_RENDERED_SQL = 4096;
+
+    private static volatile Mode mode = Mode.FULL;
+    private static volatile int sampleRate = 100;
+    private static volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final Slot[] slots = new Slot[BUFFER_SIZE];
+    //下一个写入位置（多个生产者）及下一个读取位置（只在持有drainLock时访问）
+    private static final AtomicLong tail = new AtomicLong();
+    private static long head;
+    private static final ReentrantLock drainLock = new ReentrantLock();
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile Thread consumer;
+    //后台线程发现缓冲区为空、准备等待时为true，写入记录后据此决定是否唤醒
+    private static volatile boolean idle;
+
+    static {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            slots[i] = new Slot(i);
+        }
+    }
+
+    private SqlLogger() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode mode) {
+        SqlLogger.mode = mode == null ? Mode.OFF : mode;
+    }
+
+    /**
+     * SAMPLED模式下，平均每多少条语句记录一条
+     */
+    public static void setSampleRate(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new BizException(BizStatus.S_INVALID_PARAMETERS, sampleRate);
+        }
+        SqlLogger.sampleRate = sampleRate;
+    }
+
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * SLOW模式下，耗时达到多少毫秒的语句才记录
+     */
+    public static void setSlowThreshold(long millis) {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    public static long getSlowThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    /**
+     * 是否可能记录日志（模式不是OFF并且logger启用了INFO级别）
+     */
+    public static boolean isActive() {
+        return mode != Mode.OFF && logger.isInfoEnabled();
+    }
+
+    /**
+     * 因缓冲区满而丢弃的记录数
+     */
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 记录一条语句（按当前模式决定是否记录）
+     *
+     * @param args SQL参数，输出时才转换为字符串，可以为null
+     * @param elapsedNanos 耗时（纳秒），未知时为-1（SLOW模式下不记录）
+     * @param rows 返回或受影响的记录数，未知时为-1
+     * @param error 失败时的异常
+     */
+    public static void log(String sql, Object[] args, long elapsedNanos, int rows, Throwable error) {
+        switch (mode) {
+        case OFF:
+            return;
+        case SAMPLED:
+            int rate = sampleRate;
+            if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+                return;
+            }
+            break;
+        case SLOW:
+            if (elapsedNanos < 0 || elapsedNanos < slowThresholdNanos) {
+                return;
+            }
+            break;
+        default:
+            break;
+        }
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        if (!offer(sql, args, elapsedNanos, rows, error)) {
+            dropped.increment();
+        }
+        if (consumer == null) {
+            startConsumer();
+        }
+    }
+
+    /**
+     * 在当前线程中输出缓冲区中的所有记录
+     */
+    public static void flush() {
+        drainLock.lock();
+        try {
+            drain();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    //有界多生产者队列（按槽位的序号判断是否可写、可读），写满时返回false
+    private static boolean offer(String sql, Object[] args, long elapsedNanos, int rows, Throwable error) {
+        while (true) {
+            long pos = tail.get();
+            Slot slot = slots[(int) pos & MASK];
+            long diff = slot.sequence - pos;
+            if (diff < 0) {
+                return false;
+            }
+            if (diff == 0 && tail.compareAndSet(pos, pos + 1)) {
+                slot.sql = sql;
+                slot.args = args;
+                slot.elapsedNanos = elapsedNanos;
+                slot.rows = rows;
+                slot.error = error;
+                slot.sequence = pos + 1;
+                if (idle) {
+                    wakeConsumer();
+                }
+                return true;
+            }
+        }
+    }
+
+    //只在持有drainLock时调用
+    private static int drain() {
+        int count = 0;
+        while (true) {
+            Slot slot = slots[(int) head & MASK];
+            if (slot.sequence != head + 1) {
+                return count;
+            }
+            try {
+                write(slot);
+            } catch (RuntimeException e) {
+                //输出失败（如参数的toString出错）不影响后续记录
+            }
+            slot.sql = null;
+            slot.args = null;
+            slot.error = null;
+            slot.sequence = head + BUFFER_SIZE;
+            head++;
+            count++;
+        }
+    }
+
+    private static void write(Slot slot) {
+        String sql = slot.sql;
+        if (sql != null && sql.length() > MAX_RENDERED_SQL) {
+            sql = sql.substring(0, MAX_RENDERED_SQL) + "...(" + sql.length() + " chars)";
+        }
+        long micros = slot.elapsedNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(slot.elapsedNanos);
+        if (slot.error != null) {
+            logger.info("SQL: {} with {} (failed after {} us: {})", sql, renderArgs(slot.args), micros,
+                    slot.error.toString());
+        } else if (micros < 0) {
+            logger.info("SQL: {} with {}", sql, renderArgs(slot.args));
+        } else {
+            logger.info("SQL: {} with {} ({} rows, {} us)", sql, renderArgs(slot.args), slot.rows, micros);
+        }
+    }
+
+    private static String renderArgs(Object[] args) {
+        if (args == null || args.length == 0) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        int n = Math.min(args.length, MAX_RENDERED_ARGS);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(args[i]);
+        }
+        if (args.length > n) {
+            sb.append(", ...(").append(args.length).append(" args)");
+        }
+        return sb.append(']').toString();
+    }
+
+    private static synchronized void startConsumer() {
+        if (consumer != null) {
+            return;
+        }
+        Thread t = new Thread(SqlLogger::consume, "orm-sql-logger");
+        t.setDaemon(true);
+        t.start();
+        consumer = t;
+    }
+
+    private static void wakeConsumer() {
+        Thread t = consumer;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private static void consume() {
+        while (true) {
+            boolean empty;
+            drainLock.lock();
+            try {
+                drain();
+                //先设置idle再检查缓冲区：写入者先写槽位再读idle，两者至少有一方能看到对方的修改，不会错过唤醒
+                idle = true;
+                empty = slots[(int) head & MASK].sequence != head + 1;
+            } finally {
+                drainLock.unlock();
+            }
+            if (empty) {
+                LockSupport.park(SqlLogger.class);
+            }
+            idle = false;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class Slot {
+        //等于写入位置时可写，等于写入位置+1时可读
+        volatile long sequence;
+        String sql;
+        Object[] args;
+        long elapsedNanos;
+        int rows;
+        Throwable error;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
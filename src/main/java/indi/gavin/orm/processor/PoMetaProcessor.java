@@ -0,0 +1,547 @@
+package indi.gavin.orm.processor;
+
+import indi.gavin.orm.annotations.PoColumn;
+import indi.gavin.orm.annotations.PoTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * 为@PoTable类生成indi.gavin.orm.PoMeta的子类（“类名_PoMeta”），在META-INF/services中注册，编译PO时自动执行。
+ *
+ * 属性的扫描规则与PoDefinition一致（子类属性在前、嵌套对象的属性为“对象$属性”、@PoColumn("-")的属性忽略等），
+ * 取值、映射方法与PoAccessPlan、PoRowMapper一致。无法完全按这些规则生成的PO（如缺少getter/setter、
+ * 泛型PO、抽象类、嵌套对象中还有嵌套对象等）不生成元数据，运行时仍使用反射，编译时输出提示。
+ *
+ * 不需要生成时（运行时一律使用反射）：javac加-proc:none；Maven在maven-compiler-plugin中设置&lt;proc&gt;none&lt;/proc&gt;，
+ * 或用&lt;annotationProcessors&gt;（javac -processor）只列出需要的处理器，不包括本处理器。
+ *
+ * @author Gavin
+ *
+ */
+public class PoMetaProcessor extends AbstractProcessor {
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(PoTable.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element e : roundEnv.getElementsAnnotatedWith(PoTable.class)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            TypeElement poType = (TypeElement) e;
+            try {
+                PoModel model = new PoModel(poType);
+                write(poType, model);
+            } catch (UnsupportedPoException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "PoMeta not generated for " + poType.getQualifiedName() + " (" + ex.getMessage()
+                                + "), using reflection at runtime",
+                        poType);
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Can't write PoMeta for " + poType.getQualifiedName() + ": " + ex, poType);
+            }
+        }
+        return false;
+    }
+
+    private void write(TypeElement poType, PoModel model) throws IOException {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(poType).toString();
+        String metaName = getMetaClassName(binaryName);
+        int pos = metaName.lastIndexOf('.');
+        String packageName = pos < 0 ? "" : metaName.substring(0, pos);
+        String simpleName = metaName.substring(pos + 1);
+        String po = poType.getQualifiedName().toString();
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * Generated by ").append(PoMetaProcessor.class.getName()).append(" from ")
+                .append(poType.getSimpleName()).append(", do not edit.\n */\n");
+        sb.append("public final class ").append(simpleName).append(" extends indi.gavin.orm.PoMeta<").append(po)
+                .append("> {\n\n");
+
+        //构造方法：属性、字段、只读标志、类型、select部分、insert语句
+        sb.append("    public ").append(simpleName).append("() {\n");
+        sb.append("        super(").append(po).append(".class,\n");
+        sb.append("                new String[] {");
+        for (int i = 0; i < model.fields.size(); i++) {
+            sb.append(i > 0 ? ", " : " ").append(literal(model.fields.get(i).name));
+        }
+        sb.append(" },\n                new String[] {");
+        for (int i = 0; i < model.fields.size(); i++) {
+            sb.append(i > 0 ? ", " : " ").append(literal(model.fields.get(i).column));
+        }
+        sb.append(" },\n                new boolean[] {");
+        for (int i = 0; i < model.fields.size(); i++) {
+            sb.append(i > 0 ? ", " : " ").append(model.fields.get(i).readOnly);
+        }
+        sb.append(" },\n                new Class<?>[] {");
+        for (int i = 0; i < model.fields.size(); i++) {
+            sb.append(i > 0 ? ", " : " ").append(model.fields.get(i).typeName).append(".class");
+        }
+        sb.append(" },\n                ").append(literal(model.select)).append(",\n                ")
+                .append(model.insertSQL == null ? "null" : literal(model.insertSQL)).append(");\n    }\n\n");
+
+        sb.append("    @Override\n    public ").append(po).append(" newInstance() {\n        return new ").append(po)
+                .append("();\n    }\n\n");
+
+        sb.append("    @Override\n    public Object get(").append(po).append(" po, int field) {\n");
+        sb.append("        switch (field) {\n");
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel f = model.fields.get(i);
+            if (f.nestedGetter == null) {
+                sb.append("        case ").append(i).append(":\n            return po.").append(f.getter)
+                        .append("();\n");
+            }
+        }
+        sb.append("        default:\n            throw unknownField(field);\n        }\n    }\n\n");
+
+        sb.append("    @Override\n    public void set(").append(po)
+                .append(" po, int field, java.sql.ResultSet rs, int column) throws java.sql.SQLException {\n");
+        sb.append("        switch (field) {\n");
+        for (int i = 0; i < model.fields.size(); i++) {
+            FieldModel f = model.fields.get(i);
+            if (f.resultSetGetter == null) {
+                continue;
+            }
+            sb.append("        case ").append(i).append(":\n");
+            if (f.nestedGetter == null) {
+                sb.append("            po.").append(f.setter).append("(rs.").append(f.resultSetGetter)
+                        .append("(column));\n            return;\n");
+            } else {
+                sb.append("            if (po.").append(f.nestedGetter).append("() == null) {\n");
+                sb.append("                nullNested(field);\n            } else {\n");
+                sb.append("                po.").append(f.nestedGetter).append("().").append(f.setter).append("(rs.")
+                        .append(f.resultSetGetter).append("(column));\n            }\n            return;\n");
+            }
+        }
+        sb.append("        default:\n            throw unknownField(field);\n        }\n    }\n}\n");
+
+        try (Writer w = processingEnv.getFiler().createSourceFile(metaName, poType).openWriter()) {
+            w.write(sb.toString());
+        }
+    }
+
+    private static String literal(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (char c : s.toCharArray()) {
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 无法生成元数据
+     */
+    private static final class UnsupportedPoException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedPoException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class FieldModel {
+        String name;
+        String column;
+        boolean readOnly;
+        String typeName;
+        //非嵌套属性的getter；嵌套属性为null
+        String getter;
+        //嵌套属性：PO中取得嵌套对象的getter
+        String nestedGetter;
+        String setter;
+        //映射时使用的ResultSet方法，属性类型不支持映射时为null
+        String resultSetGetter;
+    }
+
+    /**
+     * PO的属性模型，扫描规则与PoDefinition.getPoFileds一致
+     */
+    private final class PoModel {
+        private final TypeElement poType;
+        private final Map<String, FieldModel> fieldMap = new LinkedHashMap<String, FieldModel>();
+        final List<FieldModel> fields;
+        final String select;
+        final String insertSQL;
+
+        PoModel(TypeElement poType) throws UnsupportedPoException {
+            this.poType = poType;
+            checkClass();
+            scan(poType);
+            this.fields = new ArrayList<FieldModel>(fieldMap.values());
+
+            StringBuilder sb = new StringBuilder();
+            for (FieldModel f : fields) {
+                sb.append(',').append(f.column).append(" as ").append(fieldName2ColumnName(f.name));
+            }
+            this.select = sb.length() == 0 ? "" : sb.substring(1);
+            this.insertSQL = buildInsertSQL();
+        }
+
+        private void checkClass() throws UnsupportedPoException {
+            Set<Modifier> modifiers = poType.getModifiers();
+            if (modifiers.contains(Modifier.ABSTRACT)) {
+                throw new UnsupportedPoException("abstract class");
+            }
+            if (!poType.getTypeParameters().isEmpty()) {
+                throw new UnsupportedPoException("generic class");
+            }
+            if (poType.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+                throw new UnsupportedPoException("inner class");
+            }
+            for (Element e = poType; e instanceof TypeElement; e = e.getEnclosingElement()) {
+                TypeElement t = (TypeElement) e;
+                if (t.getModifiers().contains(Modifier.PRIVATE)) {
+                    throw new UnsupportedPoException("private class");
+                }
+                if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                    throw new UnsupportedPoException("local class");
+                }
+            }
+            boolean hasDefault = true;
+            for (ExecutableElement c : ElementFilter.constructorsIn(poType.getEnclosedElements())) {
+                hasDefault = false;
+                if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+                    return;
+                }
+            }
+            if (!hasDefault) {
+                throw new UnsupportedPoException("no accessible no-arg constructor");
+            }
+        }
+
+        private void scan(TypeElement clazz) throws UnsupportedPoException {
+            for (VariableElement f : ElementFilter.fieldsIn(clazz.getEnclosedElements())) {
+                String name = f.getSimpleName().toString();
+                if ("serialVersionUID".equals(name)) {
+                    continue;
+                }
+                if (isNestedType(f.asType())) {
+                    scanNested(f);
+                    continue;
+                }
+                FieldModel existing = fieldMap.get(name);
+                if (existing != null && !existing.column.isEmpty()) {
+                    //子类重新定义了该属性，优先保留子类定义
+                    continue;
+                }
+
+                PoColumn ann = f.getAnnotation(PoColumn.class);
+                String column = ann == null ? null : ann.value();
+                if (column == null || column.isEmpty()) {
+                    column = getDefaultDBName(name);
+                }
+                if ("-".equals(column)) {
+                    continue;
+                }
+
+                FieldModel m = new FieldModel();
+                m.name = name;
+                m.column = column;
+                m.readOnly = ann != null && ann.readOnly();
+                m.typeName = typeName(f.asType());
+                m.getter = findGetter(poType, "get" + capitalize(name));
+                if (m.getter == null) {
+                    throw new UnsupportedPoException("no getter for " + name);
+                }
+                m.resultSetGetter = resultSetGetter(f.asType());
+                if (m.resultSetGetter != null) {
+                    m.setter = findSetter(clazz, "set" + capitalize(name), f.asType());
+                    if (m.setter == null) {
+                        throw new UnsupportedPoException("no setter for " + name);
+                    }
+                }
+                fieldMap.put(name, m);
+            }
+
+            TypeMirror superType = clazz.getSuperclass();
+            if (superType.getKind() == TypeKind.DECLARED) {
+                TypeElement superClass = (TypeElement) ((DeclaredType) superType).asElement();
+                if (!Object.class.getName().equals(superClass.getQualifiedName().toString())) {
+                    scan(superClass);
+                }
+            }
+        }
+
+        private void scanNested(VariableElement nestedField) throws UnsupportedPoException {
+            String suffix = nestedField.getSimpleName().toString();
+            TypeElement nestedType = (TypeElement) ((DeclaredType) nestedField.asType()).asElement();
+            if (nestedType.getKind() != ElementKind.CLASS) {
+                throw new UnsupportedPoException("nested property " + suffix + " is not a class");
+            }
+            String nestedGetter = findGetter(poType, "get" + capitalize(suffix));
+            if (nestedGetter == null) {
+                throw new UnsupportedPoException("no getter for " + suffix);
+            }
+
+            for (VariableElement f : ElementFilter.fieldsIn(nestedType.getEnclosedElements())) {
+                String name = f.getSimpleName().toString();
+                if ("serialVersionUID".equals(name)) {
+                    continue;
+                }
+                if (isNestedType(f.asType())) {
+                    throw new UnsupportedPoException("nested property " + suffix + "." + name + " is an object");
+                }
+
+                PoColumn ann = f.getAnnotation(PoColumn.class);
+                String column = ann == null ? null : ann.value();
+                if (column == null || column.isEmpty()) {
+                    column = suffix + "." + getDefaultDBName(name);
+                }
+                if ("-".equals(column)) {
+                    continue;
+                }
+
+                FieldModel m = new FieldModel();
+                m.name = suffix + "$" + name;
+                m.column = column;
+                m.readOnly = ann != null && ann.readOnly();
+                m.typeName = typeName(f.asType());
+                m.nestedGetter = nestedGetter;
+                m.resultSetGetter = resultSetGetter(f.asType());
+                if (m.resultSetGetter != null) {
+                    m.setter = findSetter(nestedType, "set" + capitalize(name), f.asType());
+                    if (m.setter == null) {
+                        throw new UnsupportedPoException("no setter for " + m.name);
+                    }
+                }
+                //与PoDefinition一致：重复出现时保留第一次的位置，使用最后一次的定义
+                fieldMap.put(m.name, m);
+            }
+        }
+
+        private String buildInsertSQL() {
+            PoTable ann = poType.getAnnotation(PoTable.class);
+            List<String> tables = new ArrayList<String>();
+            for (String s : ann.value().replaceAll("\\s", "").split(",")) {
+                if (!s.isEmpty()) {
+                    String[] sa = s.split("=");
+                    tables.add(sa.length > 1 ? sa[1] : s);
+                }
+            }
+            if (tables.size() != 1) {
+                return null;
+            }
+
+            StringBuilder columns = new StringBuilder();
+            int count = 0;
+            for (FieldModel f : fields) {
+                if (f.nestedGetter == null && !f.readOnly) {
+                    columns.append(count++ > 0 ? "," : "").append(f.column);
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append("insert into ").append(tables.get(0)).append('(').append(columns).append(") values (");
+            for (int i = 0; i < count; i++) {
+                sb.append(i > 0 ? ",?" : "?");
+            }
+            return sb.append(')').toString();
+        }
+
+        //与PoDefinition一致：非基本类型、且不在java.*包中的类型是嵌套对象
+        private boolean isNestedType(TypeMirror type) {
+            if (type.getKind() != TypeKind.DECLARED) {
+                return false;
+            }
+            Element e = ((DeclaredType) type).asElement();
+            String pkg = processingEnv.getElementUtils().getPackageOf(e).getQualifiedName().toString();
+            return !pkg.startsWith("java");
+        }
+
+        private String typeName(TypeMirror type) throws UnsupportedPoException {
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+            if (erased.getKind() == TypeKind.DECLARED) {
+                TypeElement e = (TypeElement) ((DeclaredType) erased).asElement();
+                if (!e.getModifiers().contains(Modifier.PUBLIC) && !samePackage(e)) {
+                    throw new UnsupportedPoException("type " + e.getQualifiedName() + " is not accessible");
+                }
+                return e.getQualifiedName().toString();
+            }
+            return erased.toString();
+        }
+
+        private boolean samePackage(Element e) {
+            return processingEnv.getElementUtils().getPackageOf(e)
+                    .equals(processingEnv.getElementUtils().getPackageOf(poType));
+        }
+
+        //与PoRowMapper.createBinder一致
+        private String resultSetGetter(TypeMirror type) {
+            switch (type.getKind()) {
+            case INT:
+                return "getInt";
+            case LONG:
+                return "getLong";
+            case DOUBLE:
+                return "getDouble";
+            case FLOAT:
+                return "getFloat";
+            case DECLARED:
+                String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+                switch (name) {
+                case "java.lang.String":
+                    return "getString";
+                case "java.lang.Integer":
+                    return "getInt";
+                case "java.lang.Long":
+                    return "getLong";
+                case "java.util.Date":
+                    return "getTimestamp";
+                case "java.lang.Double":
+                    return "getDouble";
+                case "java.lang.Float":
+                    return "getFloat";
+                default:
+                    return null;
+                }
+            default:
+                return null;
+            }
+        }
+
+        //在类及其父类中查找无参的getter（与PoAccessPlan一致），生成的类与PO在同一个包中，不能访问private方法
+        private String findGetter(TypeElement clazz, String name) {
+            for (TypeElement t = clazz; t != null; t = superClassOf(t)) {
+                for (ExecutableElement m : ElementFilter.methodsIn(t.getEnclosedElements())) {
+                    if (m.getSimpleName().contentEquals(name) && m.getParameters().isEmpty()) {
+                        return isAccessible(m) ? name : null;
+                    }
+                }
+            }
+            return null;
+        }
+
+        //在属性所在的类中查找参数类型与属性一致的setter（与PoRowMapper一致）
+        private String findSetter(TypeElement clazz, String name, TypeMirror type) {
+            for (ExecutableElement m : ElementFilter.methodsIn(clazz.getEnclosedElements())) {
+                if (m.getSimpleName().contentEquals(name) && m.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(m.getParameters().get(0).asType(), type)) {
+                    return isAccessible(m) && isAccessible(clazz) ? name : null;
+                }
+            }
+            return null;
+        }
+
+        private boolean isAccessible(Element e) {
+            Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                    && e.getKind() == ElementKind.METHOD) {
+                return false;
+            }
+            return modifiers.contains(Modifier.PUBLIC) || samePackage(e);
+        }
+
+        private TypeElement superClassOf(TypeElement t) {
+            TypeMirror superType = t.getSuperclass();
+            if (superType.getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+            TypeElement superClass = (TypeElement) ((DeclaredType) superType).asElement();
+            return Object.class.getName().equals(superClass.getQualifiedName().toString()) ? null : superClass;
+        }
+    }
+
+    //与PoMeta.getMetaClassName一致（处理器中不加载PoMeta，编译时不需要slf4j等依赖）
+    static String getMetaClassName(String poBinaryName) {
+        int pos = poBinaryName.lastIndexOf('.');
+        return poBinaryName.substring(0, pos + 1) + poBinaryName.substring(pos + 1).replace('$', '_') + "_PoMeta";
+    }
+
+    //与PoDefinition.getDefaultDBName一致
+    static String getDefaultDBName(String poName) {
+        if (poName.endsWith("Po")) {
+            poName = poName.substring(0, poName.length() - 2);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (char c : poName.toCharArray()) {
+            if (c >= 'A' && c <= 'Z') {
+                if (sb.length() > 0) {
+                    sb.append('_');
+                }
+                sb.append((char) (c + ('a' - 'A')));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toUpperCase();
+    }
+
+    //与PoUtils.fieldName2ColumnName一致
+    static String fieldName2ColumnName(String poFieldName) {
+        StringBuilder sb = new StringBuilder();
+        char[] chars = poFieldName.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (i > 0 && chars[i] >= 'A' && chars[i] <= 'Z') {
+                sb.append('_');
+            }
+            sb.append(chars[i]);
+        }
+        String columnName = sb.toString();
+        if (columnName.startsWith("-")) {
+            columnName = columnName.substring(1);
+        }
+        return columnName.toUpperCase();
+    }
+
+    //与StringUtils.capitalize一致
+    static String capitalize(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,127 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.jdbc.JdbcWizard;
+
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class CountStrategyTest extends TestCase {
+
+    private SingleConnectionDataSource ds;
+    private EstimatingDialect dialect;
+    private JdbcWizard db;
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        dialect = new EstimatingDialect();
+        db = new JdbcWizard(ds, dialect);
+        db.execute("create table T_COUNT_ITEM(ID varchar(10) primary key)");
+        db.execute("insert into T_COUNT_ITEM values ('1'), ('2'), ('3')");
+        CountStrategy.clearCache();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CountStrategy.clearCache();
+        ds.destroy();
+    }
+
+    public void testCachedWithinTtl() {
+        CountStrategy strategy = CountStrategy.cached(60000);
+        assertEquals(3, strategy.count(db, ItemPo.class, null));
+
+        //不经过本框架修改时，在缓存时间内仍返回缓存的结果
+        db.execute("insert into T_COUNT_ITEM values ('4')");
+        assertEquals(3, strategy.count(db, ItemPo.class, null));
+        //查询条件不同的单独缓存
+        assertEquals(1, strategy.count(db, ItemPo.class, "{#id}=?", "4"));
+    }
+
+    public void testCachedExpires() throws InterruptedException {
+        CountStrategy strategy = CountStrategy.cached(1);
+        assertEquals(3, strategy.count(db, ItemPo.class, null));
+        db.execute("insert into T_COUNT_ITEM values ('4')");
+        Thread.sleep(5);
+        assertEquals(4, strategy.count(db, ItemPo.class, null));
+    }
+
+    public void testCachedInvalidatedByDaoWrite() {
+        CountStrategy strategy = CountStrategy.cached(60000);
+        assertEquals(3, strategy.count(db, ItemPo.class, null));
+
+        //通过DAO修改时表的版本号改变，缓存的结果失效
+        ItemPo po = new ItemPo();
+        po.setId("4");
+        assertEquals(1, dao().create(po));
+        assertEquals(4, strategy.count(db, ItemPo.class, null));
+    }
+
+    public void testEstimateAboveThreshold() {
+        dialect.estimate = 1000;
+        assertEquals(1000, CountStrategy.estimated(100).count(db, ItemPo.class, null));
+    }
+
+    public void testEstimateBelowThreshold() {
+        dialect.estimate = 10;
+        assertEquals(3, CountStrategy.estimated(100).count(db, ItemPo.class, null));
+    }
+
+    public void testEstimateFailed() {
+        dialect.fail = true;
+        assertEquals(3, CountStrategy.estimated(0).count(db, ItemPo.class, null));
+        //不支持估算的数据库（估算值为-1）
+        dialect.fail = false;
+        dialect.estimate = -1;
+        assertEquals(3, CountStrategy.estimated(0).count(db, ItemPo.class, null));
+    }
+
+    private ObjectWithIdDao<ItemPo> dao() {
+        return new ObjectWithIdDao<ItemPo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<ItemPo> getPoClass() {
+                return ItemPo.class;
+            }
+        };
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 估算值可以指定的H2方言（H2本身不支持估算）
+     */
+    private static final class EstimatingDialect extends H2Dialect {
+        volatile long estimate = -1;
+        volatile boolean fail;
+
+        @Override
+        public long estimateRowCount(JdbcTemplate db, String sql, Object[] args) {
+            if (fail) {
+                throw new InvalidDataAccessResourceUsageException("explain failed: " + sql);
+            }
+            return estimate;
+        }
+    }
+
+    @PoTable("T_COUNT_ITEM")
+    public static class ItemPo {
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+}
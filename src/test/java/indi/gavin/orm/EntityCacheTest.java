@@ -0,0 +1,170 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class EntityCacheTest extends TestCase {
+
+    private EntityCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        cache = EntityCache.enable(OrderPo.class, 1024, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EntityCache.disable(OrderPo.class);
+    }
+
+    public void testCopyNestedObject() {
+        OrderPo first = cache.get("1", () -> load("1"));
+        first.setStatus(9);
+        first.getAddress().setCity("changed");
+
+        OrderPo cached = cache.get("1", () -> load("1"));
+        assertEquals(1, loads.get());
+        assertEquals(0, cached.getStatus());
+        assertEquals("city1", cached.getAddress().getCity());
+        assertNotSame(cached.getAddress(), cache.get("1", () -> load("1")).getAddress());
+
+        cached.getAddress().setCity("changed");
+        assertEquals("city1", cache.get("1", () -> load("1")).getAddress().getCity());
+    }
+
+    public void testEvict() {
+        cache.get("1", () -> load("1"));
+        cache.get("2", () -> load("2"));
+        EntityCache.evict(OrderPo.class, "1");
+        cache.get("1", () -> load("1"));
+        cache.get("2", () -> load("2"));
+        assertEquals(3, loads.get());
+
+        EntityCache.invalidate(OrderPo.class);
+        assertEquals(0, cache.size());
+        cache.get("2", () -> load("2"));
+        assertEquals(4, loads.get());
+    }
+
+    public void testEvictWhileLoading() {
+        String id = "1";
+        String sameSegment = null;
+        String otherSegment = null;
+        for (int i = 2; sameSegment == null || otherSegment == null; i++) {
+            String s = String.valueOf(i);
+            if (segmentIndex(s) == segmentIndex(id)) {
+                sameSegment = s;
+            } else {
+                otherSegment = s;
+            }
+        }
+
+        //加载期间同一段发生淘汰，结果不放入缓存
+        String evicted = sameSegment;
+        cache.get(id, () -> {
+            cache.evict(evicted);
+            return load(id);
+        });
+        assertEquals(0, cache.size());
+
+        //其它段的淘汰不影响
+        String other = otherSegment;
+        cache.get(id, () -> {
+            cache.evict(other);
+            return load(id);
+        });
+        assertEquals(1, cache.size());
+
+        //清空缓存影响所有段
+        cache.clear();
+        cache.getAll(Arrays.asList(id, other), ids -> {
+            cache.evict(evicted);
+            Map<String, OrderPo> map = new HashMap<String, OrderPo>();
+            for (String s : ids) {
+                map.put(s, load(s));
+            }
+            return map;
+        });
+        assertEquals(1, cache.size());
+    }
+
+    public void testGetAll() {
+        cache.get("1", () -> load("1"));
+        Map<String, OrderPo> result = cache.getAll(Arrays.asList("1", "2", "3"), ids -> {
+            assertEquals(Arrays.asList("2", "3"), ids);
+            return Collections.singletonMap("2", load("2"));
+        });
+        assertEquals(2, result.size());
+        assertEquals("city2", result.get("2").getAddress().getCity());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    private OrderPo load(String id) {
+        loads.incrementAndGet();
+        OrderPo po = new OrderPo();
+        po.setId(id);
+        po.getAddress().setCity("city" + id);
+        return po;
+    }
+
+    //与EntityCache中的分段方式一致（1024个对象分为16段）
+    private static int segmentIndex(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & 15;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_ORDER")
+    public static class OrderPo {
+        private String id;
+        private int status;
+        private Address address = new Address();
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        public void setAddress(Address address) {
+            this.address = address;
+        }
+    }
+
+    public static class Address {
+        private String city;
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoColumn;
+import indi.gavin.orm.annotations.PoTable;
+
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import junit.framework.TestCase;
+
+/**
+ * FilterTemplate与原来逐次通过SpEL解析的结果对比
+ */
+public class FilterTemplateTest extends TestCase {
+
+    private static final String[] TEMPLATES = {
+            "",
+            "1=1",
+            "{#id}=?",
+            " {#id} = ? and {#userName} like ? ",
+            "{#id} in (?,?,?) order by {#createTime} desc",
+            "{#address$city}=? and {#status}>?",
+            "{#unknownField}=?",
+            "{'x'}={#id}",
+            "{#id}=? and {'}' + #userName}=?",
+            "{status > 0 ? #status + '=' + status : '1=1'}",
+            "{userName != null ? #userName + ' like ?' : '1=1'} and {#id}=?",
+            "{#userName}={(1 + 2) * 3}",
+            "{ #id }=?",
+            "{#id}{#userName}",
+    };
+
+    public void testSameResultAsSpel() {
+        PoDefinition poDef = PoDefinition.instance(UserPo.class);
+        UserPo filterPo = new UserPo();
+        filterPo.setUserName("gavin");
+        filterPo.setStatus(2);
+
+        for (String template : TEMPLATES) {
+            for (Object po : new Object[] { filterPo, new UserPo() }) {
+                assertEquals(template, parseBySpel(poDef, template, po),
+                        poDef.getFilterTemplate(template).evaluate(po));
+            }
+        }
+    }
+
+    public void testStaticTemplate() {
+        PoDefinition poDef = PoDefinition.instance(UserPo.class);
+        FilterTemplate ft = poDef.getFilterTemplate("{#id}=? and {#userName} like ?");
+        assertTrue(ft.isStatic());
+        assertEquals("T.ID=? and T.USER_NAME like ?", ft.evaluate(null));
+        assertFalse(poDef.getFilterTemplate("{status > 0 ? #status : '1=1'}").isStatic());
+    }
+
+    public void testSyntaxError() {
+        PoDefinition poDef = PoDefinition.instance(UserPo.class);
+        for (String template : new String[] { "{#id=?", "{}=?", "{#id}=? and {(}" }) {
+            try {
+                parseBySpel(poDef, template, null);
+                fail("SpEL accepted " + template);
+            } catch (ParseException e) {
+                //与原来的实现一致
+            }
+            try {
+                poDef.getFilterTemplate(template).evaluate(null);
+                fail("FilterTemplate accepted " + template);
+            } catch (ParseException e) {
+                //与原来的实现一致
+            }
+        }
+    }
+
+    public void testCacheKeepsHotTemplates() {
+        PoDefinition poDef = PoDefinition.instance(UserPo.class);
+        String hot = "{#id}=? and {#status}=?";
+        FilterTemplate ft = poDef.getFilterTemplate(hot);
+        for (int i = 0; i < 5000; i++) {
+            poDef.getFilterTemplate("{#id}=" + i);
+            if (i % 100 == 0) {
+                assertSame(ft, poDef.getFilterTemplate(hot));
+            }
+        }
+        assertSame(ft, poDef.getFilterTemplate(hot));
+    }
+
+    public void testCacheEvictsUnusedTemplates() {
+        PoDefinition poDef = PoDefinition.instance(UserPo.class);
+        String cold = "{#status}<>?";
+        FilterTemplate ft = poDef.getFilterTemplate(cold);
+        for (int i = 0; i < 5000; i++) {
+            poDef.getFilterTemplate("{#status}=" + i);
+        }
+        FilterTemplate recompiled = poDef.getFilterTemplate(cold);
+        assertNotSame(ft, recompiled);
+        assertEquals(ft.evaluate(null), recompiled.evaluate(null));
+    }
+
+    //原来的PoUtils.parseFilter
+    private static String parseBySpel(PoDefinition poDef, String filter, Object filterPo) {
+        StandardEvaluationContext ctx;
+        if (filterPo == null) {
+            ctx = new StandardEvaluationContext();
+        } else {
+            ctx = new StandardEvaluationContext(filterPo);
+        }
+        for (String fieldName : poDef.getFields()) {
+            ctx.setVariable(fieldName, poDef.getFieldColumn(fieldName));
+        }
+        return new SpelExpressionParser().parseExpression(filter, PoUtils.FilterParseContext.instance())
+                .getValue(ctx, String.class);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T=T_USER")
+    public static class UserPo {
+        @PoColumn("T.ID")
+        private String id;
+        @PoColumn("T.USER_NAME")
+        private String userName;
+        @PoColumn("T.STATUS")
+        private int status;
+        @PoColumn("T.CREATE_TIME")
+        private java.util.Date createTime;
+        private Address address;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public java.util.Date getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(java.util.Date createTime) {
+            this.createTime = createTime;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        public void setAddress(Address address) {
+            this.address = address;
+        }
+    }
+
+    public static class Address {
+        private String city;
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+}
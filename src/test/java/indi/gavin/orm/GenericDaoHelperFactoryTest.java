@@ -0,0 +1,66 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.helper.GenericDaoHelper;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import junit.framework.TestCase;
+
+public class GenericDaoHelperFactoryTest extends TestCase {
+
+    public void testSameHelperForSameJdbcTemplate() {
+        JdbcTemplate db = new JdbcTemplate();
+        GenericDaoHelper helper = GenericDaoHelperFactory.getHelper(db, NotePo.class);
+        assertSame(helper, GenericDaoHelperFactory.getHelper(db, NotePo.class));
+        assertNotSame(helper, GenericDaoHelperFactory.getHelper(new JdbcTemplate(), NotePo.class));
+    }
+
+    public void testJdbcTemplateIsReleased() throws InterruptedException {
+        JdbcTemplate db = new JdbcTemplate();
+        GenericDaoHelperFactory.getHelper(db, NotePo.class);
+        WeakReference<JdbcTemplate> ref = new WeakReference<JdbcTemplate>(db);
+        db = null;
+
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+
+    public void testPo2MapKeepsNullId() throws Exception {
+        NotePo po = new NotePo();
+        po.setText("hello");
+        Map<String, Object> map = PoUtils.po2Map(po);
+        assertTrue(map.containsKey("ID"));
+        assertNull(map.get("ID"));
+        assertEquals("hello", map.get("TEXT"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_NOTE")
+    public static class NotePo {
+        private String id;
+        private String text;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+}
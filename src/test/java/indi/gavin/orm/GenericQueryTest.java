@@ -0,0 +1,145 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoColumn;
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoMetricsListener;
+import indi.gavin.orm.metrics.DaoOperation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+/**
+ * 分页查询（queryPage）的各种总记录数取得方式
+ */
+public class GenericQueryTest extends TestCase {
+
+    private static final int ROWS = 25;
+
+    private SingleConnectionDataSource ds;
+    private JdbcTemplate db;
+    private final List<DaoOperation> operations = new ArrayList<DaoOperation>();
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        db = new JdbcTemplate(ds);
+        db.execute("create table T_PAGE_ITEM(ID varchar(10) primary key, SEQ int)");
+        for (int i = 0; i < ROWS; i++) {
+            db.update("insert into T_PAGE_ITEM values (?, ?)", "P" + i, i);
+        }
+        DaoMetrics.setListener(new DaoMetricsListener() {
+            @Override
+            public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                    long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+                operations.add(operation);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DaoMetrics.setListener(null);
+        ds.destroy();
+    }
+
+    public void testMiddlePage() {
+        Page<ItemPo> page = dao(CountStrategy.exact()).queryPage(null, null, 10, 10, "{#seq}", null);
+        assertEquals(ROWS, page.getTotal());
+        assertEquals(10, page.getRows().size());
+        assertEquals(10, page.getRows().get(0).getSeq());
+        //总记录数通过count(*) over()在同一条语句中取得
+        assertEquals(Arrays.asList(DaoOperation.QUERY_FOR_LIST), operations);
+        //PoRowMapper忽略总记录数的列
+        assertEquals(0, page.getRows().get(0).getPageTotalRows());
+    }
+
+    public void testPagePastTheEnd() {
+        Page<ItemPo> page = dao(CountStrategy.exact()).queryPage(null, null, 30, 10, "{#seq}", null);
+        assertEquals(ROWS, page.getTotal());
+        assertTrue(page.getRows().isEmpty());
+        assertEquals(Arrays.asList(DaoOperation.QUERY_FOR_LIST, DaoOperation.QUERY_FOR_VALUE), operations);
+    }
+
+    public void testEmptyResult() {
+        Page<ItemPo> page = dao(CountStrategy.exact()).queryPage(null, null, 0, 10, "{#seq}", "{#seq}<?", -1);
+        assertEquals(0, page.getTotal());
+        assertTrue(page.getRows().isEmpty());
+        assertEquals(Arrays.asList(DaoOperation.QUERY_FOR_LIST), operations);
+    }
+
+    public void testSeparateCount() {
+        ObjectWithIdDao<ItemPo> dao = dao(CountStrategy.cached(60000));
+
+        //第一页不满时本页的记录数即为总记录数
+        Page<ItemPo> page = dao.queryPage(null, null, 0, 10, "{#seq}", "{#seq}<?", 5);
+        assertEquals(5, page.getTotal());
+        assertEquals(5, page.getRows().size());
+        assertEquals(Arrays.asList(DaoOperation.QUERY_FOR_LIST), operations);
+
+        operations.clear();
+        page = dao.queryPage(null, null, 20, 10, "{#seq}", null);
+        assertEquals(ROWS, page.getTotal());
+        assertEquals(5, page.getRows().size());
+        assertEquals(Arrays.asList(DaoOperation.QUERY_FOR_LIST, DaoOperation.QUERY_FOR_VALUE), operations);
+    }
+
+    private ObjectWithIdDao<ItemPo> dao(CountStrategy strategy) {
+        return new ObjectWithIdDao<ItemPo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<ItemPo> getPoClass() {
+                return ItemPo.class;
+            }
+
+            @Override
+            public CountStrategy getCountStrategy() {
+                return strategy;
+            }
+        };
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_PAGE_ITEM")
+    public static class ItemPo {
+        private String id;
+        private int seq;
+        //与Page.TOTAL_COLUMN对应的属性，不应被设置
+        @PoColumn("-")
+        private long pageTotalRows;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getSeq() {
+            return seq;
+        }
+
+        public void setSeq(int seq) {
+            this.seq = seq;
+        }
+
+        public long getPageTotalRows() {
+            return pageTotalRows;
+        }
+
+        public void setPageTotalRows(long pageTotalRows) {
+            this.pageTotalRows = pageTotalRows;
+        }
+    }
+}
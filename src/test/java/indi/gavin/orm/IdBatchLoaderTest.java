@@ -0,0 +1,109 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class IdBatchLoaderTest extends TestCase {
+
+    private SingleConnectionDataSource ds;
+    private ObjectWithIdDao<ItemPo> dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        JdbcTemplate db = new JdbcTemplate(ds);
+        db.execute("create table T_BATCH_ITEM(ID varchar(10) primary key, NAME varchar(10))");
+        db.execute("insert into T_BATCH_ITEM values ('1', 'a'), ('2', 'b')");
+        dao = new ObjectWithIdDao<ItemPo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<ItemPo> getPoClass() {
+                return ItemPo.class;
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IdBatchLoader.disable(ItemPo.class);
+        ds.destroy();
+    }
+
+    public void testFullBatchWakesLeader() throws Exception {
+        //等待时间很长，只有批次满员才能及时返回
+        IdBatchLoader loader = IdBatchLoader.enable(ItemPo.class, 2, TimeUnit.SECONDS.toMicros(30));
+        AtomicReference<ItemPo> first = new AtomicReference<ItemPo>();
+        Thread leader = new Thread(() -> first.set(loader.load(dao, "1")));
+        long start = System.nanoTime();
+        leader.start();
+        while (leader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        ItemPo second = loader.load(dao, "2");
+        leader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(leader.isAlive());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals("a", first.get().getName());
+        assertEquals("b", second.getName());
+        assertEquals(1, loader.getBatchCount());
+        assertEquals(2, loader.getRequestCount());
+    }
+
+    public void testInterruptedLeaderExecutesImmediately() {
+        IdBatchLoader loader = IdBatchLoader.enable(ItemPo.class, 10, TimeUnit.SECONDS.toMicros(30));
+        long start = System.nanoTime();
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals("a", loader.load(dao, "1").getName());
+            //不等待到期，也不忙等；中断状态保留给调用者
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            assertTrue(Thread.currentThread().isInterrupted());
+            assertEquals(1, loader.getBatchCount());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    public void testLeaderExecutesAfterDelay() {
+        IdBatchLoader loader = IdBatchLoader.enable(ItemPo.class, 10, 1000);
+        assertEquals("a", dao.get("1").getName());
+        assertNull(dao.get("3"));
+        assertEquals(2, loader.getBatchCount());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_BATCH_ITEM")
+    public static class ItemPo {
+        private String id;
+        private String name;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
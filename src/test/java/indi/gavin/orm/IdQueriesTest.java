@@ -0,0 +1,191 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoMetricsListener;
+import indi.gavin.orm.metrics.DaoOperation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import junit.framework.TestCase;
+
+public class IdQueriesTest extends TestCase {
+
+    private static final int ROWS = 3000;
+
+    private JdbcTemplate db;
+    private ObjectWithIdDao<ItemPo> dao;
+    //各条查询语句的参数
+    private final List<Object[]> queries = Collections.synchronizedList(new ArrayList<Object[]>());
+
+    @Override
+    protected void setUp() throws Exception {
+        //每次取得新连接，并行查询时各自使用一个连接
+        db = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:id_queries;DB_CLOSE_DELAY=-1"));
+        db.execute("create table T_ID_ITEM(ID varchar(10) primary key, NAME varchar(10))");
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[] { "I" + i, "name " + i });
+        }
+        db.batchUpdate("insert into T_ID_ITEM values (?, ?)", rows);
+        dao = new ObjectWithIdDao<ItemPo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<ItemPo> getPoClass() {
+                return ItemPo.class;
+            }
+        };
+        DaoMetrics.setListener(new DaoMetricsListener() {
+            @Override
+            public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                    long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+                if (operation == DaoOperation.QUERY_FOR_LIST) {
+                    queries.add(args);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DaoMetrics.setListener(null);
+        db.execute("drop table T_ID_ITEM");
+    }
+
+    public void testChunkedGetAll() {
+        List<String> ids = ids(0, 2500);
+        Map<String, ItemPo> result = dao.getAll(ids);
+        assertEquals(ids, new ArrayList<String>(result.keySet()));
+        assertEquals("name 2499", result.get("I2499").getName());
+
+        //每批最多getMaxInListSize个id，最后一批补齐到2的幂，补齐的参数重复最后一个id
+        assertEquals(Arrays.asList(1000, 1000, 512), argCounts());
+        Object[] last = queries.get(2);
+        assertEquals("I2000", last[0]);
+        assertEquals("I2499", last[499]);
+        assertEquals("I2499", last[511]);
+    }
+
+    public void testParallelChunkedGetAll() {
+        List<String> ids = ids(500, 2600);
+        Map<String, ItemPo> result = dao.getAll(ids, true);
+        assertEquals(ids, new ArrayList<String>(result.keySet()));
+        List<Integer> counts = argCounts();
+        Collections.sort(counts);
+        assertEquals(Arrays.asList(128, 1000, 1000), counts);
+    }
+
+    public void testPaddedInList() {
+        assertEquals(1, dao.getAll(ids(0, 1)).size());
+        assertEquals(2, dao.getAll(ids(0, 2)).size());
+        assertEquals(5, dao.getAll(ids(0, 5)).size());
+        assertEquals(9, dao.getAll(ids(0, 9)).size());
+        assertEquals(Arrays.asList(1, 2, 8, 16), argCounts());
+    }
+
+    public void testDuplicateAndNullIds() {
+        Map<String, ItemPo> result = dao.getAll(Arrays.asList("I1", null, "I2", "I1", "I5", null));
+        assertEquals(Arrays.asList("I1", "I2", "I5"), new ArrayList<String>(result.keySet()));
+        //重复的id只查询一次
+        assertEquals(Arrays.asList(4), argCounts());
+
+        //全部为null时不查询
+        assertTrue(dao.getAll(Arrays.asList((String) null)).isEmpty());
+        assertEquals(1, queries.size());
+    }
+
+    public void testMissingIds() {
+        List<String> missing = new ArrayList<String>();
+        Map<String, ItemPo> result = dao.getAll(Arrays.asList("I1", "X1", "I2", null, "X2"), missing);
+        assertEquals(Arrays.asList("I1", "I2"), new ArrayList<String>(result.keySet()));
+        assertEquals(Arrays.asList("X1", "X2"), missing);
+    }
+
+    public void testGetAllOrdered() {
+        List<ItemPo> result = dao.getAllOrdered(Arrays.asList("I3", "X1", null, "I3", "I2999"));
+        assertEquals(5, result.size());
+        assertEquals("name 3", result.get(0).getName());
+        assertNull(result.get(1));
+        assertNull(result.get(2));
+        assertSame(result.get(0), result.get(3));
+        assertEquals("name 2999", result.get(4).getName());
+    }
+
+    public void testParallelGetAllInsideDaoPool() throws Exception {
+        ExecutorService original = DaoExecutors.getDefault();
+        ExecutorService pool = DaoExecutors.newBoundedPool(4);
+        DaoExecutors.setDefault(pool);
+        try {
+            List<String> ids = ids(0, ROWS);
+            AsyncSupport async = new AsyncSupport() {
+            };
+            //线程池的4个线程都在getAll中等待各批查询
+            List<CompletableFuture<Map<String, ItemPo>>> futures =
+                    new ArrayList<CompletableFuture<Map<String, ItemPo>>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(async.async(() -> dao.getAll(ids, true)));
+            }
+            for (CompletableFuture<Map<String, ItemPo>> future : futures) {
+                Map<String, ItemPo> result = future.get(10, TimeUnit.SECONDS);
+                assertEquals(ROWS, result.size());
+                assertEquals("name 2999", result.get("I2999").getName());
+            }
+        } finally {
+            DaoExecutors.setDefault(original);
+            pool.shutdown();
+        }
+    }
+
+    private List<Integer> argCounts() {
+        List<Integer> counts = new ArrayList<Integer>();
+        for (Object[] args : queries) {
+            counts.add(args.length);
+        }
+        return counts;
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = from; i < to; i++) {
+            ids.add("I" + i);
+        }
+        return ids;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_ID_ITEM")
+    public static class ItemPo {
+        private String id;
+        private String name;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
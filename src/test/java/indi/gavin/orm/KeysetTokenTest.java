@@ -0,0 +1,57 @@
+package indi.gavin.orm;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+
+import junit.framework.TestCase;
+
+public class KeysetTokenTest extends TestCase {
+
+    public void testRoundTrip() {
+        Timestamp ts = new Timestamp(1500000000123L);
+        ts.setNanos(123456789);
+        Object[] values = { "abc", 1, 2L, 3.5d, 4.5f, new BigDecimal("6.70"), true, ts };
+
+        Object[] decoded = KeysetToken.decode(KeysetToken.encode(values));
+        assertTrue(Arrays.equals(values, decoded));
+    }
+
+    public void testRejectNull() {
+        assertInvalid(() -> KeysetToken.encode(new Object[] { "abc", null }));
+    }
+
+    public void testRejectInvalidToken() {
+        //数量为负数（原来抛出NegativeArraySizeException）
+        assertInvalid(() -> KeysetToken.decode(token(1, -1)));
+        assertInvalid(() -> KeysetToken.decode(token(1, 0)));
+        //版本错误
+        assertInvalid(() -> KeysetToken.decode(token(2, 1, 'Z', 1)));
+        //数据不完整
+        assertInvalid(() -> KeysetToken.decode(token(1, 2, 'Z', 1)));
+        //多余的数据
+        assertInvalid(() -> KeysetToken.decode(token(1, 1, 'Z', 1, 0)));
+        //未知类型，以前的null
+        assertInvalid(() -> KeysetToken.decode(token(1, 1, 'N')));
+        //不是Base64
+        assertInvalid(() -> KeysetToken.decode("!!"));
+    }
+
+    private static String token(int... bytes) {
+        byte[] b = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            b[i] = (byte) bytes[i];
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    private static void assertInvalid(Runnable r) {
+        try {
+            r.run();
+            fail();
+        } catch (BizException e) {
+            assertEquals(BizStatus.S_INVALID_PARAMETERS, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.h2.tools.SimpleResultSet;
+import org.springframework.jdbc.core.RowMapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 多个结构不同的ResultSet交替映射时，各自使用自己的绑定计划
+ */
+public class PoRowMapperTest extends TestCase {
+
+    public void testInterleavedQueries() throws SQLException {
+        RowMapper<ItemPo> m1 = PoRowMapper.forQuery(ItemPo.class);
+        RowMapper<ItemPo> m2 = PoRowMapper.forQuery(ItemPo.class);
+        ResultSet rs1 = resultSet(new String[] { "ID", "NAME" }, 3);
+        ResultSet rs2 = resultSet(new String[] { "NAME", "COUNT" }, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rs1.next());
+            assertTrue(rs2.next());
+            ItemPo a = m1.mapRow(rs1, i);
+            ItemPo b = m2.mapRow(rs2, i);
+            assertEquals("ID" + i, a.getId());
+            assertEquals("NAME" + i, a.getName());
+            assertEquals(0, a.getCount());
+            assertNull(b.getId());
+            assertEquals("NAME" + i, b.getName());
+            assertEquals(i, b.getCount());
+        }
+    }
+
+    public void testSharedInstanceAcrossThreads() throws Exception {
+        RowMapper<ItemPo> shared = PoRowMapper.instance(ItemPo.class);
+        ResultSet rs1 = resultSet(new String[] { "ID", "NAME" }, 2);
+        ResultSet rs2 = resultSet(new String[] { "NAME", "COUNT" }, 2);
+        CountDownLatch firstRowMapped = new CountDownLatch(1);
+        CountDownLatch otherMapped = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        Thread t = new Thread(() -> {
+            try {
+                firstRowMapped.await();
+                rs2.next();
+                ItemPo b = shared.mapRow(rs2, 0);
+                assertEquals(0, b.getCount());
+                assertNull(b.getId());
+            } catch (Throwable e) {
+                error.set(e);
+            } finally {
+                otherMapped.countDown();
+            }
+        });
+        t.start();
+
+        rs1.next();
+        shared.mapRow(rs1, 0);
+        firstRowMapped.countDown();
+        otherMapped.await();
+        rs1.next();
+        ItemPo a = shared.mapRow(rs1, 1);
+        t.join();
+
+        assertNull(error.get());
+        assertEquals("ID1", a.getId());
+        assertEquals("NAME1", a.getName());
+    }
+
+    private static ResultSet resultSet(String[] columns, int rows) {
+        SimpleResultSet rs = new SimpleResultSet();
+        for (String c : columns) {
+            rs.addColumn(c, "COUNT".equals(c) ? Types.INTEGER : Types.VARCHAR, 0, 0);
+        }
+        for (int i = 0; i < rows; i++) {
+            Object[] row = new Object[columns.length];
+            for (int j = 0; j < columns.length; j++) {
+                row[j] = "COUNT".equals(columns[j]) ? (Object) i : columns[j] + i;
+            }
+            rs.addRow(row);
+        }
+        return rs;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_ITEM")
+    public static class ItemPo {
+        private String id;
+        private String name;
+        private int count;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+}
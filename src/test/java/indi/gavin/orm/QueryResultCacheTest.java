@@ -0,0 +1,128 @@
+package indi.gavin.orm;
+
+import indi.gavin.orm.annotations.PoTable;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class QueryResultCacheTest extends TestCase {
+
+    private static final String SQL = "select R.NAME from T_USER U left join T_ROLE R on U.ROLE_ID=R.ID order by U.ID";
+
+    private SingleConnectionDataSource ds;
+    private JdbcTemplate db;
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        db = new JdbcTemplate(ds);
+        db.execute("create table T_ROLE(ID int primary key, NAME varchar(10))");
+        db.execute("create table T_USER(ID int primary key, ROLE_ID int)");
+        db.execute("insert into T_ROLE values (1, 'admin')");
+        db.execute("insert into T_USER values (1, 1)");
+        QueryResultCache.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ds.destroy();
+    }
+
+    public void testTablesInFromAndJoin() {
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("t_user", "t_role")),
+                QueryResultCache.getTableNames(PoDefinition.instance(UserRolePo.class)));
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("t_user", "t_role", "t_dept")),
+                QueryResultCache.getTableNames(PoDefinition.instance(UserJoinPo.class)));
+    }
+
+    public void testInvalidateTableInFrom() {
+        RowMapper<String> mapper = new SingleColumnRowMapper<String>(String.class);
+        assertEquals(Arrays.asList("admin"), query(mapper));
+
+        db.update("update T_ROLE set NAME='guest'");
+        assertEquals(Arrays.asList("admin"), query(mapper));
+        assertEquals(1, QueryResultCache.getHitCount());
+
+        //T_ROLE只出现在from中
+        QueryResultCache.invalidateTable("T_ROLE");
+        assertEquals(Arrays.asList("guest"), query(mapper));
+    }
+
+    public void testCopyNestedObject() {
+        RowMapper<UserRolePo> mapper = (rs, rowNum) -> {
+            UserRolePo po = new UserRolePo();
+            po.getRole().setName(rs.getString(1));
+            return po;
+        };
+        query(mapper).get(0).getRole().setName("changed");
+        UserRolePo cached = query(mapper).get(0);
+        assertEquals(1, QueryResultCache.getHitCount());
+        assertEquals("admin", cached.getRole().getName());
+
+        cached.getRole().setName("changed");
+        assertEquals("admin", query(mapper).get(0).getRole().getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> List<R> query(RowMapper<R> mapper) {
+        Class<R> rowClass = (Class<R>) (mapper instanceof SingleColumnRowMapper ? String.class : UserRolePo.class);
+        return QueryResultCache.queryForList(db, UserRolePo.class, rowClass, SQL, mapper, null);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable(value = "U=T_USER", from = "T_USER as U left join `T_ROLE` R on U.ROLE_ID=R.ID", queryCache = true)
+    public static class UserRolePo {
+        private Integer id;
+        private Role role = new Role();
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+
+        public void setRole(Role role) {
+            this.role = role;
+        }
+    }
+
+    @PoTable(value = "U=T_USER,R=T_ROLE", join = "U.ROLE_ID=R.ID and R.ID in (select ROLE_ID from T_DEPT)",
+            queryCache = true)
+    public static class UserJoinPo {
+        private Integer id;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+    }
+
+    public static class Role {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
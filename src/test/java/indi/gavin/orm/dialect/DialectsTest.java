@@ -0,0 +1,79 @@
+package indi.gavin.orm.dialect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class DialectsTest extends TestCase {
+
+    private static final List<String> COLUMNS = Arrays.asList("ID", "NAME", "COUNT");
+    private static final List<String> KEYS = Collections.singletonList("ID");
+    private static final List<String> UPDATES = Arrays.asList("NAME", "COUNT");
+
+    public void testForProduct() {
+        assertSame(MySQLDialect.INSTANCE, Dialects.forProduct("MySQL", 5, 7));
+        assertSame(MySQLDialect.MYSQL8, Dialects.forProduct("MySQL", 8, 0));
+        assertSame(MySQLDialect.INSTANCE, Dialects.forProduct("MariaDB", 10, 1));
+        assertSame(MySQLDialect.MYSQL8, Dialects.forProduct("MariaDB", 10, 2));
+        assertSame(PostgreSQLDialect.INSTANCE, Dialects.forProduct("PostgreSQL", 9, 6));
+        assertSame(H2Dialect.INSTANCE, Dialects.forProduct("H2", 2, 1));
+        //不支持的数据库不按版本号选择MySQL 8的写法
+        assertSame(MySQLDialect.INSTANCE, Dialects.forProduct("Oracle", 19, 0));
+        assertSame(MySQLDialect.INSTANCE, Dialects.forProduct(null, 0, 0));
+    }
+
+    public void testPaging() {
+        assertEquals("select 1 limit 20,10", paging(MySQLDialect.INSTANCE, 20, 10));
+        assertEquals("select 1 limit 0,10", paging(MySQLDialect.INSTANCE, 0, 10));
+        assertEquals("select 1 limit 10 offset 20", paging(PostgreSQLDialect.INSTANCE, 20, 10));
+        assertEquals("select 1 limit 10", paging(PostgreSQLDialect.INSTANCE, 0, 10));
+        assertEquals("select 1 limit 10 offset 20", paging(H2Dialect.INSTANCE, 20, 10));
+    }
+
+    public void testMySQLUpsert() {
+        assertEquals("insert into T_ITEM(ID,NAME,COUNT) values (?,?,?),(?,?,?)"
+                + " on duplicate key update NAME=values(NAME),COUNT=values(COUNT)",
+                MySQLDialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, UPDATES, 2));
+        assertEquals("insert into T_ITEM(ID,NAME,COUNT) values (?,?,?) on duplicate key update ID=ID",
+                MySQLDialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, Collections.emptyList(), 1));
+    }
+
+    public void testPostgreSQLUpsert() {
+        assertEquals("insert into T_ITEM(ID,NAME,COUNT) values (?,?,?)"
+                + " on conflict (ID) do update set NAME=excluded.NAME,COUNT=excluded.COUNT",
+                PostgreSQLDialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, UPDATES, 1));
+        assertEquals("insert into T_ITEM(ID,NAME,COUNT) values (?,?,?),(?,?,?) on conflict (ID) do nothing",
+                PostgreSQLDialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, Collections.emptyList(), 2));
+    }
+
+    public void testH2Upsert() {
+        SingleConnectionDataSource ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        try {
+            JdbcTemplate db = new JdbcTemplate(ds);
+            db.execute("create table T_ITEM(ID varchar(10) primary key, NAME varchar(10), COUNT int)");
+
+            String sql = H2Dialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, UPDATES, 2);
+            db.update(sql, "1", "a", 1, "2", "b", 2);
+            db.update(sql, "1", "c", 3, "3", "d", 4);
+            assertEquals(Arrays.asList("c", "b", "d"),
+                    db.queryForList("select NAME from T_ITEM order by ID", String.class));
+
+            sql = H2Dialect.INSTANCE.getUpsertSQL("T_ITEM", COLUMNS, KEYS, Collections.emptyList(), 1);
+            db.update(sql, "1", "e", 5);
+            assertEquals("c", db.queryForObject("select NAME from T_ITEM where ID='1'", String.class));
+        } finally {
+            ds.destroy();
+        }
+    }
+
+    private static String paging(Dialect dialect, int start, int count) {
+        StringBuilder sb = new StringBuilder("select 1");
+        dialect.appendPaging(sb, start, count);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,252 @@
+package indi.gavin.orm.helper;
+
+import indi.gavin.orm.EntityCache;
+import indi.gavin.orm.ObjectWithIdDao;
+import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.jdbc.JdbcWizard;
+import indi.gavin.orm.metrics.DaoMetrics;
+import indi.gavin.orm.metrics.DaoMetricsListener;
+import indi.gavin.orm.metrics.DaoOperation;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class GenericDaoHelperTest extends TestCase {
+
+    //各实体的非空属性：F为全部属性，S只有id及name
+    private static final String SIGNATURES = "FSFFSFSF";
+
+    private SingleConnectionDataSource ds;
+    private LimitDialect dialect;
+    private JdbcTemplate db;
+    private ObjectWithIdDao<WidePo> dao;
+    private final List<String> statements = new ArrayList<String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        dialect = new LimitDialect();
+        db = new NoInfoDb(ds, dialect);
+        db.execute("create table T_WIDE(ID varchar(10) primary key, NAME varchar(20), AMOUNT int, NOTE varchar(20))");
+        db.execute("insert into T_WIDE(ID, NAME) values ('W1', 'name 1')");
+        dao = new ObjectWithIdDao<WidePo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<WidePo> getPoClass() {
+                return WidePo.class;
+            }
+        };
+        //记录每条insert语句：哪一组，包含多少行
+        DaoMetrics.setListener(new DaoMetricsListener() {
+            @Override
+            public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                    long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+                if (operation == DaoOperation.CREATE) {
+                    boolean full = sql.contains("NOTE");
+                    statements.add((full ? "F" : "S") + (args == null ? "" : args.length / (full ? 4 : 2)));
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DaoMetrics.setListener(null);
+        EntityCache.disable(WidePo.class);
+        ds.destroy();
+    }
+
+    public void testUpdateWithTypedIdEvictsEntity() {
+        EntityCache.enable(WidePo.class, 100, 0);
+        assertEquals("name 1", dao.get("W1").getName());
+
+        WidePo po = new WidePo();
+        po.setName("renamed");
+        assertEquals(1, dao.update(po, "name", null, "{#id}=?", PoUtils.typed(WidePo.class, "id", "W1")));
+        assertEquals("renamed", dao.get("W1").getName());
+
+        assertEquals(1, dao.delete("{#id}=?", PoUtils.typed(WidePo.class, "id", "W1")));
+        assertNull(dao.get("W1"));
+    }
+
+    public void testCreateAllGroupsByNullColumns() {
+        int[] result = dao.createAll(entities(), 2);
+        //每组一条预编译语句，结果按实体原来的顺序排列
+        assertEquals(Arrays.asList("F", "S"), statements);
+        assertEquals(expectedResult(), Arrays.toString(result));
+        assertInserted();
+    }
+
+    public void testMultiRowChunkedByBindParameters() {
+        //F组每行4个参数，每条语句2行；S组每行2个参数，每条语句4行
+        dialect.maxBindParameters = 8;
+        int[] result = new GenericDaoHelper(db, WidePo.class).createAllMultiRow(entities(), 100);
+        assertEquals(Arrays.asList("F2", "F2", "F1", "S3"), statements);
+        assertEquals(expectedResult(), Arrays.toString(result));
+        assertInserted();
+    }
+
+    public void testMultiRowChunkedByInsertRows() {
+        dialect.maxInsertRows = 3;
+        int[] result = new GenericDaoHelper(db, WidePo.class).createAllMultiRow(entities(), 100);
+        assertEquals(Arrays.asList("F3", "F2", "S3"), statements);
+        assertEquals(expectedResult(), Arrays.toString(result));
+        assertInserted();
+    }
+
+    public void testMultiRowChunkedByMaxRows() {
+        int[] result = new GenericDaoHelper(db, WidePo.class).createAllMultiRow(entities(), 2);
+        assertEquals(Arrays.asList("F2", "F2", "F1", "S2", "S1"), statements);
+        assertEquals(expectedResult(), Arrays.toString(result));
+        assertInserted();
+    }
+
+    private static List<WidePo> entities() {
+        List<WidePo> list = new ArrayList<WidePo>();
+        for (int i = 0; i < SIGNATURES.length(); i++) {
+            WidePo po = new WidePo();
+            po.setId("N" + i);
+            po.setName("name " + i);
+            if (SIGNATURES.charAt(i) == 'F') {
+                po.setAmount(i);
+                po.setNote("note " + i);
+            }
+            list.add(po);
+        }
+        return list;
+    }
+
+    //F组返回实际行数，S组返回SUCCESS_NO_INFO（见NoInfoDb）
+    private static String expectedResult() {
+        int[] result = new int[SIGNATURES.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = SIGNATURES.charAt(i) == 'F' ? 1 : Statement.SUCCESS_NO_INFO;
+        }
+        return Arrays.toString(result);
+    }
+
+    private void assertInserted() {
+        for (int i = 0; i < SIGNATURES.length(); i++) {
+            WidePo po = dao.get("N" + i);
+            assertEquals("name " + i, po.getName());
+            if (SIGNATURES.charAt(i) == 'F') {
+                assertEquals(Integer.valueOf(i), po.getAmount());
+                assertEquals("note " + i, po.getNote());
+            } else {
+                assertNull(po.getNote());
+            }
+        }
+        //值为null的属性不出现在insert语句中，对应的列为null
+        assertEquals(SIGNATURES.replace("F", "").length(), db.queryForObject(
+                "select count(*) from T_WIDE where ID like 'N%' and AMOUNT is null and NOTE is null", Integer.class)
+                .intValue());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * 可以指定行数及绑定参数个数上限的H2方言
+     */
+    private static final class LimitDialect extends H2Dialect {
+        int maxBindParameters = super.getMaxBindParameters();
+        int maxInsertRows = super.getMaxInsertRows();
+
+        @Override
+        public int getMaxBindParameters() {
+            return maxBindParameters;
+        }
+
+        @Override
+        public int getMaxInsertRows() {
+            return maxInsertRows;
+        }
+    }
+
+    /**
+     * 模拟不返回受影响行数的驱动：不包括NOTE列的insert语句返回SUCCESS_NO_INFO，用于区分各实体的结果
+     */
+    private static final class NoInfoDb extends JdbcWizard {
+
+        NoInfoDb(DataSource dataSource, LimitDialect dialect) {
+            super(dataSource, dialect);
+        }
+
+        @Override
+        public int update(String sql, Object[] args, int[] argTypes) {
+            int count = super.update(sql, args, argTypes);
+            return isNoInfo(sql) ? Statement.SUCCESS_NO_INFO : count;
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                ParameterizedPreparedStatementSetter<T> pss) {
+            int[][] counts = super.batchUpdate(sql, batchArgs, batchSize, pss);
+            if (isNoInfo(sql)) {
+                for (int[] batch : counts) {
+                    Arrays.fill(batch, Statement.SUCCESS_NO_INFO);
+                }
+            }
+            return counts;
+        }
+
+        private static boolean isNoInfo(String sql) {
+            return sql.startsWith("insert") && !sql.contains("NOTE");
+        }
+    }
+
+    @PoTable("T_WIDE")
+    public static class WidePo {
+        private String id;
+        private String name;
+        private Integer amount;
+        private String note;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Integer amount) {
+            this.amount = amount;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+    }
+}
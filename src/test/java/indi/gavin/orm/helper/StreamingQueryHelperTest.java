@@ -0,0 +1,112 @@
+package indi.gavin.orm.helper;
+
+import indi.gavin.orm.dialect.H2Dialect;
+import indi.gavin.orm.jdbc.JdbcWizard;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class StreamingQueryHelperTest extends TestCase {
+
+    //与PostgreSQL一样要求流式查询在事务中执行
+    private static final H2Dialect IN_TRANSACTION = new H2Dialect() {
+        @Override
+        public boolean isStreamingInTransaction() {
+            return true;
+        }
+    };
+
+    private static final String SQL = "select X from system_range(1, 5) order by X";
+
+    private SingleConnectionDataSource ds;
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ds.destroy();
+    }
+
+    public void testAutoCommitRestoredAfterStream() throws SQLException {
+        JdbcWizard db = new JdbcWizard(ds, IN_TRANSACTION);
+        Connection con = ds.getConnection();
+        assertTrue(con.getAutoCommit());
+
+        try (Stream<Long> stream = StreamingQueryHelper.stream(db, SQL, new Object[0], 2,
+                new SingleColumnRowMapper<Long>(Long.class))) {
+            Iterator<Long> it = stream.iterator();
+            assertEquals(Long.valueOf(1), it.next());
+            assertFalse(con.getAutoCommit());
+        }
+        assertTrue(con.getAutoCommit());
+
+        List<Long> rows = new ArrayList<Long>();
+        StreamingQueryHelper.forEach(db, SQL, new Object[0], 2, new SingleColumnRowMapper<Long>(Long.class),
+                rows::add);
+        assertEquals(5, rows.size());
+        assertTrue(con.getAutoCommit());
+    }
+
+    public void testAutoCommitUnchangedForOtherDialects() throws SQLException {
+        JdbcWizard db = new JdbcWizard(ds, H2Dialect.INSTANCE);
+        Connection con = ds.getConnection();
+
+        try (Stream<Long> stream = StreamingQueryHelper.stream(db, SQL, new Object[0], 2,
+                new SingleColumnRowMapper<Long>(Long.class))) {
+            assertTrue(con.getAutoCommit());
+            assertEquals(5, stream.collect(Collectors.toList()).size());
+        }
+    }
+
+    public void testConnectionReleasedOnRuntimeException() throws SQLException {
+        Connection target = ds.getConnection();
+        boolean[] closed = new boolean[1];
+        Connection con = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "prepareStatement":
+                        throw new IllegalStateException("prepare");
+                    case "close":
+                        closed[0] = true;
+                        return null;
+                    default:
+                        return method.invoke(target, args);
+                    }
+                });
+        JdbcWizard db = new JdbcWizard(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() {
+                return con;
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) {
+                return con;
+            }
+        }, IN_TRANSACTION);
+
+        try {
+            StreamingQueryHelper.stream(db, SQL, new Object[0], 2, new SingleColumnRowMapper<Long>(Long.class));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("prepare", e.getMessage());
+        }
+        assertTrue(closed[0]);
+        assertTrue(target.getAutoCommit());
+    }
+}
@@ -0,0 +1,108 @@
+package indi.gavin.orm.metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import junit.framework.TestCase;
+
+public class DaoMetricsTest extends TestCase {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        DaoMetrics.setListener(null);
+    }
+
+    public void testListenerHooks() {
+        DaoMetrics.setListener(new RecordingListener());
+
+        long begin = DaoMetrics.begin();
+        assertTrue(begin != 0);
+        RowMapper<String> mapper = DaoMetrics.timed((rs, rowNum) -> "row " + rowNum, begin);
+        List<String> rows = DaoMetrics.execute(Object.class, DaoOperation.QUERY_FOR_LIST, "select", null, begin,
+                mapper, () -> {
+                    List<String> list = new ArrayList<String>();
+                    for (int i = 0; i < 2; i++) {
+                        try {
+                            list.add(mapper.mapRow(null, i));
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return list;
+                }, DaoMetrics::sizeOf);
+
+        assertEquals(Arrays.asList("row 0", "row 1"), rows);
+        //各回调按顺序进行，beginRow的返回值传给endRow，onOperation收到begin()的返回值
+        assertEquals(Arrays.asList("begin " + begin, "mark " + begin, "beginRow 0", "endRow 0", "beginRow 1",
+                "endRow 1", "operation " + begin + " 2"), calls);
+    }
+
+    public void testInactiveListener() {
+        SqlLogger.Mode mode = SqlLogger.getMode();
+        SqlLogger.setMode(SqlLogger.Mode.OFF);
+        try {
+            RecordingListener listener = new RecordingListener();
+            listener.active = false;
+            DaoMetrics.setListener(listener);
+            //不计时，也不回调
+            assertEquals(0, DaoMetrics.begin());
+            assertEquals(0, DaoMetrics.mark(0));
+            RowMapper<String> mapper = (rs, rowNum) -> "row";
+            assertSame(mapper, DaoMetrics.timed(mapper, 0));
+            assertEquals("x", DaoMetrics.execute(Object.class, DaoOperation.QUERY_FOR_VALUE, "select", null, 0, null,
+                    () -> "x", r -> 1));
+            assertTrue(calls.isEmpty());
+        } finally {
+            SqlLogger.setMode(mode);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private final class RecordingListener implements DaoMetricsListener {
+        boolean active = true;
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void onBegin(long begin) {
+            calls.add("begin " + begin);
+        }
+
+        @Override
+        public void onMark(long begin) {
+            calls.add("mark " + begin);
+        }
+
+        @Override
+        public Object beginRow(Object rowMapper, int rowNum) {
+            calls.add("beginRow " + rowNum);
+            return rowNum;
+        }
+
+        @Override
+        public void endRow(Object row) {
+            calls.add("endRow " + row);
+        }
+
+        @Override
+        public void onOperation(long begin, Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+            calls.add("operation " + begin + " " + rows);
+        }
+
+        @Override
+        public void onOperation(Class<?> poClass, DaoOperation operation, String sql, Object[] args,
+                long buildNanos, long executeNanos, long mapNanos, int rows, Throwable error) {
+            fail("onOperation(long, ...) is overridden");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package indi.gavin.orm.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import junit.framework.TestCase;
+
+public class HistogramMetricsListenerTest extends TestCase {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private Logger log4j;
+    private RecordingAppender appender;
+
+    @Override
+    protected void setUp() throws Exception {
+        log4j = Logger.getLogger("indi.gavin.orm.SlowQuery");
+        log4j.setLevel(Level.WARN);
+        log4j.setAdditivity(false);
+        appender = new RecordingAppender();
+        log4j.addAppender(appender);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        log4j.removeAppender(appender);
+        log4j.setAdditivity(true);
+        log4j.setLevel(null);
+    }
+
+    public void testSlowQueryThreshold() {
+        HistogramMetricsListener listener = new HistogramMetricsListener(5);
+        assertEquals(5, listener.getSlowThreshold());
+
+        //三个阶段的耗时之和达到阈值时输出
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "fast", null, MS, 3 * MS, MS - 1, 1, null);
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "slow", null, MS, 3 * MS, MS, 2, null);
+        listener.onOperation(Item.class, DaoOperation.UPDATE, "failed", new Object[] { "a" }, 0, 10 * MS, 0, 0,
+                new IllegalStateException());
+        assertEquals(2, appender.messages.size());
+        assertTrue(appender.messages.get(0), appender.messages.get(0).startsWith("Slow QUERY_FOR_LIST on Item (5 ms"));
+        assertTrue(appender.messages.get(0), appender.messages.get(0).endsWith(": slow with []"));
+        assertTrue(appender.messages.get(1), appender.messages.get(1).contains(", failed): failed with [a]"));
+
+        //小于等于0表示不输出
+        listener.setSlowThreshold(0);
+        assertEquals(0, listener.getSlowThreshold());
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "slow", null, 0, 1000 * MS, 0, 1, null);
+        listener.setSlowThreshold(-1);
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "slow", null, 0, 1000 * MS, 0, 1, null);
+        assertEquals(2, appender.messages.size());
+        assertEquals(0, new HistogramMetricsListener().getSlowThreshold());
+    }
+
+    public void testStats() {
+        HistogramMetricsListener listener = new HistogramMetricsListener();
+        assertNull(listener.getStats(Item.class, DaoOperation.QUERY_FOR_LIST));
+
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "q", null, 10, 2000, 300, 5, null);
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "q", null, 10, 4000, 300, 3, null);
+        listener.onOperation(Item.class, DaoOperation.QUERY_FOR_LIST, "q", null, 10, 0, 0, 0,
+                new IllegalStateException());
+
+        HistogramMetricsListener.OperationStats stats = listener.getStats(Item.class, DaoOperation.QUERY_FOR_LIST);
+        assertEquals(3, stats.getCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(8, stats.getRowCount());
+        assertEquals(4000, stats.getExecuteNanos().getMax());
+        assertEquals(3, stats.getBuildNanos().getCount());
+        assertNull(listener.getStats(Item.class, DaoOperation.UPDATE));
+        assertNull(listener.getAllStats().get(Item.class)[DaoOperation.UPDATE.ordinal()]);
+        //没有达到阈值时不输出慢查询日志
+        assertTrue(appender.messages.isEmpty());
+
+        listener.reset();
+        assertNull(listener.getStats(Item.class, DaoOperation.QUERY_FOR_LIST));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class Item {
+    }
+
+    private static final class RecordingAppender extends AppenderSkeleton {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        protected void append(LoggingEvent event) {
+            messages.add(event.getRenderedMessage());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+}
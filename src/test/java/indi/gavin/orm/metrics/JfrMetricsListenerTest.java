@@ -0,0 +1,140 @@
+package indi.gavin.orm.metrics;
+
+import indi.gavin.orm.ObjectWithIdDao;
+import indi.gavin.orm.annotations.PoTable;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import junit.framework.TestCase;
+
+public class JfrMetricsListenerTest extends TestCase {
+
+    private SingleConnectionDataSource ds;
+    private ObjectWithIdDao<ItemPo> dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        ds = new SingleConnectionDataSource("jdbc:h2:mem:", true);
+        JdbcTemplate db = new JdbcTemplate(ds);
+        db.execute("create table T_JFR_ITEM(ID varchar(10) primary key, NAME varchar(10))");
+        db.execute("insert into T_JFR_ITEM values ('1', 'a'), ('2', 'b')");
+        dao = new ObjectWithIdDao<ItemPo>() {
+            @Override
+            public JdbcTemplate getJdbcTemplate() {
+                return db;
+            }
+
+            @Override
+            public Class<ItemPo> getPoClass() {
+                return ItemPo.class;
+            }
+        };
+        assertTrue(JfrMetricsListener.install());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        JfrMetricsListener.uninstall();
+        ds.destroy();
+    }
+
+    public void testEventsCoverOperation() throws Exception {
+        List<RecordedEvent> events = record(false, () -> {
+            assertEquals(2, dao.list(0, 10, null, null).size());
+            ItemPo po = new ItemPo();
+            po.setName("c");
+            assertEquals(1, dao.update(po, "1"));
+        });
+
+        List<RecordedEvent> operations = filter(events, OperationEvent.NAME);
+        assertEquals(2, operations.size());
+        for (RecordedEvent e : operations) {
+            assertTrue(e.getDuration().compareTo(Duration.ZERO) > 0);
+        }
+        assertEquals(2, operations.get(0).getInt("rows"));
+        assertEquals("UPDATE", operations.get(1).getString("operation"));
+
+        List<RecordedEvent> phases = filter(events, PhaseEvent.NAME);
+        assertEquals(4, phases.size());
+        for (int i = 0; i < 2; i++) {
+            RecordedEvent build = phases.get(i * 2);
+            RecordedEvent execute = phases.get(i * 2 + 1);
+            assertEquals(PhaseEvent.BUILD, build.getString("phase"));
+            assertEquals(PhaseEvent.EXECUTE, execute.getString("phase"));
+            assertFalse(execute.getStartTime().isBefore(build.getEndTime()));
+            assertFalse(build.getStartTime().isBefore(operations.get(i).getStartTime()));
+            assertFalse(execute.getEndTime().isAfter(operations.get(i).getEndTime()));
+        }
+        assertTrue(filter(events, MapRowEvent.NAME).isEmpty());
+    }
+
+    public void testMapRowEvents() throws Exception {
+        List<RecordedEvent> events = record(true, () -> assertEquals(2, dao.list(0, 10, null, null).size()));
+        List<RecordedEvent> rows = filter(events, MapRowEvent.NAME);
+        assertEquals(2, rows.size());
+        assertEquals(0, rows.get(0).getInt("rowNum"));
+        assertEquals(1, rows.get(1).getInt("rowNum"));
+    }
+
+    private static List<RecordedEvent> record(boolean mapRows, Runnable action) throws Exception {
+        File file = File.createTempFile("orm", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(OperationEvent.NAME);
+            recording.enable(PhaseEvent.NAME);
+            if (mapRows) {
+                recording.enable(MapRowEvent.NAME);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file.toPath());
+            return RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+        for (RecordedEvent e : events) {
+            if (name.equals(e.getEventType().getName())) {
+                result.add(e);
+            }
+        }
+        result.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @PoTable("T_JFR_ITEM")
+    public static class ItemPo {
+        private String id;
+        private String name;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
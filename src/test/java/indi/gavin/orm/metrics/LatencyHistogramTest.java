@@ -0,0 +1,78 @@
+package indi.gavin.orm.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testIndexOfSmallValues() {
+        //小于16的值各占一个桶
+        for (int v = 0; v < 16; v++) {
+            assertEquals(v, LatencyHistogram.indexOf(v));
+            assertEquals(v, LatencyHistogram.highestValueOf(v));
+        }
+        assertEquals(16, LatencyHistogram.indexOf(16));
+        assertEquals(16, LatencyHistogram.indexOf(17));
+        assertEquals(17, LatencyHistogram.indexOf(18));
+    }
+
+    public void testBucketBoundaries() {
+        //各桶首尾相接：每个桶的上限+1是下一个桶的第一个值
+        int last = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertEquals(487, last);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(last));
+        for (int i = 0; i < last; i++) {
+            long high = LatencyHistogram.highestValueOf(i);
+            assertEquals(i, LatencyHistogram.indexOf(high));
+            assertEquals(i + 1, LatencyHistogram.indexOf(high + 1));
+        }
+    }
+
+    public void testRelativeError() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 100000; i++) {
+            long v = random.nextLong(1, Long.MAX_VALUE >>> random.nextInt(62));
+            long high = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(v));
+            assertTrue(v + " -> " + high, high >= v);
+            assertTrue(v + " -> " + high, (high - v) <= v / 8);
+        }
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(99));
+
+        for (int v = 1; v <= 1000; v++) {
+            h.record(v);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMax());
+        assertEquals(500.5, h.getMean(), 1e-9);
+        assertBetween(500, 500 + 500 / 8, h.getValueAtPercentile(50));
+        assertBetween(990, 1000, h.getValueAtPercentile(99));
+        //不超过最大值
+        assertEquals(1000, h.getValueAtPercentile(100));
+        assertEquals(1, h.getValueAtPercentile(0));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(50));
+    }
+
+    public void testSmallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= 10; v++) {
+            h.record(v);
+        }
+        //负数按0计
+        h.record(-5);
+        assertEquals(0, h.getValueAtPercentile(1));
+        assertEquals(5, h.getValueAtPercentile(50));
+        assertEquals(10, h.getValueAtPercentile(99.9));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " not in [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+}
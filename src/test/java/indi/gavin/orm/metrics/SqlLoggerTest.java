@@ -0,0 +1,163 @@
+package indi.gavin.orm.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import junit.framework.TestCase;
+
+public class SqlLoggerTest extends TestCase {
+
+    private static final Object[] ARGS = { "a", 1 };
+
+    private Logger log4j;
+    private CountingAppender appender;
+
+    @Override
+    protected void setUp() throws Exception {
+        //先输出其它测试留下的记录
+        SqlLogger.flush();
+        log4j = Logger.getLogger("indi.gavin.orm.SQL");
+        log4j.setLevel(Level.INFO);
+        log4j.setAdditivity(false);
+        appender = new CountingAppender();
+        log4j.addAppender(appender);
+        SqlLogger.setMode(SqlLogger.Mode.FULL);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SqlLogger.flush();
+        log4j.removeAppender(appender);
+        log4j.setAdditivity(true);
+        log4j.setLevel(null);
+        SqlLogger.setMode(SqlLogger.Mode.FULL);
+        SqlLogger.setSampleRate(100);
+        SqlLogger.setSlowThreshold(100);
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final int threads = 8;
+        final int perThread = 20000;
+        long droppedBefore = SqlLogger.getDroppedCount();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int k = 0; k < perThread; k++) {
+                    SqlLogger.log("select * from T_LOG where ID=?", ARGS, 1000, 1, null);
+                }
+            });
+            t.start();
+            producers.add(t);
+        }
+        start.countDown();
+        for (Thread t : producers) {
+            t.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(t.isAlive());
+        }
+
+        //flush之后缓冲区中的记录都已输出：输出的 + 丢弃的 = 写入的
+        SqlLogger.flush();
+        long dropped = SqlLogger.getDroppedCount() - droppedBefore;
+        assertEquals((long) threads * perThread, appender.count.get() + dropped);
+        assertEquals(0, appender.errors.get());
+    }
+
+    public void testConsumerWakesUp() throws Exception {
+        //后台线程等待后，新的记录能被输出而不需要flush
+        for (int i = 0; i < 3; i++) {
+            SqlLogger.log("select 1", null, 1000, 1, null);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (appender.count.get() < i + 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(i + 1, appender.count.get());
+            Thread.sleep(20);
+        }
+    }
+
+    public void testSampled() {
+        SqlLogger.setMode(SqlLogger.Mode.SAMPLED);
+        SqlLogger.setSampleRate(10);
+        for (int i = 0; i < 10000; i++) {
+            SqlLogger.log("select 1", null, 1000, 1, null);
+        }
+        SqlLogger.flush();
+        //约1/10，二项分布的标准差约30
+        long count = appender.count.get();
+        assertTrue(String.valueOf(count), count > 700 && count < 1300);
+
+        appender.count.set(0);
+        SqlLogger.setSampleRate(1);
+        for (int i = 0; i < 100; i++) {
+            SqlLogger.log("select 1", null, 1000, 1, null);
+        }
+        SqlLogger.flush();
+        assertEquals(100, appender.count.get());
+    }
+
+    public void testSlow() {
+        SqlLogger.setMode(SqlLogger.Mode.SLOW);
+        SqlLogger.setSlowThreshold(5);
+        assertEquals(5, SqlLogger.getSlowThreshold());
+        SqlLogger.log("fast", null, TimeUnit.MILLISECONDS.toNanos(4), 1, null);
+        SqlLogger.log("slow", null, TimeUnit.MILLISECONDS.toNanos(5), 1, null);
+        //耗时未知的不记录
+        SqlLogger.log("unknown", null, -1, 1, null);
+        SqlLogger.log("slower", null, TimeUnit.MILLISECONDS.toNanos(50), 1, null);
+        SqlLogger.flush();
+        assertEquals(2, appender.count.get());
+    }
+
+    public void testOff() {
+        SqlLogger.setMode(SqlLogger.Mode.OFF);
+        assertFalse(SqlLogger.isActive());
+        SqlLogger.log("select 1", null, 1000, 1, null);
+        SqlLogger.flush();
+        assertEquals(0, appender.count.get());
+
+        //logger没有启用INFO级别时也不记录
+        SqlLogger.setMode(SqlLogger.Mode.FULL);
+        log4j.setLevel(Level.WARN);
+        assertFalse(SqlLogger.isActive());
+        SqlLogger.log("select 1", null, 1000, 1, null);
+        SqlLogger.flush();
+        assertEquals(0, appender.count.get());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class CountingAppender extends AppenderSkeleton {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        @Override
+        protected void append(LoggingEvent event) {
+            if (!event.getRenderedMessage().startsWith("SQL: ")) {
+                errors.incrementAndGet();
+            }
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+}
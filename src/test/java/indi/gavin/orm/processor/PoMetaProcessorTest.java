@@ -0,0 +1,279 @@
+package indi.gavin.orm.processor;
+
+import indi.gavin.orm.PoAccessPlan;
+import indi.gavin.orm.PoDefinition;
+import indi.gavin.orm.PoMeta;
+import indi.gavin.orm.PoRowMapper;
+import indi.gavin.orm.PoUtils;
+import indi.gavin.orm.annotations.PoTable;
+import indi.gavin.orm.helper.GenericDaoHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.h2.tools.SimpleResultSet;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * 同一组PO分别在启用、不启用PoMetaProcessor时编译，对比生成的元数据与反射扫描的结果
+ */
+public class PoMetaProcessorTest extends TestCase {
+
+    private static final String[][] SOURCES = {
+            { "po/PlainPo.java", "package po;\n"
+                    + "import indi.gavin.orm.annotations.*;\n"
+                    + "@PoTable(\"T_PLAIN\")\n"
+                    + "public class PlainPo {\n"
+                    + "    private static final long serialVersionUID = 1L;\n"
+                    + property(null, "String", "id")
+                    + property("@PoColumn(\"USER_NAME\")", "String", "userName")
+                    + property(null, "int", "count")
+                    + property(null, "Long", "total")
+                    + property(null, "double", "rate")
+                    + property(null, "java.util.Date", "createTime")
+                    + property("@PoColumn(value = \"NOTE\", readOnly = true)", "String", "note")
+                    + property("@PoColumn(\"-\")", "String", "ignored")
+                    + "}\n" },
+            { "po/BasePo.java", "package po;\n"
+                    + "public class BasePo {\n"
+                    + property(null, "String", "id")
+                    + property(null, "String", "name")
+                    + property(null, "Integer", "version")
+                    + "}\n" },
+            { "po/ChildPo.java", "package po;\n"
+                    + "import indi.gavin.orm.annotations.*;\n"
+                    + "@PoTable(\"T_CHILD\")\n"
+                    + "public class ChildPo extends BasePo {\n"
+                    + property("@PoColumn(\"CHILD_NAME\")", "String", "name")
+                    + property(null, "float", "score")
+                    + "}\n" },
+            { "po/Address.java", "package po;\n"
+                    + "import indi.gavin.orm.annotations.*;\n"
+                    + "public class Address {\n"
+                    + property(null, "String", "city")
+                    + property("@PoColumn(\"A.ZIP_CODE\")", "String", "zip")
+                    + "}\n" },
+            { "po/Outer.java", "package po;\n"
+                    + "import indi.gavin.orm.annotations.*;\n"
+                    + "public class Outer {\n"
+                    + "    @PoTable(\"T_NESTED\")\n"
+                    + "    public static class ItemPo {\n"
+                    + property(null, "String", "id")
+                    + "        private Address address = new Address();\n"
+                    + "        public Address getAddress() { return address; }\n"
+                    + "        public void setAddress(Address address) { this.address = address; }\n"
+                    + "    }\n"
+                    + "}\n" },
+            { "po/UserDeptPo.java", "package po;\n"
+                    + "import indi.gavin.orm.annotations.*;\n"
+                    + "@PoTable(value = \"U=T_USER,D=T_DEPT\", join = \"T_USER U left join T_DEPT D on U.DEPT_ID=D.ID\")\n"
+                    + "public class UserDeptPo {\n"
+                    + property("@PoColumn(\"U.ID\")", "String", "id")
+                    + property("@PoColumn(\"U.NAME\")", "String", "name")
+                    + property("@PoColumn(value = \"D.NAME\", readOnly = true)", "String", "deptName")
+                    + property("@PoColumn(\"(select count(*) from T_ROLE R where R.USER_ID=U.ID)\")", "long", "roles")
+                    + "}\n" },
+    };
+
+    private File dir;
+    private ClassLoader generated;
+    private ClassLoader reflective;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("po-meta").toFile();
+        File src = new File(dir, "src");
+        List<String> files = new ArrayList<String>();
+        for (String[] source : SOURCES) {
+            File f = new File(src, source[0]);
+            f.getParentFile().mkdirs();
+            Files.write(f.toPath(), source[1].getBytes(StandardCharsets.UTF_8));
+            files.add(f.getPath());
+        }
+        generated = compile(files, "generated", "-processor", PoMetaProcessor.class.getName());
+        reflective = compile(files, "reflective", "-proc:none");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    public void testPlainPo() throws Exception {
+        compare("po.PlainPo");
+    }
+
+    public void testInheritedPo() throws Exception {
+        compare("po.ChildPo");
+    }
+
+    public void testNestedPo() throws Exception {
+        Class<?> poClass = compare("po.Outer$ItemPo");
+        assertEquals("po.Outer_ItemPo_PoMeta", PoMeta.of(poClass).getClass().getName());
+        assertTrue(Arrays.asList(PoDefinition.instance(poClass).getFields()).contains("address$city"));
+    }
+
+    public void testJoinPo() throws Exception {
+        Class<?> poClass = compare("po.UserDeptPo");
+        assertNull(PoMeta.of(poClass).getInsertSQL());
+    }
+
+    public void testClassWithoutPoTable() throws Exception {
+        assertNull(PoMeta.of(generated.loadClass("po.BasePo")));
+    }
+
+    private Class<?> compare(String className) throws Exception {
+        Class<?> gen = generated.loadClass(className);
+        Class<?> ref = reflective.loadClass(className);
+        PoMeta<?> meta = PoMeta.of(gen);
+        assertNotNull(className, meta);
+        assertNull(PoMeta.of(ref));
+
+        //属性、字段及只读标志
+        PoDefinition genDef = PoDefinition.instance(gen);
+        PoDefinition refDef = PoDefinition.instance(ref);
+        assertEquals(Arrays.asList(refDef.getFields()), Arrays.asList(genDef.getFields()));
+        StringBuilder select = new StringBuilder();
+        for (String field : refDef.getFields()) {
+            assertEquals(field, refDef.getFieldColumn(field), genDef.getFieldColumn(field));
+            assertEquals(field, refDef.isFieldReadOnly(field), genDef.isFieldReadOnly(field));
+            select.append(',').append(refDef.getFieldColumn(field)).append(" as ")
+                    .append(PoUtils.fieldName2ColumnName(field));
+        }
+
+        //select部分及insert语句
+        assertEquals(select.substring(1), meta.getSelect());
+        if (refDef.getTableCount() == 1) {
+            assertEquals(new InsertSQL(ref).getFullInsertSQL(), meta.getInsertSQL());
+            assertEquals(meta.getInsertSQL(), new InsertSQL(gen).getFullInsertSQL());
+        }
+
+        //映射结果集及读取属性
+        Object genPo = map(gen, refDef);
+        Object refPo = map(ref, refDef);
+        for (String field : refDef.getFields()) {
+            assertEquals(field, read(refPo, field), read(genPo, field));
+        }
+        List<PoAccessPlan.Property> genProps = PoAccessPlan.instance(gen).getProperties();
+        List<PoAccessPlan.Property> refProps = PoAccessPlan.instance(ref).getProperties();
+        assertEquals(refProps.size(), genProps.size());
+        for (int i = 0; i < refProps.size(); i++) {
+            assertEquals(refProps.get(i).getName(), genProps.get(i).getName());
+            assertEquals(refProps.get(i).getSqlType(), genProps.get(i).getSqlType());
+            assertEquals(refProps.get(i).get(refPo), genProps.get(i).get(genPo));
+        }
+        return gen;
+    }
+
+    //每个属性一列，按属性类型取值
+    private static Object map(Class<?> poClass, PoDefinition poDef) throws Exception {
+        SimpleResultSet rs = new SimpleResultSet();
+        List<Object> row = new ArrayList<Object>();
+        String[] fields = poDef.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> type = typeOf(poClass, fields[i]);
+            Object value;
+            int sqlType;
+            if (type == String.class) {
+                value = "v" + i;
+                sqlType = Types.VARCHAR;
+            } else if (type == java.util.Date.class) {
+                value = new Timestamp(1500000000000L + i);
+                sqlType = Types.TIMESTAMP;
+            } else {
+                value = i + 1;
+                sqlType = Types.INTEGER;
+            }
+            rs.addColumn(PoUtils.fieldName2ColumnName(fields[i]), sqlType, 0, 0);
+            row.add(value);
+        }
+        rs.addRow(row.toArray());
+        ResultSet resultSet = rs;
+        assertTrue(resultSet.next());
+        return PoRowMapper.instance(poClass).mapRow(resultSet, 0);
+    }
+
+    private static Class<?> typeOf(Class<?> poClass, String field) throws Exception {
+        Class<?> type = poClass;
+        for (String name : field.split("\\$")) {
+            type = type.getMethod("get" + StringUtils.capitalize(name)).getReturnType();
+        }
+        return type;
+    }
+
+    private static Object read(Object po, String field) throws Exception {
+        Object value = po;
+        for (String name : field.split("\\$")) {
+            value = value.getClass().getMethod("get" + StringUtils.capitalize(name)).invoke(value);
+        }
+        return value;
+    }
+
+    private ClassLoader compile(List<String> files, String name, String... options) throws IOException {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("no system java compiler", javac);
+        File out = new File(dir, name);
+        File generatedSources = new File(dir, name + "-src");
+        out.mkdirs();
+        generatedSources.mkdirs();
+
+        List<String> args = new ArrayList<String>();
+        args.addAll(Arrays.asList("-classpath", classpath(), "-d", out.getPath(), "-s", generatedSources.getPath()));
+        args.addAll(Arrays.asList(options));
+        args.addAll(files);
+        assertEquals(0, javac.run(null, null, null, args.toArray(new String[0])));
+        return new URLClassLoader(new URL[] { out.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    //编译PO及生成的类需要本项目及slf4j（PoMeta引用Logger）
+    private static String classpath() {
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> c : new Class<?>[] { PoTable.class, LoggerFactory.class }) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(new File(c.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath());
+        }
+        return sb.toString();
+    }
+
+    private static String property(String annotation, String type, String name) {
+        String cap = StringUtils.capitalize(name);
+        return (annotation == null ? "" : "    " + annotation + "\n")
+                + "    private " + type + " " + name + ";\n"
+                + "    public " + type + " get" + cap + "() { return " + name + "; }\n"
+                + "    public void set" + cap + "(" + type + " " + name + ") { this." + name + " = " + name + "; }\n";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final class InsertSQL extends GenericDaoHelper {
+        private final Class<?> poClass;
+
+        InsertSQL(Class<?> poClass) {
+            super(new JdbcTemplate(), poClass);
+            this.poClass = poClass;
+        }
+
+        String getFullInsertSQL() {
+            return getInsertSQL(PoAccessPlan.instance(poClass).getWritableProperties());
+        }
+    }
+}